@@ -0,0 +1,156 @@
+package ProjetoPoo;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks JMH das operações principais do gestor de consultas e exames, sobre os mesmos
+ * dados sintéticos do {@link BenchmarkGestor} (gerados com uma semente fixa).
+ *
+ * Cada benchmark corre num processo próprio, com aquecimento, e os resultados são consumidos
+ * pelo JMH para que o JIT não elimine o trabalho medido.
+ *
+ * Utilização: mvn -Pjmh package && java -jar target/benchmarks.jar [filtro] [-p tamanho=...]
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BenchmarkGestorJmh {
+    private static final long SEMENTE = 42L;
+    private static final int ESCOLHAS = 1 << 12;
+    private static final int TAMANHO_PAGINA = 20;
+
+    @Param({"1000", "100000", "1000000"})
+    private int tamanho;
+
+    private GerirConsultasExames gestor;
+    private List<Medico> medicos;
+    private List<Paciente> pacientes;
+    private List<LocalDateTime> horarios;
+    private int numeroMedicos;
+    private int consultas;
+    private int[] escolhas;
+    private String[] designacoes;
+    private int proxima;
+    private long proximoId;
+
+    /**
+     * Regista os médicos e os pacientes e agenda uma marcação por paciente: consultas na primeira
+     * metade e exames na segunda, com a marcação k no médico k % m e no horário k / m.
+     */
+    @Setup
+    public void preparar() {
+        GeradorDadosSinteticos gerador = new GeradorDadosSinteticos(SEMENTE);
+        gestor = new GerirConsultasExames();
+        horarios = GeradorDadosSinteticos.horariosUteis(gestor.getConfiguracaoHorario(),
+                LocalDate.now().plusDays(1).atStartOfDay());
+        // O último horário de cada médico fica livre para os benchmarks que agendam
+        numeroMedicos = Math.max(1, (tamanho + horarios.size() - 2) / (horarios.size() - 1));
+        medicos = gerador.gerarMedicos(numeroMedicos);
+        for (Medico medico : medicos) {
+            gestor.registarMedico(medico);
+        }
+        pacientes = gerador.gerarPacientes(tamanho);
+        for (Paciente paciente : pacientes) {
+            gestor.registarPaciente(paciente);
+        }
+        consultas = tamanho / 2;
+        for (int k = 0; k < consultas; k++) {
+            gestor.agendarConsulta(pacientes.get(k), horarios.get(k / numeroMedicos), medicos.get(k % numeroMedicos));
+        }
+        for (int k = consultas; k < tamanho; k++) {
+            gestor.agendarExame(pacientes.get(k), horarios.get(k / numeroMedicos), gerador.gerarDesignacao(),
+                    medicos.get(k % numeroMedicos));
+        }
+        // As escolhas aleatórias são feitas antes, para não medir o gerador
+        escolhas = new int[ESCOLHAS];
+        designacoes = new String[ESCOLHAS];
+        for (int i = 0; i < ESCOLHAS; i++) {
+            escolhas[i] = gerador.proximoInteiro(tamanho);
+            designacoes[i] = gerador.gerarDesignacao();
+        }
+        proximoId = 100000000L + tamanho;
+    }
+
+    private int proximaEscolha() {
+        proxima = (proxima + 1) & (ESCOLHAS - 1);
+        return proxima;
+    }
+
+    @Benchmark
+    public Paciente pesquisarPaciente() {
+        return gestor.pesquisarPaciente(pacientes.get(escolhas[proximaEscolha()]).getNome());
+    }
+
+    @Benchmark
+    public Paciente pesquisarPacientePorId() {
+        return gestor.pesquisarPacientePorId(pacientes.get(escolhas[proximaEscolha()]).getId());
+    }
+
+    @Benchmark
+    public Exame pesquisarExame() {
+        int k = consultas + escolhas[proximaEscolha()] % Math.max(1, tamanho - consultas);
+        return gestor.pesquisarExame(pacientes.get(k), horarios.get(k / numeroMedicos));
+    }
+
+    @Benchmark
+    public long pesquisarExamesPorTipoPrimeiraPagina() {
+        FiltroHistorico filtro = new FiltroHistorico();
+        filtro.setTipoExame(designacoes[proximaEscolha()]);
+        return gestor.pesquisarExames(filtro, Ordem.DECRESCENTE, 0, TAMANHO_PAGINA).count();
+    }
+
+    @Benchmark
+    public long pesquisarConsultasDoPaciente() {
+        FiltroHistorico filtro = new FiltroHistorico();
+        filtro.setPaciente(pacientes.get(escolhas[proximaEscolha()]));
+        return gestor.pesquisarConsultas(filtro).count();
+    }
+
+    @Benchmark
+    public LocalDateTime obterProximoHorarioDisponivel() {
+        return gestor.pesquisarHorariosDisponiveisConsulta(medicos.get(escolhas[proximaEscolha()] % numeroMedicos))
+                .findFirst().orElse(null);
+    }
+
+    /**
+     * Agenda e cancela uma consulta no último horário de um médico, que fica sempre livre,
+     * para que os horários ocupados não mudem de uma invocação para a seguinte.
+     */
+    @Benchmark
+    public Consulta agendarECancelarConsulta() {
+        Paciente paciente = pacientes.get(escolhas[proximaEscolha()]);
+        LocalDateTime dataHora = horarios.get(horarios.size() - 1);
+        gestor.agendarConsulta(paciente, dataHora, medicos.get(proxima % numeroMedicos));
+        Consulta consulta = gestor.pesquisarConsulta(paciente, dataHora);
+        gestor.cancelarConsulta(consulta);
+        return consulta;
+    }
+
+    /**
+     * Regista um paciente novo; o registo cresce ao longo de cada execução.
+     */
+    @Benchmark
+    public Paciente registarPaciente() {
+        Paciente paciente = new Paciente(String.valueOf(proximoId++), "Ana Silva", null);
+        gestor.registarPaciente(paciente);
+        return paciente;
+    }
+}
@@ -0,0 +1,85 @@
+package ProjetoPoo;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Classe que representa a agenda de um médico num período de dias: as marcações, por ordem
+ * cronológica, e a ocupação dos horários úteis do período.
+ */
+public class AgendaMedico {
+    private Medico medico;
+    private LocalDate inicio;
+    private LocalDate fim;
+    private List<EntradaAgenda> marcacoes;
+    private int horariosOcupados;
+    private int horariosUteis;
+
+    /**
+     * Construtor da classe AgendaMedico.
+     *
+     * @param medico           O médico.
+     * @param inicio           O primeiro dia do período (inclusive).
+     * @param fim              O último dia do período (exclusive).
+     * @param marcacoes        As marcações do período, por ordem cronológica.
+     * @param horariosOcupados O número de horários úteis ocupados no período.
+     * @param horariosUteis    O número de horários úteis do período.
+     */
+    public AgendaMedico(Medico medico, LocalDate inicio, LocalDate fim, List<EntradaAgenda> marcacoes,
+                        int horariosOcupados, int horariosUteis) {
+        this.medico = medico;
+        this.inicio = inicio;
+        this.fim = fim;
+        this.marcacoes = marcacoes;
+        this.horariosOcupados = horariosOcupados;
+        this.horariosUteis = horariosUteis;
+    }
+
+    /**
+     * getters
+     * @return
+     */
+    public Medico getMedico() {
+        return medico;
+    }
+
+    public LocalDate getInicio() {
+        return inicio;
+    }
+
+    public LocalDate getFim() {
+        return fim;
+    }
+
+    public List<EntradaAgenda> getMarcacoes() {
+        return marcacoes;
+    }
+
+    public int getHorariosOcupados() {
+        return horariosOcupados;
+    }
+
+    public int getHorariosUteis() {
+        return horariosUteis;
+    }
+
+    /**
+     * Obtém a taxa de ocupação do período: horários ocupados sobre horários úteis.
+     *
+     * @return A taxa de ocupação, entre 0 e 1 (0 se o período não tiver horários úteis).
+     */
+    public double getOcupacao() {
+        return horariosUteis == 0 ? 0.0 : (double) horariosOcupados / horariosUteis;
+    }
+
+    @Override
+    public String toString() {
+        return "AgendaMedico{" +
+                "medico=" + medico.getNome() +
+                ", inicio=" + inicio +
+                ", fim=" + fim +
+                ", marcacoes=" + marcacoes.size() +
+                ", ocupacao=" + horariosOcupados + "/" + horariosUteis +
+                '}';
+    }
+}
@@ -0,0 +1,449 @@
+package ProjetoPoo;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+/**
+ * Classe que guarda as marcações (consultas ou exames) fora do heap, em registos de tamanho fixo.
+ *
+ * Cada marcação é um registo, numerado pela ordem de marcação, com o minuto desde a época,
+ * o código do médico (a sua ordem de registo), o índice do paciente no registo de pacientes
+ * e, nos exames, o código da designação e as observações (até 30 caracteres, guardadas no
+ * próprio registo). As designações são guardadas uma única vez, numa tabela de textos.
+ * Uma consulta ocupa 12 bytes e um exame 84. As classes Consulta e Exame são vistas leves
+ * sobre um registo, criadas apenas quando uma pesquisa as devolve.
+ *
+ * Os registos estão em páginas de tamanho fixo criadas com ByteBuffer.allocateDirect: o
+ * histórico não ocupa o heap nem tem referências que a recolha de lixo tenha de percorrer,
+ * e crescer não obriga a copiar os registos existentes. Os registos só são acrescentados e
+ * nunca mudam de linha. As observações de um exame são escritas sob um contador de versão
+ * (seqlock) para que as leituras, que nunca bloqueiam, não vejam um texto a meio. Reagendar
+ * uma marcação reescreve o minuto e o médico, e cancelá-la marca o bit de sinal do código
+ * do médico; estas escritas são feitas sob o bloqueio do médico e uma leitura simultânea vê
+ * o valor anterior ou o novo de cada coluna. As inserções são sincronizadas.
+ */
+class ArmazemMarcacoes {
+    private static final int BITS_PAGINA = 14;
+    private static final int TAMANHO_PAGINA = 1 << BITS_PAGINA;
+    private static final int MASCARA_PAGINA = TAMANHO_PAGINA - 1;
+    private static final int MAXIMO_OBSERVACOES = 30;
+
+    private static final int MINUTO = 0;
+    private static final int MEDICO = 4;
+    private static final int PACIENTE = 8;
+    private static final int DESIGNACAO = 12;
+    private static final int VERSAO = 16;
+    private static final int COMPRIMENTO = 20;
+    private static final int OBSERVACOES = 22;
+    private static final int REGISTO_CONSULTA = 12;
+    // 22 + 2 * 30 bytes, arredondado a múltiplo de 4 para o contador de versão ficar alinhado
+    private static final int REGISTO_EXAME = 84;
+    private static final short SEM_OBSERVACOES = -1;
+    private static final int CANCELADA = Integer.MIN_VALUE;
+    private static final VarHandle INTEIRO = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    private boolean exames;
+    private int tamanhoRegisto;
+    private List<Medico> medicos;
+    private RegistoPacientes pacientes;
+    private volatile ByteBuffer[] paginas;
+    private volatile int total;
+    private Map<String, Integer> codigosDesignacao;
+    private volatile String[] designacoes;
+    private int totalDesignacoes;
+
+    /**
+     * Construtor da classe ArmazemMarcacoes.
+     *
+     * @param exames    true para guardar exames (com designação e observações), false para consultas.
+     * @param medicos   Os médicos, pela ordem dos seus códigos.
+     * @param pacientes O registo onde estão os pacientes das marcações.
+     */
+    ArmazemMarcacoes(boolean exames, List<Medico> medicos, RegistoPacientes pacientes) {
+        this.exames = exames;
+        this.tamanhoRegisto = exames ? REGISTO_EXAME : REGISTO_CONSULTA;
+        this.medicos = medicos;
+        this.pacientes = pacientes;
+        this.paginas = new ByteBuffer[0];
+        this.codigosDesignacao = new ConcurrentHashMap<>();
+        this.designacoes = new String[16];
+    }
+
+    /**
+     * Adiciona uma marcação.
+     *
+     * @param paciente     O paciente (já registado).
+     * @param codigoMedico O código do médico.
+     * @param dataHora     A data e hora, com precisão ao minuto.
+     * @param designacao   A designação do exame (ignorada nas consultas).
+     * @return A linha da marcação.
+     */
+    synchronized int adicionar(Paciente paciente, int codigoMedico, LocalDateTime dataHora, String designacao) {
+        int minuto = Math.toIntExact(IndiceTemporal.minuto(dataHora));
+        int linha = total;
+        ByteBuffer[] atuais = reservarPaginas(linha + 1);
+        ByteBuffer pagina = atuais[linha >>> BITS_PAGINA];
+        int registo = (linha & MASCARA_PAGINA) * tamanhoRegisto;
+        pagina.putInt(registo + MINUTO, minuto);
+        pagina.putInt(registo + MEDICO, codigoMedico);
+        pagina.putInt(registo + PACIENTE, paciente.getIndice());
+        if (exames) {
+            pagina.putInt(registo + DESIGNACAO, codigoDesignacao(designacao));
+            pagina.putShort(registo + COMPRIMENTO, SEM_OBSERVACOES);
+        }
+        total = linha + 1;
+        return linha;
+    }
+
+    /**
+     * Acrescenta de uma só vez as marcações lidas de um instantâneo, escrevendo as colunas
+     * diretamente nos registos, sem criar nenhum objeto por marcação.
+     *
+     * @param pacientes   O índice do paciente de cada marcação.
+     * @param medicos     O código do médico de cada marcação.
+     * @param minutos     O minuto desde a época de cada marcação.
+     * @param designacoes A posição em textos da designação de cada exame (ignorada nas consultas).
+     * @param textos      A tabela de textos do instantâneo.
+     * @return A linha da primeira marcação acrescentada.
+     */
+    synchronized int carregar(int[] pacientes, int[] medicos, int[] minutos, int[] designacoes, String[] textos) {
+        int primeira = total;
+        ByteBuffer[] atuais = reservarPaginas(primeira + minutos.length);
+        // Código de cada texto no armazém, obtido só na primeira vez que aparece
+        int[] codigos = exames ? new int[textos.length] : null;
+        if (exames) {
+            Arrays.fill(codigos, -1);
+        }
+        for (int i = 0; i < minutos.length; i++) {
+            int linha = primeira + i;
+            ByteBuffer pagina = atuais[linha >>> BITS_PAGINA];
+            int registo = (linha & MASCARA_PAGINA) * tamanhoRegisto;
+            pagina.putInt(registo + MINUTO, minutos[i]);
+            pagina.putInt(registo + MEDICO, medicos[i]);
+            pagina.putInt(registo + PACIENTE, pacientes[i]);
+            if (exames) {
+                int texto = designacoes[i];
+                if (codigos[texto] < 0) {
+                    codigos[texto] = codigoDesignacao(textos[texto]);
+                }
+                pagina.putInt(registo + DESIGNACAO, codigos[texto]);
+                pagina.putShort(registo + COMPRIMENTO, SEM_OBSERVACOES);
+            }
+        }
+        total = primeira + minutos.length;
+        return primeira;
+    }
+
+    /**
+     * Garante que existem páginas para o número de linhas indicado.
+     * Deve ser chamado com o bloqueio do armazém.
+     *
+     * @return As páginas.
+     */
+    private ByteBuffer[] reservarPaginas(int linhas) {
+        ByteBuffer[] atuais = paginas;
+        int necessarias = (linhas + MASCARA_PAGINA) >>> BITS_PAGINA;
+        if (necessarias > atuais.length) {
+            int existentes = atuais.length;
+            atuais = Arrays.copyOf(atuais, necessarias);
+            for (int i = existentes; i < necessarias; i++) {
+                atuais[i] = ByteBuffer.allocateDirect(TAMANHO_PAGINA * tamanhoRegisto).order(ByteOrder.nativeOrder());
+            }
+            paginas = atuais;
+        }
+        return atuais;
+    }
+
+    /**
+     * Obtém o código de uma designação, acrescentando-a à tabela se for nova.
+     * Deve ser chamado com o bloqueio do armazém.
+     */
+    private int codigoDesignacao(String designacao) {
+        Integer codigo = codigosDesignacao.get(designacao);
+        if (codigo == null) {
+            codigo = totalDesignacoes++;
+            String[] atuais = designacoes;
+            if (codigo == atuais.length) {
+                atuais = Arrays.copyOf(atuais, codigo * 2);
+                designacoes = atuais;
+            }
+            atuais[codigo] = designacao;
+            codigosDesignacao.put(designacao, codigo);
+        }
+        return codigo;
+    }
+
+    /**
+     * Obtém o número de marcações guardadas.
+     *
+     * @return O número de linhas.
+     */
+    int tamanho() {
+        return total;
+    }
+
+    private ByteBuffer pagina(int linha) {
+        return paginas[linha >>> BITS_PAGINA];
+    }
+
+    private int registo(int linha) {
+        return (linha & MASCARA_PAGINA) * tamanhoRegisto;
+    }
+
+    /**
+     * Obtém o minuto desde a época de uma marcação.
+     *
+     * @param linha A linha.
+     * @return O minuto.
+     */
+    int minuto(int linha) {
+        return pagina(linha).getInt(registo(linha) + MINUTO);
+    }
+
+    /**
+     * Obtém a data e hora de uma marcação.
+     *
+     * @param linha A linha.
+     * @return A data e hora.
+     */
+    LocalDateTime dataHora(int linha) {
+        return LocalDateTime.ofEpochSecond(minuto(linha) * 60L, 0, ZoneOffset.UTC);
+    }
+
+    /**
+     * Obtém o código do médico de uma marcação.
+     *
+     * @param linha A linha.
+     * @return O código do médico.
+     */
+    int codigoMedico(int linha) {
+        return pagina(linha).getInt(registo(linha) + MEDICO) & ~CANCELADA;
+    }
+
+    /**
+     * Indica se uma marcação foi cancelada.
+     *
+     * @param linha A linha.
+     * @return true se a marcação foi cancelada.
+     */
+    boolean cancelada(int linha) {
+        return (pagina(linha).getInt(registo(linha) + MEDICO) & CANCELADA) != 0;
+    }
+
+    /**
+     * Marca uma marcação como cancelada. A linha continua a existir, para que as vistas já
+     * criadas sobre ela continuem válidas, mas deixa de ser devolvida pelas pesquisas.
+     *
+     * @param linha A linha.
+     */
+    void cancelar(int linha) {
+        ByteBuffer pagina = pagina(linha);
+        int registo = registo(linha);
+        pagina.putInt(registo + MEDICO, pagina.getInt(registo + MEDICO) | CANCELADA);
+    }
+
+    /**
+     * Muda o médico e a data e hora de uma marcação.
+     *
+     * @param linha        A linha.
+     * @param codigoMedico O código do novo médico.
+     * @param dataHora     A nova data e hora, com precisão ao minuto.
+     */
+    void mover(int linha, int codigoMedico, LocalDateTime dataHora) {
+        ByteBuffer pagina = pagina(linha);
+        int registo = registo(linha);
+        pagina.putInt(registo + MINUTO, Math.toIntExact(IndiceTemporal.minuto(dataHora)));
+        pagina.putInt(registo + MEDICO, codigoMedico);
+    }
+
+    /**
+     * Copia as colunas que podem ser alteradas (médico, cancelamento e minuto) de todas as linhas.
+     * Cada linha fica num único long, descodificado com {@link #codigoMedico(long)},
+     * {@link #cancelada(long)} e {@link #minuto(long)}.
+     *
+     * @return O estado de cada linha, pela ordem das linhas.
+     */
+    long[] copiarEstado() {
+        long[] estado = new long[total];
+        for (int linha = 0; linha < estado.length; linha++) {
+            ByteBuffer pagina = pagina(linha);
+            int registo = registo(linha);
+            estado[linha] = ((long) pagina.getInt(registo + MEDICO) << 32) | (pagina.getInt(registo + MINUTO) & 0xFFFFFFFFL);
+        }
+        return estado;
+    }
+
+    /**
+     * Obtém o código do médico de uma linha copiada com {@link #copiarEstado()}.
+     *
+     * @param estado O estado da linha.
+     * @return O código do médico.
+     */
+    static int codigoMedico(long estado) {
+        return (int) (estado >>> 32) & ~CANCELADA;
+    }
+
+    /**
+     * Indica se uma linha copiada com {@link #copiarEstado()} estava cancelada.
+     *
+     * @param estado O estado da linha.
+     * @return true se a marcação estava cancelada.
+     */
+    static boolean cancelada(long estado) {
+        return estado < 0;
+    }
+
+    /**
+     * Obtém o minuto desde a época de uma linha copiada com {@link #copiarEstado()}.
+     *
+     * @param estado O estado da linha.
+     * @return O minuto.
+     */
+    static int minuto(long estado) {
+        return (int) estado;
+    }
+
+    /**
+     * Obtém o médico de uma marcação.
+     *
+     * @param linha A linha.
+     * @return O médico.
+     */
+    Medico medico(int linha) {
+        return medicos.get(codigoMedico(linha));
+    }
+
+    /**
+     * Obtém o índice, no registo de pacientes, do paciente de uma marcação.
+     *
+     * @param linha A linha.
+     * @return O índice do paciente.
+     */
+    int indicePaciente(int linha) {
+        return pagina(linha).getInt(registo(linha) + PACIENTE);
+    }
+
+    /**
+     * Obtém o paciente de uma marcação.
+     *
+     * @param linha A linha.
+     * @return O paciente.
+     */
+    Paciente paciente(int linha) {
+        return pacientes.obterPorIndice(indicePaciente(linha));
+    }
+
+    /**
+     * Obtém a designação de um exame.
+     *
+     * @param linha A linha.
+     * @return A designação, ou null se o armazém for de consultas.
+     */
+    String designacao(int linha) {
+        return exames ? designacoes[pagina(linha).getInt(registo(linha) + DESIGNACAO)] : null;
+    }
+
+    /**
+     * Obtém as observações de um exame. Se estiverem a ser escritas em simultâneo, a leitura
+     * é repetida até obter um texto completo.
+     *
+     * @param linha A linha.
+     * @return As observações, ou null se ainda não tiverem sido registadas.
+     */
+    String observacoes(int linha) {
+        if (!exames) {
+            return null;
+        }
+        ByteBuffer pagina = pagina(linha);
+        int registo = registo(linha);
+        char[] texto = new char[MAXIMO_OBSERVACOES];
+        while (true) {
+            int versao = (int) INTEIRO.getAcquire(pagina, registo + VERSAO);
+            if ((versao & 1) == 0) {
+                int comprimento = pagina.getShort(registo + COMPRIMENTO);
+                for (int i = 0; i < comprimento; i++) {
+                    texto[i] = pagina.getChar(registo + OBSERVACOES + 2 * i);
+                }
+                VarHandle.loadLoadFence();
+                if ((int) INTEIRO.getOpaque(pagina, registo + VERSAO) == versao) {
+                    return comprimento < 0 ? null : new String(texto, 0, comprimento);
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Define as observações de um exame. As escritas no mesmo exame não podem ser simultâneas.
+     *
+     * @param linha       A linha.
+     * @param observacoes As observações (até 30 caracteres).
+     */
+    void definirObservacoes(int linha, String observacoes) {
+        if (observacoes.length() > MAXIMO_OBSERVACOES) {
+            throw new IllegalArgumentException("Observações não podem exceder 30 caracteres.");
+        }
+        ByteBuffer pagina = pagina(linha);
+        int registo = registo(linha);
+        int versao = (int) INTEIRO.getOpaque(pagina, registo + VERSAO);
+        INTEIRO.setOpaque(pagina, registo + VERSAO, versao + 1);
+        VarHandle.storeStoreFence();
+        pagina.putShort(registo + COMPRIMENTO, (short) observacoes.length());
+        for (int i = 0; i < observacoes.length(); i++) {
+            pagina.putChar(registo + OBSERVACOES + 2 * i, observacoes.charAt(i));
+        }
+        INTEIRO.setRelease(pagina, registo + VERSAO, versao + 2);
+    }
+
+    /**
+     * Obtém uma vista da consulta guardada numa linha.
+     *
+     * @param linha A linha.
+     * @return A consulta.
+     */
+    Consulta consulta(int linha) {
+        return new Consulta(this, linha);
+    }
+
+    /**
+     * Obtém uma vista do exame guardado numa linha.
+     *
+     * @param linha A linha.
+     * @return O exame.
+     */
+    Exame exame(int linha) {
+        return new Exame(this, linha);
+    }
+
+    /**
+     * Ordena linhas pela data e hora das marcações; no mesmo minuto, mantém a ordem de marcação.
+     * Cada linha é ordenada juntamente com o seu minuto num único long, sem criar objetos;
+     * na ordem decrescente, o minuto é complementado. As linhas canceladas são omitidas.
+     *
+     * @param linhas As linhas.
+     * @param ordem  A ordem cronológica.
+     * @return As linhas ordenadas.
+     */
+    IntStream ordenarPorDataHora(int[] linhas, Ordem ordem) {
+        boolean decrescente = ordem == Ordem.DECRESCENTE;
+        long[] chaves = new long[linhas.length];
+        int ativas = 0;
+        for (int linha : linhas) {
+            if (!cancelada(linha)) {
+                int minuto = minuto(linha);
+                chaves[ativas++] = ((long) (decrescente ? ~minuto : minuto) << 32) | linha;
+            }
+        }
+        Arrays.sort(chaves, 0, ativas);
+        return Arrays.stream(chaves, 0, ativas).mapToInt(chave -> (int) chave);
+    }
+}
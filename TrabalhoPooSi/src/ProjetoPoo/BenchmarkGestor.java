@@ -0,0 +1,181 @@
+package ProjetoPoo;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Classe que mede o desempenho das operações principais do gestor de consultas e exames
+ * sobre dados sintéticos gerados com uma semente fixa.
+ *
+ * Utilização: java ProjetoPoo.BenchmarkGestor [tamanho...]
+ * (por omissão, 1000, 100000 e 1000000 pacientes e marcações).
+ *
+ * Serve para uma medição rápida, num só processo; os valores de referência devem ser obtidos
+ * com os benchmarks JMH (BenchmarkGestorJmh, em jmh/), que isolam o aquecimento e cada medição.
+ */
+public class BenchmarkGestor {
+    private static final long SEMENTE = 42L;
+    private static final int PESQUISAS = 100000;
+    private static final int CONSULTAS_POR_TIPO = 20;
+    private static final int REPETICOES = 3;
+    private static final int TAMANHO_PAGINA = 20;
+
+    /**
+     * Método principal que executa as medições para cada tamanho indicado.
+     *
+     * @param args Os tamanhos a medir.
+     */
+    public static void main(String[] args) {
+        int[] tamanhos = args.length == 0 ? new int[] {1000, 100000, 1000000} : new int[args.length];
+        for (int i = 0; i < args.length; i++) {
+            tamanhos[i] = Integer.parseInt(args[i]);
+        }
+        // Aquecimento do JIT com um conjunto pequeno de dados
+        executar(1000, false);
+        for (int tamanho : tamanhos) {
+            executar(tamanho, true);
+        }
+    }
+
+    /**
+     * Executa as medições para um tamanho de dados.
+     *
+     * @param tamanho  O número de pacientes e de marcações.
+     * @param imprimir Se os resultados devem ser impressos.
+     */
+    private static void executar(int tamanho, boolean imprimir) {
+        GeradorDadosSinteticos gerador = new GeradorDadosSinteticos(SEMENTE);
+        GerirConsultasExames gestor = new GerirConsultasExames();
+        LocalDateTime inicio = LocalDate.now().plusDays(1).atStartOfDay();
+        List<LocalDateTime> horarios = GeradorDadosSinteticos.horariosUteis(gestor.getConfiguracaoHorario(), inicio);
+        int numeroMedicos = Math.max(1, (tamanho + horarios.size() - 1) / horarios.size());
+        List<Medico> medicos = gerador.gerarMedicos(numeroMedicos);
+        for (Medico medico : medicos) {
+            gestor.registarMedico(medico);
+        }
+        List<Paciente> pacientes = gerador.gerarPacientes(tamanho);
+        List<String> designacoes = new ArrayList<>(tamanho);
+        for (int i = 0; i < tamanho; i++) {
+            designacoes.add(gerador.gerarDesignacao());
+        }
+        if (imprimir) {
+            System.out.println("== " + tamanho + " pacientes e marcações, " + numeroMedicos + " médicos ==");
+        }
+
+        long t0 = System.nanoTime();
+        for (Paciente paciente : pacientes) {
+            gestor.registarPaciente(paciente);
+        }
+        reportar(imprimir, "registarPaciente", System.nanoTime() - t0, tamanho);
+
+        // A marcação k usa o médico k % m, no horário k / m, para nunca colidir
+        long memoriaAntes = imprimir ? memoriaUsada() : 0;
+        long diretaAntes = memoriaDireta();
+        int consultas = tamanho / 2;
+        t0 = System.nanoTime();
+        for (int k = 0; k < consultas; k++) {
+            gestor.agendarConsulta(pacientes.get(k), horarios.get(k / numeroMedicos), medicos.get(k % numeroMedicos));
+        }
+        reportar(imprimir, "agendarConsulta", System.nanoTime() - t0, consultas);
+
+        t0 = System.nanoTime();
+        for (int k = consultas; k < tamanho; k++) {
+            gestor.agendarExame(pacientes.get(k), horarios.get(k / numeroMedicos), designacoes.get(k), medicos.get(k % numeroMedicos));
+        }
+        reportar(imprimir, "agendarExame", System.nanoTime() - t0, tamanho - consultas);
+        if (imprimir) {
+            System.out.printf("%-34s %10d    %14.1f bytes/marcação%n", "memória das marcações", tamanho,
+                    (double) (memoriaUsada() - memoriaAntes) / tamanho);
+            System.out.printf("%-34s %10d    %14.1f bytes/marcação%n", "memória fora do heap", tamanho,
+                    (double) (memoriaDireta() - diretaAntes) / tamanho);
+        }
+
+        for (int r = 0; r < REPETICOES; r++) {
+            t0 = System.nanoTime();
+            int encontrados = 0;
+            for (int i = 0; i < PESQUISAS; i++) {
+                if (gestor.pesquisarPaciente(pacientes.get(gerador.proximoInteiro(tamanho)).getNome()) != null) {
+                    encontrados++;
+                }
+            }
+            reportar(imprimir && r == REPETICOES - 1, "pesquisarPaciente", System.nanoTime() - t0, PESQUISAS, encontrados);
+
+            t0 = System.nanoTime();
+            encontrados = 0;
+            int pesquisasExame = tamanho - consultas == 0 ? 0 : PESQUISAS;
+            for (int i = 0; i < pesquisasExame; i++) {
+                int k = consultas + gerador.proximoInteiro(tamanho - consultas);
+                if (gestor.pesquisarExame(pacientes.get(k), horarios.get(k / numeroMedicos)) != null) {
+                    encontrados++;
+                }
+            }
+            reportar(imprimir && r == REPETICOES - 1, "pesquisarExame", System.nanoTime() - t0, pesquisasExame, encontrados);
+
+            t0 = System.nanoTime();
+            long total = 0;
+            for (int i = 0; i < CONSULTAS_POR_TIPO; i++) {
+                FiltroHistorico filtro = new FiltroHistorico();
+                filtro.setTipoExame(gerador.gerarDesignacao());
+                total += gestor.pesquisarExames(filtro).count();
+            }
+            reportar(imprimir && r == REPETICOES - 1, "pesquisarExames (tipo)", System.nanoTime() - t0, CONSULTAS_POR_TIPO, total);
+
+            t0 = System.nanoTime();
+            total = 0;
+            for (int i = 0; i < CONSULTAS_POR_TIPO; i++) {
+                FiltroHistorico filtro = new FiltroHistorico();
+                filtro.setTipoExame(gerador.gerarDesignacao());
+                total += gestor.pesquisarExames(filtro, Ordem.DECRESCENTE, 0, TAMANHO_PAGINA).count();
+            }
+            reportar(imprimir && r == REPETICOES - 1, "pesquisarExames (tipo, 1.ª página)", System.nanoTime() - t0, CONSULTAS_POR_TIPO, total);
+
+            t0 = System.nanoTime();
+            total = 0;
+            for (int i = 0; i < CONSULTAS_POR_TIPO; i++) {
+                total += gestor.pesquisarHorariosDisponiveisConsulta(medicos.get(gerador.proximoInteiro(numeroMedicos))).count();
+            }
+            reportar(imprimir && r == REPETICOES - 1, "pesquisarHorariosDisponiveisConsulta", System.nanoTime() - t0, CONSULTAS_POR_TIPO, total);
+        }
+    }
+
+    /**
+     * Obtém a memória ocupada no heap depois de pedir algumas recolhas de lixo.
+     */
+    private static long memoriaUsada() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Obtém a memória reservada fora do heap com ByteBuffer.allocateDirect.
+     */
+    private static long memoriaDireta() {
+        long total = 0;
+        for (BufferPoolMXBean reserva : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if (reserva.getName().equals("direct")) {
+                total += reserva.getMemoryUsed();
+            }
+        }
+        return total;
+    }
+
+    private static void reportar(boolean imprimir, String operacao, long nanos, int operacoes) {
+        reportar(imprimir, operacao, nanos, operacoes, -1);
+    }
+
+    private static void reportar(boolean imprimir, String operacao, long nanos, int operacoes, long resultado) {
+        if (!imprimir) {
+            return;
+        }
+        double nanosPorOperacao = operacoes == 0 ? 0 : (double) nanos / operacoes;
+        System.out.printf("%-34s %10d ops %14.1f ns/op%s%n", operacao, operacoes, nanosPorOperacao,
+                resultado < 0 ? "" : "  (resultado=" + resultado + ")");
+    }
+}
@@ -0,0 +1,274 @@
+package ProjetoPoo;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Classe que define os horários dos médicos: duração de cada horário, modelo semanal
+ * (horário de trabalho e dias úteis), exceções da clínica (feriados e horários especiais)
+ * e horizonte de marcação.
+ *
+ * Os horários não são gerados de antemão. Cada horário é identificado pelo seu índice desde
+ * a época (1970-01-01T00:00) e os horários de trabalho de cada dia são calculados quando são
+ * pedidos, a partir do modelo semanal e das exceções. A janela de marcação acompanha o dia
+ * atual: vai do momento presente até ao fim das próximas N semanas.
+ */
+public class ConfiguracaoHorario {
+    private static final int MINUTOS_POR_DIA = 24 * 60;
+
+    private int duracaoMinutos;
+    private LocalTime inicioDia;
+    private LocalTime fimDia;
+    private Set<DayOfWeek> diasUteis;
+    private int horizonteSemanas;
+
+    private int horariosPorDia;
+    private int modelo;
+    private int horariosModelo;
+    private boolean[] diaUtil;
+    private ExcecoesHorario excecoes;
+
+    /**
+     * Construtor da classe ConfiguracaoHorario.
+     *
+     * @param duracaoMinutos   A duração de cada horário, em minutos (divisor de 24 horas).
+     * @param inicioDia        A hora de início do trabalho em cada dia útil.
+     * @param fimDia           A hora de fim do trabalho em cada dia útil (exclusive).
+     * @param diasUteis        Os dias da semana com horários disponíveis.
+     * @param horizonteSemanas O número de semanas, a partir de hoje, em que se pode marcar.
+     * @throws IllegalArgumentException Se algum dos parâmetros for inválido.
+     */
+    public ConfiguracaoHorario(int duracaoMinutos, LocalTime inicioDia, LocalTime fimDia,
+                               Set<DayOfWeek> diasUteis, int horizonteSemanas) {
+        if (inicioDia == null || fimDia == null || diasUteis == null) {
+            throw new IllegalArgumentException("Dados inválidos para a configuração de horários.");
+        }
+        if (duracaoMinutos <= 0 || MINUTOS_POR_DIA % duracaoMinutos != 0) {
+            throw new IllegalArgumentException("A duração de cada horário deve dividir as 24 horas do dia.");
+        }
+        if (horizonteSemanas <= 0) {
+            throw new IllegalArgumentException("Horizonte de marcação inválido.");
+        }
+        this.duracaoMinutos = duracaoMinutos;
+        this.inicioDia = inicioDia;
+        this.fimDia = fimDia;
+        this.diasUteis = diasUteis.isEmpty() ? EnumSet.noneOf(DayOfWeek.class) : EnumSet.copyOf(diasUteis);
+        this.horizonteSemanas = horizonteSemanas;
+
+        this.horariosPorDia = MINUTOS_POR_DIA / duracaoMinutos;
+        this.modelo = intervalo(inicioDia, fimDia);
+        this.horariosModelo = emHorarios(modelo);
+        this.diaUtil = new boolean[7];
+        for (DayOfWeek dia : this.diasUteis) {
+            diaUtil[dia.ordinal()] = true;
+        }
+        this.excecoes = new ExcecoesHorario();
+    }
+
+    /**
+     * Cria a configuração por omissão: horários de uma hora entre as 8h e as 17h,
+     * de segunda a sexta, com marcações até 52 semanas a partir de hoje.
+     *
+     * @return A configuração por omissão.
+     */
+    public static ConfiguracaoHorario predefinida() {
+        return new ConfiguracaoHorario(60, LocalTime.of(8, 0), LocalTime.of(17, 0),
+                EnumSet.range(DayOfWeek.MONDAY, DayOfWeek.FRIDAY), 52);
+    }
+
+    /**
+     * getters
+     * @return
+     */
+    public int getDuracaoMinutos() {
+        return duracaoMinutos;
+    }
+
+    public LocalTime getInicioDia() {
+        return inicioDia;
+    }
+
+    public LocalTime getFimDia() {
+        return fimDia;
+    }
+
+    public Set<DayOfWeek> getDiasUteis() {
+        return EnumSet.copyOf(diasUteis);
+    }
+
+    public int getHorizonteSemanas() {
+        return horizonteSemanas;
+    }
+
+    /**
+     * Obtém o número de horários (úteis ou não) de cada dia.
+     *
+     * @return O número de horários por dia.
+     */
+    int getHorariosPorDia() {
+        return horariosPorDia;
+    }
+
+    /**
+     * Obtém as exceções da clínica ao modelo semanal (feriados e horários especiais).
+     *
+     * @return As exceções.
+     */
+    ExcecoesHorario getExcecoes() {
+        return excecoes;
+    }
+
+    /**
+     * Converte uma data e hora no índice do horário que começa nesse instante.
+     *
+     * @param dataHora A data e hora.
+     * @return O índice do horário, ou -1 se a data e hora não coincidir com o início de um horário.
+     */
+    public int indice(LocalDateTime dataHora) {
+        if (dataHora.getSecond() != 0 || dataHora.getNano() != 0) {
+            return -1;
+        }
+        return indiceDoMinuto(IndiceTemporal.minuto(dataHora));
+    }
+
+    /**
+     * Converte um minuto desde a época no índice do horário que começa nesse minuto.
+     *
+     * @param minuto O minuto desde a época.
+     * @return O índice do horário, ou -1 se o minuto não coincidir com o início de um horário.
+     */
+    int indiceDoMinuto(long minuto) {
+        if (minuto < 0 || minuto % duracaoMinutos != 0 || minuto / duracaoMinutos > Integer.MAX_VALUE) {
+            return -1;
+        }
+        return (int) (minuto / duracaoMinutos);
+    }
+
+    /**
+     * Obtém o índice do primeiro horário (útil ou não) que começa na data e hora indicada ou depois dela.
+     *
+     * @param dataHora A data e hora.
+     * @return O índice, limitado ao intervalo [0, Integer.MAX_VALUE].
+     */
+    public int indiceTeto(LocalDateTime dataHora) {
+        long segundo = dataHora.toEpochSecond(ZoneOffset.UTC);
+        if (segundo <= 0) {
+            return 0;
+        }
+        long duracao = duracaoMinutos * 60L;
+        long indice = segundo / duracao + (segundo % duracao != 0 || dataHora.getNano() != 0 ? 1 : 0);
+        return (int) Math.min(indice, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Obtém o índice do primeiro horário da janela de marcação (o próximo a começar).
+     *
+     * @return O índice.
+     */
+    public int inicioJanela() {
+        return indiceTeto(LocalDateTime.now());
+    }
+
+    /**
+     * Obtém o índice do primeiro horário depois da janela de marcação, que termina no fim do
+     * dia que fica N semanas depois de hoje (esse dia ainda faz parte da janela).
+     *
+     * @return O índice.
+     */
+    public int fimJanela() {
+        long fim = (LocalDate.now().toEpochDay() + 7L * horizonteSemanas + 1) * horariosPorDia;
+        return (int) Math.min(fim, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Converte um índice de horário na data e hora correspondente.
+     *
+     * @param indice O índice do horário.
+     * @return A data e hora do início do horário.
+     */
+    public LocalDateTime dataHora(int indice) {
+        return LocalDateTime.ofEpochSecond((long) indice * duracaoMinutos * 60L, 0, ZoneOffset.UTC);
+    }
+
+    /**
+     * Obtém o dia de um índice de horário.
+     *
+     * @param indice O índice do horário.
+     * @return O número de dias desde a época.
+     */
+    int diaDoIndice(int indice) {
+        return indice / horariosPorDia;
+    }
+
+    /**
+     * Obtém os horários de trabalho de um dia, segundo o modelo semanal, as exceções da
+     * clínica e, com prioridade sobre estas, as exceções de um médico.
+     *
+     * @param dia            O dia, em dias desde a época.
+     * @param excecoesMedico As exceções do médico.
+     * @return O intervalo de horários do dia, em horários desde a meia-noite (ver ExcecoesHorario).
+     */
+    int horariosDoDia(int dia, ExcecoesHorario excecoesMedico) {
+        int predefinido = diaUtil[Math.floorMod(dia + 3, 7)] ? modelo : ExcecoesHorario.FECHADO;
+        int minutos = excecoesMedico.intervalo(dia, excecoes.intervalo(dia, predefinido));
+        return minutos == modelo ? horariosModelo : emHorarios(minutos);
+    }
+
+    /**
+     * Obtém o número de horários úteis da clínica (segundo o modelo semanal e os feriados e
+     * horários especiais) dos dias do intervalo [inicio, fim[.
+     *
+     * @param inicio O primeiro dia (inclusive).
+     * @param fim    O último dia (exclusive).
+     * @return O número de horários úteis.
+     */
+    public int horariosUteisEntre(LocalDate inicio, LocalDate fim) {
+        return horariosUteisEntre(inicio, fim, new ExcecoesHorario());
+    }
+
+    /**
+     * Obtém o número de horários úteis dos dias do intervalo [inicio, fim[, tendo também em conta
+     * as exceções de um médico.
+     */
+    int horariosUteisEntre(LocalDate inicio, LocalDate fim, ExcecoesHorario excecoesMedico) {
+        int total = 0;
+        for (long dia = Math.max(0L, inicio.toEpochDay()); dia < fim.toEpochDay(); dia++) {
+            int horarios = horariosDoDia((int) dia, excecoesMedico);
+            total += ExcecoesHorario.fim(horarios) - ExcecoesHorario.inicio(horarios);
+        }
+        return total;
+    }
+
+    /**
+     * Converte um horário de trabalho num intervalo em minutos desde a meia-noite, verificando
+     * que está alinhado com a duração de cada horário.
+     *
+     * @param inicio A hora de início.
+     * @param fim    A hora de fim (exclusive); meia-noite representa o fim do dia.
+     * @return O intervalo em minutos (ver ExcecoesHorario).
+     * @throws IllegalArgumentException Se o horário não estiver alinhado ou o início não for anterior ao fim.
+     */
+    int intervalo(LocalTime inicio, LocalTime fim) {
+        int minutoInicio = inicio.getHour() * 60 + inicio.getMinute();
+        int minutoFim = fim.equals(LocalTime.MIDNIGHT) ? MINUTOS_POR_DIA : fim.getHour() * 60 + fim.getMinute();
+        if (inicio.getSecond() != 0 || fim.getSecond() != 0 || minutoInicio % duracaoMinutos != 0
+                || minutoFim % duracaoMinutos != 0 || minutoInicio >= minutoFim) {
+            throw new IllegalArgumentException("O horário de trabalho deve estar alinhado com a duração de cada horário.");
+        }
+        return ExcecoesHorario.juntar(minutoInicio, minutoFim);
+    }
+
+    /**
+     * Converte um intervalo em minutos no intervalo dos horários contidos nele.
+     */
+    private int emHorarios(int minutos) {
+        int inicio = (ExcecoesHorario.inicio(minutos) + duracaoMinutos - 1) / duracaoMinutos;
+        int fim = ExcecoesHorario.fim(minutos) / duracaoMinutos;
+        return inicio < fim ? ExcecoesHorario.juntar(inicio, fim) : ExcecoesHorario.FECHADO;
+    }
+}
@@ -4,23 +4,22 @@ import java.time.LocalDateTime;
 
 /**
  * Classe que representa uma consulta médica.
+ * É uma vista sobre uma linha do armazém de consultas do gestor, pelo que duas instâncias
+ * da mesma consulta são iguais.
  */
 public class Consulta {
-    private LocalDateTime dataHora;
-    private Medico medico;
-    private Paciente paciente;
+    private ArmazemMarcacoes armazem;
+    private int linha;
 
     /**
      * Construtor da classe Consulta.
      *
-     * @param dataHora A data e hora da consulta.
-     * @param medico O médico responsável pela consulta.
-     * @param paciente O paciente que será atendido na consulta.
+     * @param armazem O armazém onde a consulta está guardada.
+     * @param linha   A linha da consulta no armazém.
      */
-    public Consulta(LocalDateTime dataHora, Medico medico, Paciente paciente) {
-        this.dataHora = dataHora;
-        this.medico = medico;
-        this.paciente = paciente;
+    Consulta(ArmazemMarcacoes armazem, int linha) {
+        this.armazem = armazem;
+        this.linha = linha;
     }
 
     /**
@@ -29,7 +28,7 @@ public class Consulta {
      * @return A data e hora da consulta.
      */
     public LocalDateTime getDataHora() {
-        return dataHora;
+        return armazem.dataHora(linha);
     }
 
     /**
@@ -38,7 +37,7 @@ public class Consulta {
      * @return O médico responsável pela consulta.
      */
     public Medico getMedico() {
-        return medico;
+        return armazem.medico(linha);
     }
 
     /**
@@ -47,7 +46,47 @@ public class Consulta {
      * @return O paciente que será atendido na consulta.
      */
     public Paciente getPaciente() {
-        return paciente;
+        return armazem.paciente(linha);
+    }
+
+    /**
+     * Indica se a consulta foi cancelada.
+     *
+     * @return true se a consulta foi cancelada.
+     */
+    public boolean isCancelada() {
+        return armazem.cancelada(linha);
+    }
+
+    /**
+     * Obtém o armazém onde a consulta está guardada.
+     */
+    ArmazemMarcacoes getArmazem() {
+        return armazem;
+    }
+
+    /**
+     * Obtém a linha da consulta no armazém.
+     */
+    int getLinha() {
+        return linha;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Consulta)) {
+            return false;
+        }
+        Consulta outra = (Consulta) o;
+        return linha == outra.linha && armazem == outra.armazem;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * System.identityHashCode(armazem) + linha;
     }
 
     /**
@@ -58,9 +97,9 @@ public class Consulta {
     @Override
     public String toString() {
         return "Consulta{" +
-                "dataHora=" + dataHora +
-                ", medico=" + medico.getNome() +
-                ", paciente=" + paciente.getNome() +
+                "dataHora=" + getDataHora() +
+                ", medico=" + getMedico().getNome() +
+                ", paciente=" + getPaciente().getNome() +
                 '}';
     }
 }
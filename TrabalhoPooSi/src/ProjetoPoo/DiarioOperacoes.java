@@ -0,0 +1,870 @@
+package ProjetoPoo;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Classe que representa o diário de operações (write-ahead log) do gestor de consultas e exames.
+ *
+ * Cada alteração ao estado é acrescentada ao fim do segmento atual como um registo binário
+ * [tamanho][tipo][dados][crc32]. As escritas são acumuladas em memória e gravadas por uma
+ * thread própria, que faz um único force() por cada grupo de registos (group commit);
+ * quem precisar de garantir a durabilidade de uma operação pode esperar por ela com
+ * {@link #aguardarDurabilidade(long)}.
+ *
+ * O diário vive numa diretoria com segmentos numerados (diario-N.log) e instantâneos
+ * do estado (instantaneo-N.bin). O instantâneo N contém todo o estado anterior ao
+ * segmento N, pelo que ao abrir basta carregar o instantâneo mais recente e reproduzir
+ * os segmentos a partir do seu número; os segmentos anteriores podem ser removidos.
+ */
+public class DiarioOperacoes implements AutoCloseable {
+    static final byte REGISTAR_MEDICO = 1;
+    static final byte REGISTAR_PACIENTE = 2;
+    static final byte AGENDAR_CONSULTA = 3;
+    static final byte AGENDAR_EXAME = 4;
+    static final byte REGISTAR_RESULTADOS_EXAME = 5;
+    static final byte AGENDAR_LOTE = 6;
+    static final byte CANCELAR_CONSULTA = 7;
+    static final byte CANCELAR_EXAME = 8;
+    static final byte REAGENDAR_CONSULTA = 9;
+    static final byte REAGENDAR_EXAME = 10;
+    static final byte EXCECAO_HORARIO = 11;
+    static final byte REGISTAR_MEDICOS = 12;
+    static final byte REGISTAR_PACIENTES = 13;
+
+    private static final int CABECALHO = 5;
+    private static final int CAUDA = 4;
+    private static final int TAMANHO_MAXIMO_REGISTO = 1 << 20;
+    private static final long SEM_DATA = Long.MIN_VALUE;
+    private static final String PREFIXO_SEGMENTO = "diario-";
+    private static final String SUFIXO_SEGMENTO = ".log";
+    private static final String PREFIXO_INSTANTANEO = "instantaneo-";
+    private static final String SUFIXO_INSTANTANEO = ".bin";
+
+    private Path diretorio;
+    private long segmento;
+    private volatile FileChannel canal;
+    private ReentrantLock bloqueio;
+    private Condition haTrabalho;
+    private Condition gravado;
+    private ByteBuffer pendente;
+    private ByteBuffer emEscrita;
+    private CRC32 crc;
+    private long sequenciaEscrita;
+    private long sequenciaDuravel;
+    private volatile long bytesSegmento;
+    private boolean escritorEmEspera;
+    private boolean fechado;
+    private IOException falha;
+    private Thread escritor;
+
+    /**
+     * Construtor da classe DiarioOperacoes.
+     *
+     * @param diretorio A diretoria do diário.
+     * @param segmento  O número do segmento atual.
+     * @param canal     O canal do segmento atual, já posicionado no fim dos registos válidos.
+     */
+    private DiarioOperacoes(Path diretorio, long segmento, FileChannel canal) {
+        this.diretorio = diretorio;
+        this.segmento = segmento;
+        this.canal = canal;
+        this.bloqueio = new ReentrantLock();
+        this.haTrabalho = bloqueio.newCondition();
+        this.gravado = bloqueio.newCondition();
+        this.pendente = ByteBuffer.allocate(64 * 1024);
+        this.emEscrita = ByteBuffer.allocate(64 * 1024);
+        this.crc = new CRC32();
+        this.escritor = new Thread(this::escrever, "diario-operacoes");
+        this.escritor.setDaemon(true);
+        this.escritor.start();
+    }
+
+    /**
+     * Abre um diário de operações, carregando no gestor o instantâneo mais recente e
+     * reproduzindo os segmentos escritos depois dele. Um registo incompleto ou corrompido
+     * no fim do último segmento (por exemplo, após uma falha durante a escrita) é descartado.
+     *
+     * @param diretorio A diretoria do diário (é criada se não existir).
+     * @param gestor    O gestor onde reproduzir os registos.
+     * @return O diário aberto, pronto a acrescentar novos registos.
+     * @throws IOException Se ocorrer um erro de leitura ou escrita.
+     */
+    public static DiarioOperacoes abrir(Path diretorio, GerirConsultasExames gestor) throws IOException {
+        Files.createDirectories(diretorio);
+        List<Long> instantaneos = listar(diretorio, PREFIXO_INSTANTANEO, SUFIXO_INSTANTANEO);
+        long base = 1;
+        if (!instantaneos.isEmpty()) {
+            base = instantaneos.get(instantaneos.size() - 1);
+            InstantaneoEstado.carregar(ficheiro(diretorio, PREFIXO_INSTANTANEO, base, SUFIXO_INSTANTANEO), gestor);
+        }
+        long atual = base;
+        long tamanhoValido = 0;
+        for (long numero : listar(diretorio, PREFIXO_SEGMENTO, SUFIXO_SEGMENTO)) {
+            if (numero >= base) {
+                atual = numero;
+                tamanhoValido = reproduzir(ficheiro(diretorio, PREFIXO_SEGMENTO, numero, SUFIXO_SEGMENTO), gestor);
+            }
+        }
+        FileChannel canal = FileChannel.open(ficheiro(diretorio, PREFIXO_SEGMENTO, atual, SUFIXO_SEGMENTO),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        canal.truncate(tamanhoValido);
+        canal.position(tamanhoValido);
+        return new DiarioOperacoes(diretorio, atual, canal);
+    }
+
+    /**
+     * Grava os registos pendentes, fecha o segmento atual e passa a escrever num segmento novo.
+     * Só deve ser chamado quando não há operações em curso no gestor.
+     *
+     * @return O número do novo segmento.
+     * @throws IOException Se ocorrer um erro ao gravar ou criar os segmentos.
+     */
+    long rodar() throws IOException {
+        bloqueio.lock();
+        try {
+            try {
+                aguardarDurabilidade(sequenciaEscrita);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrompido ao gravar o diário de operações.", e);
+            }
+            FileChannel novo = FileChannel.open(ficheiro(diretorio, PREFIXO_SEGMENTO, segmento + 1, SUFIXO_SEGMENTO),
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            canal.close();
+            canal = novo;
+            segmento++;
+            bytesSegmento = 0;
+            return segmento;
+        } finally {
+            bloqueio.unlock();
+        }
+    }
+
+    /**
+     * Obtém o ficheiro onde gravar o instantâneo com o número indicado.
+     *
+     * @param numero O número do instantâneo (igual ao do primeiro segmento que não inclui).
+     * @return O caminho do ficheiro.
+     */
+    Path ficheiroInstantaneo(long numero) {
+        return ficheiro(diretorio, PREFIXO_INSTANTANEO, numero, SUFIXO_INSTANTANEO);
+    }
+
+    /**
+     * Remove os segmentos e instantâneos anteriores ao número indicado, já incluídos num instantâneo.
+     *
+     * @param numero O número do instantâneo mais recente.
+     * @throws IOException Se ocorrer um erro ao remover os ficheiros.
+     */
+    void compactar(long numero) throws IOException {
+        for (long anterior : listar(diretorio, PREFIXO_SEGMENTO, SUFIXO_SEGMENTO)) {
+            if (anterior < numero) {
+                Files.deleteIfExists(ficheiro(diretorio, PREFIXO_SEGMENTO, anterior, SUFIXO_SEGMENTO));
+            }
+        }
+        for (long anterior : listar(diretorio, PREFIXO_INSTANTANEO, SUFIXO_INSTANTANEO)) {
+            if (anterior < numero) {
+                Files.deleteIfExists(ficheiro(diretorio, PREFIXO_INSTANTANEO, anterior, SUFIXO_INSTANTANEO));
+            }
+        }
+    }
+
+    /**
+     * Obtém o número de bytes acrescentados ao segmento atual desde que foi aberto.
+     *
+     * @return O número de bytes.
+     */
+    long bytesSegmento() {
+        return bytesSegmento;
+    }
+
+    private static Path ficheiro(Path diretorio, String prefixo, long numero, String sufixo) {
+        return diretorio.resolve(prefixo + String.format("%010d", numero) + sufixo);
+    }
+
+    private static List<Long> listar(Path diretorio, String prefixo, String sufixo) throws IOException {
+        List<Long> numeros = new ArrayList<>();
+        try (DirectoryStream<Path> ficheiros = Files.newDirectoryStream(diretorio, prefixo + "*" + sufixo)) {
+            for (Path ficheiro : ficheiros) {
+                String nome = ficheiro.getFileName().toString();
+                try {
+                    numeros.add(Long.parseLong(nome.substring(prefixo.length(), nome.length() - sufixo.length())));
+                } catch (NumberFormatException e) {
+                    // Ficheiro que não segue a convenção de nomes do diário
+                }
+            }
+        }
+        Collections.sort(numeros);
+        return numeros;
+    }
+
+    /**
+     * Reproduz os registos válidos de um diário no gestor.
+     *
+     * @param ficheiro O ficheiro do diário.
+     * @param gestor   O gestor onde reproduzir os registos.
+     * @return O número de bytes ocupados pelos registos válidos.
+     * @throws IOException Se ocorrer um erro de leitura.
+     */
+    static long reproduzir(Path ficheiro, GerirConsultasExames gestor) throws IOException {
+        long posicao = 0;
+        byte[] dados = new byte[256];
+        CRC32 verificacao = new CRC32();
+        try (InputStream entrada = Files.newInputStream(ficheiro);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(entrada, 1 << 16))) {
+            while (true) {
+                int tamanho;
+                try {
+                    tamanho = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (tamanho < 1 || tamanho > TAMANHO_MAXIMO_REGISTO) {
+                    break;
+                }
+                if (dados.length < tamanho) {
+                    dados = new byte[Math.max(tamanho, dados.length * 2)];
+                }
+                int crcEsperado;
+                try {
+                    in.readFully(dados, 0, tamanho);
+                    crcEsperado = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                verificacao.reset();
+                verificacao.update(dados, 0, tamanho);
+                if ((int) verificacao.getValue() != crcEsperado) {
+                    break;
+                }
+                aplicar(ByteBuffer.wrap(dados, 0, tamanho), gestor);
+                posicao += 4 + tamanho + CAUDA;
+            }
+        }
+        return posicao;
+    }
+
+    private static void aplicar(ByteBuffer registo, GerirConsultasExames gestor) {
+        byte tipo = registo.get();
+        switch (tipo) {
+            case REGISTAR_MEDICO:
+                gestor.restaurarMedico(lerTexto(registo), lerTexto(registo));
+                break;
+            case REGISTAR_PACIENTE:
+                restaurarPaciente(registo, gestor);
+                break;
+            case REGISTAR_MEDICOS: {
+                int total = registo.getInt();
+                for (int i = 0; i < total; i++) {
+                    gestor.restaurarMedico(lerTexto(registo), lerTexto(registo));
+                }
+                break;
+            }
+            case REGISTAR_PACIENTES: {
+                int total = registo.getInt();
+                for (int i = 0; i < total; i++) {
+                    restaurarPaciente(registo, gestor);
+                }
+                break;
+            }
+            case AGENDAR_CONSULTA:
+                gestor.restaurarConsulta(lerTexto(registo), registo.getInt(), lerDataHora(registo));
+                break;
+            case AGENDAR_EXAME:
+                gestor.restaurarExame(lerTexto(registo), registo.getInt(), lerDataHora(registo), lerTexto(registo));
+                break;
+            case REGISTAR_RESULTADOS_EXAME:
+                gestor.restaurarResultadosExame(lerTexto(registo), registo.getInt(), lerDataHora(registo),
+                        lerTexto(registo));
+                break;
+            case AGENDAR_LOTE: {
+                int total = registo.getInt();
+                for (int i = 0; i < total; i++) {
+                    if (registo.get() == AGENDAR_EXAME) {
+                        gestor.restaurarExame(lerTexto(registo), registo.getInt(), lerDataHora(registo), lerTexto(registo));
+                    } else {
+                        gestor.restaurarConsulta(lerTexto(registo), registo.getInt(), lerDataHora(registo));
+                    }
+                }
+                break;
+            }
+            case CANCELAR_CONSULTA:
+            case CANCELAR_EXAME:
+                gestor.restaurarCancelamento(tipo == CANCELAR_EXAME, lerTexto(registo), registo.getInt(),
+                        lerDataHora(registo));
+                break;
+            case REAGENDAR_CONSULTA:
+            case REAGENDAR_EXAME:
+                gestor.restaurarReagendamento(tipo == REAGENDAR_EXAME, lerTexto(registo), registo.getInt(),
+                        lerDataHora(registo), registo.getInt(), lerDataHora(registo));
+                break;
+            case EXCECAO_HORARIO:
+                gestor.restaurarExcecao(registo.getInt(), registo.getInt(), registo.getInt(), registo.getInt());
+                break;
+            default:
+                throw new IllegalStateException("Tipo de registo desconhecido no diário: " + tipo);
+        }
+    }
+
+    private static void restaurarPaciente(ByteBuffer registo, GerirConsultasExames gestor) {
+        String id = lerTexto(registo);
+        String nome = lerTexto(registo);
+        long nascimento = registo.getLong();
+        gestor.restaurarPaciente(id, nome, nascimento == SEM_DATA ? null : new Date(nascimento));
+    }
+
+    /**
+     * Regista o registo de um médico.
+     *
+     * @param medico O médico.
+     * @return O número de sequência do registo.
+     */
+    public long registarMedico(Medico medico) {
+        byte[] nome = bytes(medico.getNome());
+        byte[] especialidade = bytes(medico.getEspecialidade());
+        bloqueio.lock();
+        try {
+            int inicio = iniciarRegisto(REGISTAR_MEDICO, 4 + nome.length + especialidade.length);
+            escreverTexto(nome);
+            escreverTexto(especialidade);
+            return terminarRegisto(inicio);
+        } finally {
+            bloqueio.unlock();
+        }
+    }
+
+    /**
+     * Regista o registo de um paciente.
+     *
+     * @param paciente O paciente.
+     * @return O número de sequência do registo.
+     */
+    public long registarPaciente(Paciente paciente) {
+        byte[] id = bytes(paciente.getId());
+        byte[] nome = bytes(paciente.getNome());
+        Date dataNascimento = paciente.getDataNascimento();
+        bloqueio.lock();
+        try {
+            int inicio = iniciarRegisto(REGISTAR_PACIENTE, 4 + id.length + nome.length + 8);
+            escreverTexto(id);
+            escreverTexto(nome);
+            pendente.putLong(dataNascimento == null ? SEM_DATA : dataNascimento.getTime());
+            return terminarRegisto(inicio);
+        } finally {
+            bloqueio.unlock();
+        }
+    }
+
+    /**
+     * Regista o registo de um lote de médicos. O lote é gravado num único registo, ou em vários
+     * seguidos se não couber num só; cada registo é reproduzido independentemente dos outros.
+     *
+     * @param medicos Os médicos.
+     * @return O número de sequência do último registo, ou 0 se o lote estiver vazio.
+     */
+    public long registarMedicos(List<Medico> medicos) {
+        byte[][] nomes = new byte[medicos.size()][];
+        byte[][] especialidades = new byte[medicos.size()][];
+        int[] tamanhos = new int[medicos.size()];
+        for (int i = 0; i < tamanhos.length; i++) {
+            nomes[i] = bytes(medicos.get(i).getNome());
+            especialidades[i] = bytes(medicos.get(i).getEspecialidade());
+            tamanhos[i] = 4 + nomes[i].length + especialidades[i].length;
+        }
+        bloqueio.lock();
+        try {
+            long sequencia = 0;
+            for (int de = 0, ate; de < tamanhos.length; de = ate) {
+                ate = fimParte(tamanhos, de);
+                int inicio = iniciarRegisto(REGISTAR_MEDICOS, tamanhoParte(tamanhos, de, ate));
+                pendente.putInt(ate - de);
+                for (int i = de; i < ate; i++) {
+                    escreverTexto(nomes[i]);
+                    escreverTexto(especialidades[i]);
+                }
+                sequencia = terminarRegisto(inicio);
+            }
+            return sequencia;
+        } finally {
+            bloqueio.unlock();
+        }
+    }
+
+    /**
+     * Regista o registo de um lote de pacientes. O lote é gravado num único registo, ou em vários
+     * seguidos se não couber num só; cada registo é reproduzido independentemente dos outros.
+     *
+     * @param pacientes Os pacientes.
+     * @return O número de sequência do último registo, ou 0 se o lote estiver vazio.
+     */
+    public long registarPacientes(List<Paciente> pacientes) {
+        byte[][] ids = new byte[pacientes.size()][];
+        byte[][] nomes = new byte[pacientes.size()][];
+        int[] tamanhos = new int[pacientes.size()];
+        for (int i = 0; i < tamanhos.length; i++) {
+            ids[i] = bytes(pacientes.get(i).getId());
+            nomes[i] = bytes(pacientes.get(i).getNome());
+            tamanhos[i] = 4 + ids[i].length + nomes[i].length + 8;
+        }
+        bloqueio.lock();
+        try {
+            long sequencia = 0;
+            for (int de = 0, ate; de < tamanhos.length; de = ate) {
+                ate = fimParte(tamanhos, de);
+                int inicio = iniciarRegisto(REGISTAR_PACIENTES, tamanhoParte(tamanhos, de, ate));
+                pendente.putInt(ate - de);
+                for (int i = de; i < ate; i++) {
+                    Date dataNascimento = pacientes.get(i).getDataNascimento();
+                    escreverTexto(ids[i]);
+                    escreverTexto(nomes[i]);
+                    pendente.putLong(dataNascimento == null ? SEM_DATA : dataNascimento.getTime());
+                }
+                sequencia = terminarRegisto(inicio);
+            }
+            return sequencia;
+        } finally {
+            bloqueio.unlock();
+        }
+    }
+
+    /**
+     * Regista o agendamento de uma consulta.
+     *
+     * @param paciente     O paciente.
+     * @param dataHora     A data e hora da consulta.
+     * @param codigoMedico O código do médico.
+     * @return O número de sequência do registo.
+     */
+    public long registarConsulta(Paciente paciente, LocalDateTime dataHora, int codigoMedico) {
+        byte[] pacienteId = bytes(paciente.getId());
+        bloqueio.lock();
+        try {
+            int inicio = iniciarRegisto(AGENDAR_CONSULTA, 2 + pacienteId.length + 4 + 8);
+            escreverTexto(pacienteId);
+            pendente.putInt(codigoMedico);
+            escreverDataHora(dataHora);
+            return terminarRegisto(inicio);
+        } finally {
+            bloqueio.unlock();
+        }
+    }
+
+    /**
+     * Regista o agendamento de um exame.
+     *
+     * @param paciente     O paciente.
+     * @param dataHora     A data e hora do exame.
+     * @param designacao   A designação do exame.
+     * @param codigoMedico O código do médico.
+     * @return O número de sequência do registo.
+     */
+    public long registarExame(Paciente paciente, LocalDateTime dataHora, String designacao, int codigoMedico) {
+        byte[] pacienteId = bytes(paciente.getId());
+        byte[] textoDesignacao = bytes(designacao);
+        bloqueio.lock();
+        try {
+            int inicio = iniciarRegisto(AGENDAR_EXAME, 4 + pacienteId.length + 4 + 8 + textoDesignacao.length);
+            escreverTexto(pacienteId);
+            pendente.putInt(codigoMedico);
+            escreverDataHora(dataHora);
+            escreverTexto(textoDesignacao);
+            return terminarRegisto(inicio);
+        } finally {
+            bloqueio.unlock();
+        }
+    }
+
+    /**
+     * Regista o agendamento de um lote de consultas e exames como um único registo,
+     * para que seja reproduzido na íntegra ou não seja reproduzido de todo.
+     *
+     * @param pedidos        Os pedidos de marcação do lote.
+     * @param codigosMedicos Os códigos dos médicos de cada pedido.
+     * @return O número de sequência do registo.
+     * @throws IllegalArgumentException Se o lote não couber num registo.
+     */
+    public long registarLote(List<PedidoMarcacao> pedidos, int[] codigosMedicos) {
+        byte[][] pacientes = new byte[pedidos.size()][];
+        byte[][] designacoes = new byte[pedidos.size()][];
+        long tamanhoDados = 4;
+        for (int i = 0; i < pedidos.size(); i++) {
+            PedidoMarcacao pedido = pedidos.get(i);
+            pacientes[i] = bytes(pedido.getPaciente().getId());
+            tamanhoDados += 1 + 2 + pacientes[i].length + 4 + 8;
+            if (pedido.eExame()) {
+                designacoes[i] = bytes(pedido.getDesignacao());
+                tamanhoDados += 2 + designacoes[i].length;
+            }
+        }
+        if (CABECALHO + tamanhoDados + CAUDA > TAMANHO_MAXIMO_REGISTO) {
+            throw new IllegalArgumentException("Lote demasiado grande para o diário de operações.");
+        }
+        bloqueio.lock();
+        try {
+            int inicio = iniciarRegisto(AGENDAR_LOTE, (int) tamanhoDados);
+            pendente.putInt(pedidos.size());
+            for (int i = 0; i < pedidos.size(); i++) {
+                pendente.put(designacoes[i] == null ? AGENDAR_CONSULTA : AGENDAR_EXAME);
+                escreverTexto(pacientes[i]);
+                pendente.putInt(codigosMedicos[i]);
+                escreverDataHora(pedidos.get(i).getDataHora());
+                if (designacoes[i] != null) {
+                    escreverTexto(designacoes[i]);
+                }
+            }
+            return terminarRegisto(inicio);
+        } finally {
+            bloqueio.unlock();
+        }
+    }
+
+    /**
+     * Regista os resultados de um exame.
+     *
+     * @param exame        O exame.
+     * @param observacoes  As observações do exame.
+     * @param codigoMedico O código do médico.
+     * @return O número de sequência do registo.
+     */
+    public long registarResultadosExame(Exame exame, String observacoes, int codigoMedico) {
+        byte[] pacienteId = bytes(exame.getPaciente().getId());
+        byte[] texto = bytes(observacoes);
+        bloqueio.lock();
+        try {
+            int inicio = iniciarRegisto(REGISTAR_RESULTADOS_EXAME, 4 + pacienteId.length + 4 + 8 + texto.length);
+            escreverTexto(pacienteId);
+            pendente.putInt(codigoMedico);
+            escreverDataHora(exame.getDataHora());
+            escreverTexto(texto);
+            return terminarRegisto(inicio);
+        } finally {
+            bloqueio.unlock();
+        }
+    }
+
+    /**
+     * Regista o cancelamento de uma consulta.
+     *
+     * @param consulta     A consulta.
+     * @param codigoMedico O código do médico.
+     * @return O número de sequência do registo.
+     */
+    public long registarCancelamentoConsulta(Consulta consulta, int codigoMedico) {
+        return registarAlteracao(CANCELAR_CONSULTA, consulta.getPaciente(), codigoMedico, consulta.getDataHora(), 0, null);
+    }
+
+    /**
+     * Regista o cancelamento de um exame.
+     *
+     * @param exame        O exame.
+     * @param codigoMedico O código do médico.
+     * @return O número de sequência do registo.
+     */
+    public long registarCancelamentoExame(Exame exame, int codigoMedico) {
+        return registarAlteracao(CANCELAR_EXAME, exame.getPaciente(), codigoMedico, exame.getDataHora(), 0, null);
+    }
+
+    /**
+     * Regista o reagendamento de uma consulta, que ainda tem o médico e a data e hora anteriores.
+     *
+     * @param consulta       A consulta.
+     * @param codigoAnterior O código do médico antes do reagendamento.
+     * @param codigoMedico   O código do novo médico.
+     * @param dataHora       A nova data e hora.
+     * @return O número de sequência do registo.
+     */
+    public long registarReagendamentoConsulta(Consulta consulta, int codigoAnterior, int codigoMedico,
+                                              LocalDateTime dataHora) {
+        return registarAlteracao(REAGENDAR_CONSULTA, consulta.getPaciente(), codigoAnterior, consulta.getDataHora(),
+                codigoMedico, dataHora);
+    }
+
+    /**
+     * Regista o reagendamento de um exame, que ainda tem o médico e a data e hora anteriores.
+     *
+     * @param exame          O exame.
+     * @param codigoAnterior O código do médico antes do reagendamento.
+     * @param codigoMedico   O código do novo médico.
+     * @param dataHora       A nova data e hora.
+     * @return O número de sequência do registo.
+     */
+    public long registarReagendamentoExame(Exame exame, int codigoAnterior, int codigoMedico, LocalDateTime dataHora) {
+        return registarAlteracao(REAGENDAR_EXAME, exame.getPaciente(), codigoAnterior, exame.getDataHora(),
+                codigoMedico, dataHora);
+    }
+
+    /**
+     * Regista o cancelamento (sem nova data e hora) ou o reagendamento de uma marcação,
+     * identificada pelo paciente, médico e data e hora que tinha.
+     */
+    private long registarAlteracao(byte tipo, Paciente paciente, int codigoAnterior, LocalDateTime dataHoraAnterior,
+                                   int codigoMedico, LocalDateTime dataHora) {
+        byte[] pacienteId = bytes(paciente.getId());
+        bloqueio.lock();
+        try {
+            int inicio = iniciarRegisto(tipo, 2 + pacienteId.length + 4 + 8 + (dataHora == null ? 0 : 4 + 8));
+            escreverTexto(pacienteId);
+            pendente.putInt(codigoAnterior);
+            escreverDataHora(dataHoraAnterior);
+            if (dataHora != null) {
+                pendente.putInt(codigoMedico);
+                escreverDataHora(dataHora);
+            }
+            return terminarRegisto(inicio);
+        } finally {
+            bloqueio.unlock();
+        }
+    }
+
+    /**
+     * Regista a definição ou remoção de uma exceção de horário nos dias do intervalo [diaInicio, diaFim[.
+     *
+     * @param codigoMedico O código do médico, ou -1 para uma exceção da clínica.
+     * @param diaInicio    O primeiro dia, em dias desde a época (inclusive).
+     * @param diaFim       O último dia, em dias desde a época (exclusive).
+     * @param intervalo    O intervalo de trabalho em minutos, ou -1 para remover as exceções.
+     * @return O número de sequência do registo.
+     */
+    public long registarExcecaoHorario(int codigoMedico, int diaInicio, int diaFim, int intervalo) {
+        bloqueio.lock();
+        try {
+            int inicio = iniciarRegisto(EXCECAO_HORARIO, 4 * 4);
+            pendente.putInt(codigoMedico);
+            pendente.putInt(diaInicio);
+            pendente.putInt(diaFim);
+            pendente.putInt(intervalo);
+            return terminarRegisto(inicio);
+        } finally {
+            bloqueio.unlock();
+        }
+    }
+
+    /**
+     * Obtém o número de sequência do último registo feito, gravado ou não.
+     *
+     * @return O número de sequência, ou 0 se ainda não houve registos.
+     */
+    long ultimaSequencia() {
+        bloqueio.lock();
+        try {
+            return sequenciaEscrita;
+        } finally {
+            bloqueio.unlock();
+        }
+    }
+
+    /**
+     * Espera até que o registo com o número de sequência indicado esteja gravado em disco.
+     *
+     * @param sequencia O número de sequência devolvido por uma das operações de registo.
+     * @throws IOException Se a escrita no diário falhar.
+     * @throws InterruptedException Se a thread for interrompida durante a espera.
+     */
+    public void aguardarDurabilidade(long sequencia) throws IOException, InterruptedException {
+        bloqueio.lock();
+        try {
+            while (sequenciaDuravel < sequencia && falha == null && !fechado) {
+                if (escritorEmEspera) {
+                    haTrabalho.signal();
+                }
+                gravado.await();
+            }
+            if (falha != null) {
+                throw falha;
+            }
+        } finally {
+            bloqueio.unlock();
+        }
+    }
+
+    /**
+     * Grava os registos pendentes e fecha o diário.
+     *
+     * @throws IOException Se a escrita no diário falhar.
+     */
+    @Override
+    public void close() throws IOException {
+        bloqueio.lock();
+        try {
+            if (fechado) {
+                return;
+            }
+            fechado = true;
+            haTrabalho.signal();
+        } finally {
+            bloqueio.unlock();
+        }
+        try {
+            escritor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        canal.close();
+        if (falha != null) {
+            throw falha;
+        }
+    }
+
+    /**
+     * Ciclo da thread de escrita: troca o buffer pendente pelo de escrita e grava-o com um único force().
+     */
+    private void escrever() {
+        while (true) {
+            long alvo;
+            bloqueio.lock();
+            try {
+                while (pendente.position() == 0 && !fechado) {
+                    escritorEmEspera = true;
+                    try {
+                        haTrabalho.await(10, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        fechado = true;
+                    }
+                    escritorEmEspera = false;
+                }
+                if (pendente.position() == 0) {
+                    gravado.signalAll();
+                    return;
+                }
+                ByteBuffer troca = emEscrita;
+                emEscrita = pendente;
+                pendente = troca;
+                alvo = sequenciaEscrita;
+            } finally {
+                bloqueio.unlock();
+            }
+            IOException erro = null;
+            try {
+                emEscrita.flip();
+                while (emEscrita.hasRemaining()) {
+                    canal.write(emEscrita);
+                }
+                canal.force(false);
+            } catch (IOException e) {
+                erro = e;
+            }
+            emEscrita.clear();
+            bloqueio.lock();
+            try {
+                if (erro != null) {
+                    falha = erro;
+                    fechado = true;
+                } else {
+                    sequenciaDuravel = alvo;
+                }
+                gravado.signalAll();
+            } finally {
+                bloqueio.unlock();
+            }
+            if (erro != null) {
+                return;
+            }
+        }
+    }
+
+    private int iniciarRegisto(byte tipo, int tamanhoDados) {
+        if (fechado) {
+            throw new IllegalStateException("Diário de operações fechado" + (falha == null ? "." : ": " + falha.getMessage()));
+        }
+        int tamanhoTotal = CABECALHO + tamanhoDados + CAUDA;
+        if (pendente.remaining() < tamanhoTotal) {
+            ByteBuffer maior = ByteBuffer.allocate(Math.max(pendente.capacity() * 2, pendente.position() + tamanhoTotal));
+            pendente.flip();
+            maior.put(pendente);
+            pendente = maior;
+        }
+        int inicio = pendente.position();
+        pendente.putInt(0);
+        pendente.put(tipo);
+        return inicio;
+    }
+
+    /**
+     * Obtém o fim da parte de um lote que começa na posição indicada e cabe num único registo
+     * (com o número de elementos no início). Cada elemento cabe sempre sozinho num registo,
+     * porque os seus textos têm no máximo 32767 bytes.
+     *
+     * @param tamanhos O tamanho de cada elemento do lote.
+     * @param de       A primeira posição da parte.
+     * @return A posição a seguir à última da parte.
+     */
+    private static int fimParte(int[] tamanhos, int de) {
+        long tamanho = CABECALHO + 4 + CAUDA + tamanhos[de];
+        int ate = de + 1;
+        while (ate < tamanhos.length && tamanho + tamanhos[ate] <= TAMANHO_MAXIMO_REGISTO) {
+            tamanho += tamanhos[ate++];
+        }
+        return ate;
+    }
+
+    private static int tamanhoParte(int[] tamanhos, int de, int ate) {
+        int tamanho = 4;
+        for (int i = de; i < ate; i++) {
+            tamanho += tamanhos[i];
+        }
+        return tamanho;
+    }
+
+    private long terminarRegisto(int inicio) {
+        int tamanho = pendente.position() - inicio - 4;
+        pendente.putInt(inicio, tamanho);
+        crc.reset();
+        crc.update(pendente.array(), inicio + 4, tamanho);
+        pendente.putInt((int) crc.getValue());
+        bytesSegmento += tamanho + 4 + CAUDA;
+        sequenciaEscrita++;
+        if (escritorEmEspera) {
+            haTrabalho.signal();
+        }
+        return sequenciaEscrita;
+    }
+
+    private void escreverTexto(byte[] texto) {
+        pendente.putShort((short) texto.length);
+        pendente.put(texto);
+    }
+
+    private void escreverDataHora(LocalDateTime dataHora) {
+        pendente.putLong(dataHora.toEpochSecond(ZoneOffset.UTC));
+    }
+
+    private static byte[] bytes(String texto) {
+        byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Texto demasiado longo para o diário de operações.");
+        }
+        return bytes;
+    }
+
+    private static String lerTexto(ByteBuffer registo) {
+        int tamanho = registo.getShort();
+        String texto = new String(registo.array(), registo.arrayOffset() + registo.position(), tamanho, StandardCharsets.UTF_8);
+        registo.position(registo.position() + tamanho);
+        return texto;
+    }
+
+    private static LocalDateTime lerDataHora(ByteBuffer registo) {
+        return LocalDateTime.ofEpochSecond(registo.getLong(), 0, ZoneOffset.UTC);
+    }
+}
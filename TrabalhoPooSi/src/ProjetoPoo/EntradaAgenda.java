@@ -0,0 +1,79 @@
+package ProjetoPoo;
+
+import java.time.LocalDateTime;
+
+/**
+ * Classe que representa uma marcação (consulta ou exame) na agenda de um médico.
+ */
+public class EntradaAgenda {
+    private Consulta consulta;
+    private Exame exame;
+
+    /**
+     * Construtor da classe EntradaAgenda para uma consulta.
+     *
+     * @param consulta A consulta.
+     */
+    public EntradaAgenda(Consulta consulta) {
+        this.consulta = consulta;
+    }
+
+    /**
+     * Construtor da classe EntradaAgenda para um exame.
+     *
+     * @param exame O exame.
+     */
+    public EntradaAgenda(Exame exame) {
+        this.exame = exame;
+    }
+
+    /**
+     * Indica se a marcação é um exame.
+     *
+     * @return true se for um exame, false se for uma consulta.
+     */
+    public boolean eExame() {
+        return exame != null;
+    }
+
+    /**
+     * Obtém a consulta.
+     *
+     * @return A consulta, ou null se a marcação for um exame.
+     */
+    public Consulta getConsulta() {
+        return consulta;
+    }
+
+    /**
+     * Obtém o exame.
+     *
+     * @return O exame, ou null se a marcação for uma consulta.
+     */
+    public Exame getExame() {
+        return exame;
+    }
+
+    /**
+     * Obtém a data e hora da marcação.
+     *
+     * @return A data e hora.
+     */
+    public LocalDateTime getDataHora() {
+        return exame != null ? exame.getDataHora() : consulta.getDataHora();
+    }
+
+    /**
+     * Obtém o paciente da marcação.
+     *
+     * @return O paciente.
+     */
+    public Paciente getPaciente() {
+        return exame != null ? exame.getPaciente() : consulta.getPaciente();
+    }
+
+    @Override
+    public String toString() {
+        return exame != null ? exame.toString() : consulta.toString();
+    }
+}
@@ -4,27 +4,22 @@ import java.time.LocalDateTime;
 
 /**
  * Classe que representa um exame médico.
+ * É uma vista sobre uma linha do armazém de exames do gestor, pelo que duas instâncias
+ * do mesmo exame são iguais e as observações definidas numa são vistas por todas.
  */
 public class Exame {
-    private LocalDateTime dataHora;
-    private String designacao;
-    private String observacoes;
-    private Medico medico;
-    private Paciente paciente;
+    private ArmazemMarcacoes armazem;
+    private int linha;
 
     /**
      * Construtor da classe Exame.
      *
-     * @param dataHora    A data e hora do exame.
-     * @param designacao  A designação do exame.
-     * @param medico      O médico responsável pelo exame.
-     * @param paciente    O paciente que realizará o exame.
+     * @param armazem O armazém onde o exame está guardado.
+     * @param linha   A linha do exame no armazém.
      */
-    public Exame(LocalDateTime dataHora, String designacao, Medico medico, Paciente paciente) {
-        this.dataHora = dataHora;
-        this.designacao = designacao;
-        this.medico = medico;
-        this.paciente = paciente;
+    Exame(ArmazemMarcacoes armazem, int linha) {
+        this.armazem = armazem;
+        this.linha = linha;
     }
 
     /**
@@ -33,7 +28,7 @@ public class Exame {
      * @return A data e hora do exame.
      */
     public LocalDateTime getDataHora() {
-        return dataHora;
+        return armazem.dataHora(linha);
     }
 
     /**
@@ -42,7 +37,7 @@ public class Exame {
      * @return A designação do exame.
      */
     public String getDesignacao() {
-        return designacao;
+        return armazem.designacao(linha);
     }
 
     /**
@@ -51,7 +46,7 @@ public class Exame {
      * @return O médico responsável pelo exame.
      */
     public Medico getMedico() {
-        return medico;
+        return armazem.medico(linha);
     }
 
     /**
@@ -60,7 +55,7 @@ public class Exame {
      * @return O paciente que realizará o exame.
      */
     public Paciente getPaciente() {
-        return paciente;
+        return armazem.paciente(linha);
     }
 
     /**
@@ -69,20 +64,60 @@ public class Exame {
      * @return As observações do exame.
      */
     public String getObservacoes() {
-        return observacoes;
+        return armazem.observacoes(linha);
     }
 
     /**
-     * Define as observações do exame.
+     * Define as observações do exame. Só pode ser chamado com o bloqueio do médico do exame
+     * (ou durante a reposição do estado), porque as escritas no mesmo exame não podem ser
+     * simultâneas; fora do pacote, os resultados são registados com
+     * {@link GerirConsultasExames#registarResultadosExame(Exame, String)}.
      *
      * @param observacoes As observações do exame.
      * @throws IllegalArgumentException Se as observações excederem 30 caracteres.
      */
-    public void setObservacoes(String observacoes) {
-        if (observacoes.length() > 30) {
-            throw new IllegalArgumentException("Observações não podem exceder 30 caracteres.");
+    void setObservacoes(String observacoes) {
+        armazem.definirObservacoes(linha, observacoes);
+    }
+
+    /**
+     * Indica se o exame foi cancelado.
+     *
+     * @return true se o exame foi cancelado.
+     */
+    public boolean isCancelado() {
+        return armazem.cancelada(linha);
+    }
+
+    /**
+     * Obtém o armazém onde o exame está guardado.
+     */
+    ArmazemMarcacoes getArmazem() {
+        return armazem;
+    }
+
+    /**
+     * Obtém a linha do exame no armazém.
+     */
+    int getLinha() {
+        return linha;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Exame)) {
+            return false;
         }
-        this.observacoes = observacoes;
+        Exame outro = (Exame) o;
+        return linha == outro.linha && armazem == outro.armazem;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * System.identityHashCode(armazem) + linha;
     }
 
     /**
@@ -93,11 +128,11 @@ public class Exame {
     @Override
     public String toString() {
         return "Exame{" +
-                "dataHora=" + dataHora +
-                ", designacao='" + designacao + '\'' +
-                ", observacoes='" + observacoes + '\'' +
-                ", medico=" + medico.getNome() +
-                ", paciente=" + paciente.getNome() +
+                "dataHora=" + getDataHora() +
+                ", designacao='" + getDesignacao() + '\'' +
+                ", observacoes='" + getObservacoes() + '\'' +
+                ", medico=" + getMedico().getNome() +
+                ", paciente=" + getPaciente().getNome() +
                 '}';
     }
 }
@@ -0,0 +1,100 @@
+package ProjetoPoo;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Classe que guarda as exceções ao modelo semanal de horários, da clínica ou de um médico:
+ * para cada dia com exceção, o intervalo de trabalho desse dia, em minutos desde a meia-noite.
+ * Um intervalo vazio fecha o dia, como num feriado ou numa ausência.
+ * Só os dias com exceção ocupam memória; sem exceções, a consulta de um dia custa O(1).
+ */
+class ExcecoesHorario {
+    /** Intervalo de um dia fechado. */
+    static final int FECHADO = 0;
+
+    private ConcurrentNavigableMap<Integer, Integer> porDia;
+
+    /**
+     * Construtor da classe ExcecoesHorario, sem exceções.
+     */
+    ExcecoesHorario() {
+        this.porDia = new ConcurrentSkipListMap<>();
+    }
+
+    /**
+     * Define o intervalo de trabalho de um dia, substituindo o do modelo semanal.
+     *
+     * @param dia       O dia, em dias desde a época.
+     * @param intervalo O intervalo, em minutos (ver {@link #juntar(int, int)}), ou {@link #FECHADO}.
+     */
+    void definir(int dia, int intervalo) {
+        porDia.put(dia, intervalo);
+    }
+
+    /**
+     * Remove a exceção de um dia, que volta a seguir o modelo semanal.
+     *
+     * @param dia O dia, em dias desde a época.
+     */
+    void remover(int dia) {
+        porDia.remove(dia);
+    }
+
+    /**
+     * Obtém o intervalo de trabalho de um dia.
+     *
+     * @param dia         O dia, em dias desde a época.
+     * @param predefinido O intervalo a usar se o dia não tiver exceção.
+     * @return O intervalo do dia, em minutos.
+     */
+    int intervalo(int dia, int predefinido) {
+        if (porDia.isEmpty()) {
+            return predefinido;
+        }
+        Integer intervalo = porDia.get(dia);
+        return intervalo == null ? predefinido : intervalo;
+    }
+
+    /**
+     * Copia as exceções.
+     *
+     * @return Um mapa ordenado do dia (em dias desde a época) para o intervalo em minutos.
+     */
+    Map<Integer, Integer> copiar() {
+        return new TreeMap<>(porDia);
+    }
+
+    /**
+     * Junta o início e o fim de um intervalo num inteiro.
+     *
+     * @param inicio O início (inclusive).
+     * @param fim    O fim (exclusive).
+     * @return O intervalo.
+     */
+    static int juntar(int inicio, int fim) {
+        return (inicio << 16) | fim;
+    }
+
+    /**
+     * Obtém o início de um intervalo.
+     *
+     * @param intervalo O intervalo.
+     * @return O início (inclusive).
+     */
+    static int inicio(int intervalo) {
+        return intervalo >>> 16;
+    }
+
+    /**
+     * Obtém o fim de um intervalo.
+     *
+     * @param intervalo O intervalo.
+     * @return O fim (exclusive).
+     */
+    static int fim(int intervalo) {
+        return intervalo & 0xFFFF;
+    }
+}
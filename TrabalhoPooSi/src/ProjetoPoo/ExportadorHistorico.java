@@ -0,0 +1,313 @@
+package ProjetoPoo;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Classe que exporta o histórico de consultas e exames em CSV ou JSON Lines.
+ *
+ * As marcações são lidas do gestor à medida que são escritas, campo a campo, num escritor
+ * com buffer, sem construir textos nem listas intermédias: a memória usada não depende do
+ * tamanho do histórico. Cada registo tem os campos tipo, idPaciente, paciente, medico,
+ * dataHora, designacao e observacoes (os dois últimos vazios nas consultas).
+ * Uma instância não deve ser usada por várias threads em simultâneo.
+ */
+public class ExportadorHistorico {
+    private static final String[] CAMPOS = {"tipo", "idPaciente", "paciente", "medico", "dataHora", "designacao", "observacoes"};
+    private static final char[] HEXADECIMAL = "0123456789abcdef".toCharArray();
+
+    private GerirConsultasExames gestor;
+    private Formato formato;
+    private char[] textoDataHora;
+
+    /**
+     * Formatos de exportação.
+     */
+    public enum Formato {
+        /** Valores separados por vírgulas, com uma linha de cabeçalho. */
+        CSV,
+        /** Um objeto JSON por linha. */
+        JSONL
+    }
+
+    /**
+     * Construtor da classe ExportadorHistorico.
+     *
+     * @param gestor  O gestor de onde exportar o histórico.
+     * @param formato O formato de exportação.
+     */
+    public ExportadorHistorico(GerirConsultasExames gestor, Formato formato) {
+        if (gestor == null || formato == null) {
+            throw new IllegalArgumentException("Dados inválidos para exportar o histórico.");
+        }
+        this.gestor = gestor;
+        this.formato = formato;
+        this.textoDataHora = new char[16];
+    }
+
+    /**
+     * Exporta para um ficheiro (em UTF-8) as consultas e depois os exames que satisfazem o filtro.
+     *
+     * @param filtro   O filtro.
+     * @param ficheiro O ficheiro de destino.
+     * @return O número de registos exportados.
+     * @throws IOException Se ocorrer um erro de escrita.
+     */
+    public long exportar(FiltroHistorico filtro, Path ficheiro) throws IOException {
+        try (BufferedWriter saida = Files.newBufferedWriter(ficheiro, StandardCharsets.UTF_8)) {
+            return exportar(filtro, saida);
+        }
+    }
+
+    /**
+     * Exporta as consultas e depois os exames que satisfazem o filtro. O escritor não é fechado.
+     *
+     * @param filtro O filtro.
+     * @param saida  O destino dos registos.
+     * @return O número de registos exportados.
+     * @throws IOException Se ocorrer um erro de escrita.
+     */
+    public long exportar(FiltroHistorico filtro, Writer saida) throws IOException {
+        Writer destino = comBuffer(saida);
+        escreverCabecalho(destino);
+        long total;
+        try (Stream<Consulta> consultas = gestor.pesquisarConsultas(filtro);
+             Stream<Exame> exames = gestor.pesquisarExames(filtro)) {
+            total = escreverConsultas(consultas, destino) + escreverExames(exames, destino);
+        }
+        destino.flush();
+        return total;
+    }
+
+    /**
+     * Exporta as consultas que satisfazem o filtro. O escritor não é fechado.
+     *
+     * @param filtro O filtro.
+     * @param saida  O destino dos registos.
+     * @return O número de consultas exportadas.
+     * @throws IOException Se ocorrer um erro de escrita.
+     */
+    public long exportarConsultas(FiltroHistorico filtro, Writer saida) throws IOException {
+        try (Stream<Consulta> consultas = gestor.pesquisarConsultas(filtro)) {
+            return exportarConsultas(consultas, saida);
+        }
+    }
+
+    /**
+     * Exporta as consultas indicadas, por exemplo uma página de uma pesquisa. O escritor não é fechado.
+     *
+     * @param consultas As consultas.
+     * @param saida     O destino dos registos.
+     * @return O número de consultas exportadas.
+     * @throws IOException Se ocorrer um erro de escrita.
+     */
+    public long exportarConsultas(Stream<Consulta> consultas, Writer saida) throws IOException {
+        Writer destino = comBuffer(saida);
+        escreverCabecalho(destino);
+        long total = escreverConsultas(consultas, destino);
+        destino.flush();
+        return total;
+    }
+
+    /**
+     * Exporta os exames que satisfazem o filtro. O escritor não é fechado.
+     *
+     * @param filtro O filtro.
+     * @param saida  O destino dos registos.
+     * @return O número de exames exportados.
+     * @throws IOException Se ocorrer um erro de escrita.
+     */
+    public long exportarExames(FiltroHistorico filtro, Writer saida) throws IOException {
+        try (Stream<Exame> exames = gestor.pesquisarExames(filtro)) {
+            return exportarExames(exames, saida);
+        }
+    }
+
+    /**
+     * Exporta os exames indicados, por exemplo uma página de uma pesquisa. O escritor não é fechado.
+     *
+     * @param exames Os exames.
+     * @param saida  O destino dos registos.
+     * @return O número de exames exportados.
+     * @throws IOException Se ocorrer um erro de escrita.
+     */
+    public long exportarExames(Stream<Exame> exames, Writer saida) throws IOException {
+        Writer destino = comBuffer(saida);
+        escreverCabecalho(destino);
+        long total = escreverExames(exames, destino);
+        destino.flush();
+        return total;
+    }
+
+    private static Writer comBuffer(Writer saida) {
+        return saida instanceof BufferedWriter ? saida : new BufferedWriter(saida, 1 << 16);
+    }
+
+    private long escreverConsultas(Stream<Consulta> origem, Writer saida) throws IOException {
+        long total = 0;
+        Iterator<Consulta> consultas = origem.iterator();
+        while (consultas.hasNext()) {
+            Consulta consulta = consultas.next();
+            escreverRegisto(saida, "CONSULTA", consulta.getPaciente(), consulta.getMedico(), consulta.getDataHora(), null, null);
+            total++;
+        }
+        return total;
+    }
+
+    private long escreverExames(Stream<Exame> origem, Writer saida) throws IOException {
+        long total = 0;
+        Iterator<Exame> exames = origem.iterator();
+        while (exames.hasNext()) {
+            Exame exame = exames.next();
+            escreverRegisto(saida, "EXAME", exame.getPaciente(), exame.getMedico(), exame.getDataHora(),
+                    exame.getDesignacao(), exame.getObservacoes());
+            total++;
+        }
+        return total;
+    }
+
+    private void escreverCabecalho(Writer saida) throws IOException {
+        if (formato != Formato.CSV) {
+            return;
+        }
+        for (int i = 0; i < CAMPOS.length; i++) {
+            if (i > 0) {
+                saida.write(',');
+            }
+            saida.write(CAMPOS[i]);
+        }
+        saida.write('\n');
+    }
+
+    private void escreverRegisto(Writer saida, String tipo, Paciente paciente, Medico medico, LocalDateTime dataHora,
+                                 String designacao, String observacoes) throws IOException {
+        if (formato == Formato.CSV) {
+            saida.write(tipo);
+            saida.write(',');
+            escreverCsv(saida, paciente.getId());
+            saida.write(',');
+            escreverCsv(saida, paciente.getNome());
+            saida.write(',');
+            escreverCsv(saida, medico.getNome());
+            saida.write(',');
+            escreverDataHora(saida, dataHora);
+            saida.write(',');
+            escreverCsv(saida, designacao);
+            saida.write(',');
+            escreverCsv(saida, observacoes);
+        } else {
+            saida.write("{\"tipo\":\"");
+            saida.write(tipo);
+            saida.write("\",\"idPaciente\":");
+            escreverJson(saida, paciente.getId());
+            saida.write(",\"paciente\":");
+            escreverJson(saida, paciente.getNome());
+            saida.write(",\"medico\":");
+            escreverJson(saida, medico.getNome());
+            saida.write(",\"dataHora\":\"");
+            escreverDataHora(saida, dataHora);
+            saida.write("\",\"designacao\":");
+            escreverJson(saida, designacao);
+            saida.write(",\"observacoes\":");
+            escreverJson(saida, observacoes);
+            saida.write('}');
+        }
+        saida.write('\n');
+    }
+
+    /**
+     * Escreve a data e hora diretamente no escritor, como dd-MM-yyyy HH:mm (CSV) ou
+     * yyyy-MM-ddTHH:mm (JSON), sem passar por um DateTimeFormatter, que criaria um texto intermédio.
+     */
+    private void escreverDataHora(Writer saida, LocalDateTime dataHora) throws IOException {
+        char[] texto = textoDataHora;
+        if (formato == Formato.CSV) {
+            doisDigitos(texto, 0, dataHora.getDayOfMonth());
+            texto[2] = '-';
+            doisDigitos(texto, 3, dataHora.getMonthValue());
+            texto[5] = '-';
+            quatroDigitos(texto, 6, dataHora.getYear());
+            texto[10] = ' ';
+        } else {
+            quatroDigitos(texto, 0, dataHora.getYear());
+            texto[4] = '-';
+            doisDigitos(texto, 5, dataHora.getMonthValue());
+            texto[7] = '-';
+            doisDigitos(texto, 8, dataHora.getDayOfMonth());
+            texto[10] = 'T';
+        }
+        doisDigitos(texto, 11, dataHora.getHour());
+        texto[13] = ':';
+        doisDigitos(texto, 14, dataHora.getMinute());
+        saida.write(texto, 0, 16);
+    }
+
+    private static void doisDigitos(char[] texto, int posicao, int valor) {
+        texto[posicao] = (char) ('0' + valor / 10);
+        texto[posicao + 1] = (char) ('0' + valor % 10);
+    }
+
+    private static void quatroDigitos(char[] texto, int posicao, int valor) {
+        doisDigitos(texto, posicao, valor / 100);
+        doisDigitos(texto, posicao + 2, valor % 100);
+    }
+
+    /**
+     * Escreve um campo CSV, entre aspas apenas se contiver separadores, aspas ou mudanças de linha.
+     */
+    private static void escreverCsv(Writer saida, String valor) throws IOException {
+        if (valor == null) {
+            return;
+        }
+        boolean aspas = false;
+        for (int i = 0; i < valor.length() && !aspas; i++) {
+            char c = valor.charAt(i);
+            aspas = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!aspas) {
+            saida.write(valor);
+            return;
+        }
+        saida.write('"');
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            if (c == '"') {
+                saida.write('"');
+            }
+            saida.write(c);
+        }
+        saida.write('"');
+    }
+
+    /**
+     * Escreve um valor JSON: null ou um texto entre aspas, com os caracteres especiais escapados.
+     */
+    private static void escreverJson(Writer saida, String valor) throws IOException {
+        if (valor == null) {
+            saida.write("null");
+            return;
+        }
+        saida.write('"');
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            if (c == '"' || c == '\\') {
+                saida.write('\\');
+                saida.write(c);
+            } else if (c < 0x20) {
+                saida.write("\\u00");
+                saida.write(HEXADECIMAL[c >> 4]);
+                saida.write(HEXADECIMAL[c & 0xF]);
+            } else {
+                saida.write(c);
+            }
+        }
+        saida.write('"');
+    }
+}
@@ -0,0 +1,147 @@
+package ProjetoPoo;
+
+import java.time.LocalDateTime;
+
+/**
+ * Classe que representa um filtro sobre o histórico de consultas e exames.
+ * Os critérios não definidos (null) não restringem o resultado.
+ */
+public class FiltroHistorico {
+    private Paciente paciente;
+    private Medico medico;
+    private String tipoExame;
+    private String tipoNormalizado;
+    private LocalDateTime inicio;
+    private LocalDateTime fim;
+
+    /**
+     * Construtor da classe FiltroHistorico, sem nenhum critério.
+     */
+    public FiltroHistorico() {
+    }
+
+    /**
+     * Obtém o paciente do filtro.
+     *
+     * @return O paciente, ou null se não filtrar por paciente.
+     */
+    public Paciente getPaciente() {
+        return paciente;
+    }
+
+    /**
+     * Define o paciente das marcações pretendidas.
+     *
+     * @param paciente O paciente.
+     */
+    public void setPaciente(Paciente paciente) {
+        this.paciente = paciente;
+    }
+
+    /**
+     * Obtém o médico do filtro.
+     *
+     * @return O médico, ou null se não filtrar por médico.
+     */
+    public Medico getMedico() {
+        return medico;
+    }
+
+    /**
+     * Define o médico das marcações pretendidas.
+     *
+     * @param medico O médico.
+     */
+    public void setMedico(Medico medico) {
+        this.medico = medico;
+    }
+
+    /**
+     * Obtém o tipo de exame do filtro.
+     *
+     * @return O tipo de exame, ou null se não filtrar por tipo.
+     */
+    public String getTipoExame() {
+        return tipoExame;
+    }
+
+    /**
+     * Define o tipo dos exames pretendidos, sem distinguir maiúsculas, minúsculas nem acentos.
+     * As consultas não têm tipo, pelo que um filtro com tipo não aceita nenhuma consulta.
+     *
+     * @param tipoExame O tipo de exame.
+     */
+    public void setTipoExame(String tipoExame) {
+        this.tipoExame = tipoExame;
+        this.tipoNormalizado = tipoExame == null ? null : IndiceDesignacoes.normalizar(tipoExame);
+    }
+
+    /**
+     * Obtém o início do intervalo de datas do filtro.
+     *
+     * @return O início do intervalo (inclusive), ou null se não tiver limite inferior.
+     */
+    public LocalDateTime getInicio() {
+        return inicio;
+    }
+
+    /**
+     * Obtém o fim do intervalo de datas do filtro.
+     *
+     * @return O fim do intervalo (exclusive), ou null se não tiver limite superior.
+     */
+    public LocalDateTime getFim() {
+        return fim;
+    }
+
+    /**
+     * Define o intervalo [inicio, fim[ das marcações pretendidas.
+     *
+     * @param inicio O início do intervalo (inclusive), ou null.
+     * @param fim    O fim do intervalo (exclusive), ou null.
+     */
+    public void setIntervalo(LocalDateTime inicio, LocalDateTime fim) {
+        if (inicio != null && fim != null && fim.isBefore(inicio)) {
+            throw new IllegalArgumentException("O fim do intervalo não pode ser anterior ao início.");
+        }
+        this.inicio = inicio;
+        this.fim = fim;
+    }
+
+    /**
+     * Verifica se o filtro restringe as datas das marcações.
+     *
+     * @return true se tiver início ou fim definido.
+     */
+    public boolean temIntervalo() {
+        return inicio != null || fim != null;
+    }
+
+    /**
+     * Verifica se uma consulta satisfaz o filtro.
+     *
+     * @param consulta A consulta.
+     * @return true se a consulta satisfizer todos os critérios.
+     */
+    public boolean aceita(Consulta consulta) {
+        return tipoExame == null && aceita(consulta.getPaciente(), consulta.getMedico(), consulta.getDataHora());
+    }
+
+    /**
+     * Verifica se um exame satisfaz o filtro.
+     *
+     * @param exame O exame.
+     * @return true se o exame satisfizer todos os critérios.
+     */
+    public boolean aceita(Exame exame) {
+        return aceita(exame.getPaciente(), exame.getMedico(), exame.getDataHora())
+                && (tipoNormalizado == null || tipoNormalizado.equals(IndiceDesignacoes.normalizar(exame.getDesignacao())));
+    }
+
+    private boolean aceita(Paciente pacienteMarcacao, Medico medicoMarcacao, LocalDateTime dataHora) {
+        return (paciente == null || paciente == pacienteMarcacao)
+                && (medico == null || medico == medicoMarcacao)
+                && (inicio == null || !dataHora.isBefore(inicio))
+                && (fim == null || dataHora.isBefore(fim));
+    }
+}
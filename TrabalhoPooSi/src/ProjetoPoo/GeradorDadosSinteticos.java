@@ -0,0 +1,111 @@
+package ProjetoPoo;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Classe que gera dados sintéticos reprodutíveis (médicos, pacientes e marcações)
+ * a partir de uma semente, para testes de desempenho.
+ */
+public class GeradorDadosSinteticos {
+    private static final String[] NOMES = {
+            "Ana", "Beatriz", "Carla", "Diana", "Eva", "Filipa", "Gabriela", "Helena", "Ines", "Joana",
+            "Leonor", "Mariana", "Marta", "Rita", "Sofia", "Teresa", "Vera", "Clara", "Laura", "Catarina"
+    };
+    private static final String[] APELIDOS = {
+            "Silva", "Santos", "Ferreira", "Pereira", "Oliveira", "Costa", "Rodrigues", "Martins", "Sousa", "Fernandes",
+            "Goncalves", "Gomes", "Lopes", "Marques", "Alves", "Almeida", "Ribeiro", "Pinto", "Carvalho", "Teixeira"
+    };
+    private static final String[] DESIGNACOES = {
+            "Ecografia", "Cardiotocografia", "Analises Sanguineas", "Amniocentese", "Doppler", "Teste de Glicose"
+    };
+
+    private Random random;
+
+    /**
+     * Construtor da classe GeradorDadosSinteticos.
+     *
+     * @param semente A semente do gerador de números aleatórios.
+     */
+    public GeradorDadosSinteticos(long semente) {
+        this.random = new Random(semente);
+    }
+
+    /**
+     * Gera médicos obstetras com nomes distintos.
+     *
+     * @param quantidade O número de médicos.
+     * @return A lista de médicos gerados.
+     */
+    public List<Medico> gerarMedicos(int quantidade) {
+        List<Medico> medicos = new ArrayList<>(quantidade);
+        for (int i = 0; i < quantidade; i++) {
+            medicos.add(new Medico("Medico " + NOMES[i % NOMES.length] + " " + i, "Obstetra"));
+        }
+        return medicos;
+    }
+
+    /**
+     * Gera pacientes com IDs sequenciais e nomes aleatórios (com homónimos).
+     *
+     * @param quantidade O número de pacientes.
+     * @return A lista de pacientes gerados.
+     */
+    public List<Paciente> gerarPacientes(int quantidade) {
+        List<Paciente> pacientes = new ArrayList<>(quantidade);
+        LocalDate base = LocalDate.of(1970, 1, 1);
+        for (int i = 0; i < quantidade; i++) {
+            String nome = gerarNome();
+            Date dataNascimento = Date.from(base.plusDays(random.nextInt(20000)).atStartOfDay(ZoneId.systemDefault()).toInstant());
+            pacientes.add(new Paciente(String.valueOf(100000000L + i), nome, dataNascimento));
+        }
+        return pacientes;
+    }
+
+    /**
+     * Gera um nome de paciente aleatório.
+     *
+     * @return O nome gerado.
+     */
+    public String gerarNome() {
+        return NOMES[random.nextInt(NOMES.length)] + " " + APELIDOS[random.nextInt(APELIDOS.length)]
+                + " " + APELIDOS[random.nextInt(APELIDOS.length)];
+    }
+
+    /**
+     * Gera uma designação de exame aleatória.
+     *
+     * @return A designação gerada.
+     */
+    public String gerarDesignacao() {
+        return DESIGNACOES[random.nextInt(DESIGNACOES.length)];
+    }
+
+    /**
+     * Obtém um inteiro aleatório em [0, limite[.
+     *
+     * @param limite O limite superior (exclusive).
+     * @return O inteiro gerado.
+     */
+    public int proximoInteiro(int limite) {
+        return random.nextInt(limite);
+    }
+
+    /**
+     * Obtém os horários úteis de uma configuração a partir de uma data e hora, por ordem cronológica.
+     *
+     * @param configuracao A configuração de horários.
+     * @param desde        A data e hora a partir da qual listar os horários.
+     * @return A lista de horários úteis.
+     */
+    public static List<LocalDateTime> horariosUteis(ConfiguracaoHorario configuracao, LocalDateTime desde) {
+        List<LocalDateTime> horarios = new ArrayList<>();
+        new HorarioMedico(0, configuracao).horariosEntre(desde, LocalDateTime.MAX).forEach(horarios::add);
+        return horarios;
+    }
+}
@@ -1,43 +1,119 @@
 package ProjetoPoo;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.time.LocalTime;
+import java.time.temporal.TemporalAdjusters;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
  * Classe responsável por gerir consultas e exames médicos.
+ * Pode ser usada por vários terminais em simultâneo.
  */
 public class GerirConsultasExames {
-    private List<Exame> exames;
-    private List<Consulta> consultas;
+    private ArmazemMarcacoes exames;
+    private ArmazemMarcacoes consultas;
+    private IndiceTemporal examesPorDataHora;
+    private IndiceTemporal consultasPorDataHora;
+    private IndiceDesignacoes examesPorTipo;
+    private IndicePacienteInstante examesPorPacienteInstante;
+    private IndicePacienteInstante consultasPorPacienteInstante;
     private List<Medico> medicos;
-    private List<Paciente> pacientes;
-    private Map<Medico, List<LocalDateTime>> horariosDisponiveis;
+    private List<IndiceTemporal> agendas;
+    private Map<String, List<Medico>> medicosPorEspecialidade;
+    private RegistoPacientes pacientes;
+    private Map<Medico, HorarioMedico> horariosDisponiveis;
+    private ConfiguracaoHorario configuracaoHorario;
+    private DiarioOperacoes diario;
+    private ReentrantReadWriteLock bloqueioEstado;
+    private AtomicBoolean instantaneoEmCurso;
+    private long limiteSegmentoDiario;
+    private boolean durabilidadeSincrona;
+    private MetricasGestor metricas;
 
     private static GerirConsultasExames gestor;
 
-    private static final DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm");
+    private static final long LIMITE_SEGMENTO_DIARIO = 64L * 1024 * 1024;
 
     /**
-     * Construtor da classe GerirConsultasExames.
+     * Construtor da classe GerirConsultasExames, com a configuração de horários por omissão.
      */
     public GerirConsultasExames() {
-        this.exames = new ArrayList<>();
-        this.consultas = new ArrayList<>();
-        this.medicos = new ArrayList<>();
-        this.pacientes = new ArrayList<>();
-        this.horariosDisponiveis = new HashMap<>();
+        this(ConfiguracaoHorario.predefinida());
+    }
+
+    /**
+     * Construtor da classe GerirConsultasExames.
+     *
+     * @param configuracaoHorario A configuração da grelha de horários dos médicos.
+     */
+    public GerirConsultasExames(ConfiguracaoHorario configuracaoHorario) {
+        if (configuracaoHorario == null) {
+            throw new IllegalArgumentException("Configuração de horários não pode ser nula.");
+        }
+        this.medicos = new CopyOnWriteArrayList<>();
+        this.agendas = new CopyOnWriteArrayList<>();
+        this.medicosPorEspecialidade = new ConcurrentHashMap<>();
+        this.pacientes = new RegistoPacientes();
+        this.exames = new ArmazemMarcacoes(true, medicos, pacientes);
+        this.consultas = new ArmazemMarcacoes(false, medicos, pacientes);
+        this.examesPorDataHora = new IndiceTemporal();
+        this.consultasPorDataHora = new IndiceTemporal();
+        this.examesPorTipo = new IndiceDesignacoes();
+        this.examesPorPacienteInstante = new IndicePacienteInstante();
+        this.consultasPorPacienteInstante = new IndicePacienteInstante();
+        this.horariosDisponiveis = new ConcurrentHashMap<>();
+        this.configuracaoHorario = configuracaoHorario;
+        this.bloqueioEstado = new ReentrantReadWriteLock();
+        this.instantaneoEmCurso = new AtomicBoolean();
+        this.limiteSegmentoDiario = LIMITE_SEGMENTO_DIARIO;
+        this.durabilidadeSincrona = false;
+        this.metricas = new MetricasGestor();
     }
 
     /**
      * Inicializa o gestor de consultas e exames.
      */
-    public static void inicializarGestor() {
+    public static synchronized void inicializarGestor() {
         if (gestor == null) {
             gestor = new GerirConsultasExames();
+            gestor.metricas.registarJmx();
+        }
+    }
+
+    /**
+     * Inicializa o gestor de consultas e exames com persistência num diário de operações.
+     * Se o diário já existir, o estado anterior é reconstruído a partir dele.
+     * 
+     * @param diretorioDiario A diretoria do diário de operações.
+     * @throws IOException Se ocorrer um erro ao ler ou abrir o diário.
+     */
+    public static synchronized void inicializarGestor(Path diretorioDiario) throws IOException {
+        if (gestor == null) {
+            GerirConsultasExames novo = new GerirConsultasExames();
+            novo.ativarDiario(diretorioDiario);
+            novo.metricas.registarJmx();
+            gestor = novo;
         }
     }
 
@@ -46,7 +122,7 @@ public class GerirConsultasExames {
      * 
      * @return A instância do gestor.
      */
-    public static GerirConsultasExames getInstance() {
+    public static synchronized GerirConsultasExames getInstance() {
         return gestor;
     }
 
@@ -54,81 +130,428 @@ public class GerirConsultasExames {
      * Regista um médico.
      * 
      * @param medico O médico a ser registado.
+     * @throws IllegalArgumentException Se o nome ou a especialidade forem inválidos (ver Validador)
+     *                                  ou o médico já estiver registado.
      */
     public void registarMedico(Medico medico) {
-        if (medico == null) {
-            throw new IllegalArgumentException("Médico não pode ser nulo.");
-        }
-        if (medicos.contains(medico)) {
-            throw new IllegalArgumentException("Médico já registado.");
+        metricas.executar(OperacaoGestor.REGISTAR_MEDICO, () -> {
+            if (medico == null) {
+                throw new IllegalArgumentException("Médico não pode ser nulo.");
+            }
+            Validador.validar(Validador.Campo.NOME_MEDICO, medico.getNome());
+            Validador.validar(Validador.Campo.ESPECIALIDADE, medico.getEspecialidade());
+            inserirMedico(medico);
+        });
+    }
+
+    /**
+     * Regista um lote de médicos cujos nomes e especialidades já foram validados (ver Validador),
+     * como os lidos pelo ImportadorCsv. Os médicos já registados, ou repetidos no lote, são recusados
+     * sem impedir o registo dos restantes. Os médicos registados são gravados no diário de operações
+     * com um único registo, pelo que o lote espera no máximo uma vez pela gravação.
+     * 
+     * @param novos Os médicos a registar.
+     * @return Para cada médico, null se foi registado ou o motivo da recusa.
+     */
+    String[] registarMedicosValidados(List<Medico> novos) {
+        return metricas.medir(OperacaoGestor.REGISTAR_LOTE_MEDICOS, () -> {
+            String[] recusas = new String[novos.size()];
+            List<Medico> aceites = new ArrayList<>(novos.size());
+            Set<Medico> noLote = new HashSet<>();
+            long sequencia = 0;
+            bloqueioEstado.readLock().lock();
+            try {
+                synchronized (medicos) {
+                    for (int i = 0; i < recusas.length; i++) {
+                        Medico medico = novos.get(i);
+                        if (horariosDisponiveis.containsKey(medico) || !noLote.add(medico)) {
+                            recusas[i] = "Médico já registado.";
+                        } else {
+                            aceites.add(medico);
+                        }
+                    }
+                    if (diario != null && !aceites.isEmpty()) {
+                        sequencia = diario.registarMedicos(aceites);
+                    }
+                    for (Medico medico : aceites) {
+                        adicionarMedico(medico);
+                    }
+                }
+            } finally {
+                bloqueioEstado.readLock().unlock();
+            }
+            aguardarDiario(sequencia);
+            verificarInstantaneo();
+            return recusas;
+        });
+    }
+
+    private void inserirMedico(Medico medico) {
+        long sequencia = 0;
+        bloqueioEstado.readLock().lock();
+        try {
+            synchronized (medicos) {
+                if (horariosDisponiveis.containsKey(medico)) {
+                    throw new IllegalArgumentException("Médico já registado.");
+                }
+                if (diario != null) {
+                    sequencia = diario.registarMedico(medico);
+                }
+                adicionarMedico(medico);
+            }
+        } finally {
+            bloqueioEstado.readLock().unlock();
         }
-        this.medicos.add(medico);
-        inicializarHorariosDisponiveis(medico);
+        aguardarDiario(sequencia);
+        verificarInstantaneo();
     }
 
     /**
-     * Inicializa os horários disponíveis para um médico.
+     * Adiciona um médico, atribuindo-lhe como código a sua ordem de registo.
+     * Deve ser chamado com o bloqueio da lista de médicos.
      * 
      * @param medico O médico.
      */
-    private void inicializarHorariosDisponiveis(Medico medico) {
-        List<LocalDateTime> horarios = new ArrayList<>();
-        // Supondo que há horários disponíveis entre 8h e 17h de segunda a sexta
-        for (int dia = 1; dia <= 30; dia++) {
-            for (int hora = 8; hora < 17; hora++) { // Corrigido para 17h, não 26h
-                horarios.add(LocalDateTime.of(2024, 6, dia, hora, 0));
+    private void adicionarMedico(Medico medico) {
+        horariosDisponiveis.put(medico, new HorarioMedico(medicos.size(), configuracaoHorario));
+        this.agendas.add(new IndiceTemporal());
+        this.medicos.add(medico);
+        if (medico.getEspecialidade() != null) {
+            medicosPorEspecialidade.computeIfAbsent(IndiceDesignacoes.normalizar(medico.getEspecialidade()),
+                    k -> new CopyOnWriteArrayList<>()).add(medico);
+        }
+    }
+
+    /**
+     * Ativa a persistência do estado num diário de operações, carregando primeiro o instantâneo
+     * mais recente e as operações registadas depois dele. Deve ser chamado antes de qualquer registo.
+     * 
+     * @param diretorio A diretoria do diário de operações.
+     * @throws IOException Se ocorrer um erro ao ler ou abrir o diário.
+     */
+    public void ativarDiario(Path diretorio) throws IOException {
+        if (diario != null) {
+            throw new IllegalStateException("O diário de operações já está ativo.");
+        }
+        this.diario = DiarioOperacoes.abrir(diretorio, this);
+    }
+
+    /**
+     * Define o tamanho do segmento do diário a partir do qual é criado automaticamente um instantâneo.
+     * 
+     * @param limiteBytes O tamanho em bytes, ou 0 para desativar os instantâneos automáticos.
+     */
+    public void setLimiteSegmentoDiario(long limiteBytes) {
+        this.limiteSegmentoDiario = limiteBytes;
+    }
+
+    /**
+     * Define se cada operação só termina depois de o seu registo no diário estar gravado em disco.
+     * Por omissão não termina: os registos são gravados em grupo pela thread do diário, que começa
+     * a gravar logo que há registos pendentes, pelo que uma operação concluída só se perde se o
+     * processo terminar antes do force() seguinte. Com durabilidade síncrona, a espera é feita já
+     * sem bloqueios e as operações concorrentes partilham o mesmo force(); quem faz muitas
+     * operações seguidas pode em vez disso esperar uma única vez com {@link #sincronizarDiario()}.
+     * 
+     * @param sincrona true para esperar pela gravação de cada operação, false para não esperar.
+     */
+    public void setDurabilidadeSincrona(boolean sincrona) {
+        this.durabilidadeSincrona = sincrona;
+    }
+
+    /**
+     * Espera que todas as operações já concluídas estejam gravadas no diário em disco.
+     * Não faz nada se o diário não estiver ativo.
+     * 
+     * @throws IllegalStateException Se a escrita no diário falhar ou a espera for interrompida.
+     */
+    public void sincronizarDiario() {
+        DiarioOperacoes atual = diario;
+        if (atual != null) {
+            aguardarGravacao(atual, atual.ultimaSequencia());
+        }
+    }
+
+    /**
+     * Espera que o registo do diário com o número de sequência indicado esteja gravado em disco,
+     * se a durabilidade for síncrona. Deve ser chamado depois de libertados todos os bloqueios.
+     * 
+     * @param sequencia O número de sequência do registo, ou 0 se a operação não foi registada.
+     * @throws IllegalStateException Se a escrita no diário falhar ou a espera for interrompida.
+     */
+    private void aguardarDiario(long sequencia) {
+        DiarioOperacoes atual = diario;
+        if (sequencia != 0 && atual != null && durabilidadeSincrona) {
+            aguardarGravacao(atual, sequencia);
+        }
+    }
+
+    private static void aguardarGravacao(DiarioOperacoes atual, long sequencia) {
+        try {
+            atual.aguardarDurabilidade(sequencia);
+        } catch (IOException e) {
+            throw new IllegalStateException("Erro ao gravar o diário de operações: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrompido à espera da gravação do diário de operações.", e);
+        }
+    }
+
+    /**
+     * Cria um instantâneo de todo o estado e compacta o diário, removendo os segmentos
+     * e instantâneos anteriores. As operações só ficam suspensas enquanto o segmento do
+     * diário é trocado e as coleções são copiadas; a gravação decorre em paralelo com elas.
+     * 
+     * @throws IOException Se ocorrer um erro ao gravar o instantâneo.
+     */
+    public void criarInstantaneo() throws IOException {
+        long medicao = metricas.iniciar();
+        try {
+            if (diario == null) {
+                throw new IllegalStateException("O diário de operações não está ativo.");
+            }
+            synchronized (instantaneoEmCurso) {
+                long numero;
+                List<Medico> copiaMedicos;
+                List<Paciente> copiaPacientes;
+                long[] estadoConsultas;
+                long[] estadoExames;
+                int[][] excecoes;
+                bloqueioEstado.writeLock().lock();
+                try {
+                    numero = diario.rodar();
+                    copiaMedicos = new ArrayList<>(medicos);
+                    copiaPacientes = pacientes.listarPorNome();
+                    // O médico, a data e hora e o cancelamento podem mudar durante a gravação; o resto das linhas não
+                    estadoConsultas = consultas.copiarEstado();
+                    estadoExames = exames.copiarEstado();
+                    excecoes = copiarExcecoes();
+                } finally {
+                    bloqueioEstado.writeLock().unlock();
+                }
+                InstantaneoEstado.gravar(diario.ficheiroInstantaneo(numero), copiaMedicos, copiaPacientes,
+                        consultas, estadoConsultas, exames, estadoExames, excecoes);
+                diario.compactar(numero);
+            }
+        } catch (IOException | RuntimeException e) {
+            metricas.registarErro(OperacaoGestor.CRIAR_INSTANTANEO, e);
+            throw e;
+        } finally {
+            metricas.registar(OperacaoGestor.CRIAR_INSTANTANEO, medicao);
+        }
+    }
+
+    /**
+     * Copia as exceções de horário da clínica e de cada médico, uma entrada por dia, em três
+     * colunas: código do médico (-1 para a clínica), dia e intervalo em minutos.
+     * Deve ser chamado com o bloqueio de escrita do estado.
+     */
+    private int[][] copiarExcecoes() {
+        List<Map<Integer, Integer>> copias = new ArrayList<>(medicos.size() + 1);
+        copias.add(configuracaoHorario.getExcecoes().copiar());
+        int total = copias.get(0).size();
+        for (Medico medico : medicos) {
+            copias.add(horariosDisponiveis.get(medico).getExcecoes().copiar());
+            total += copias.get(copias.size() - 1).size();
+        }
+        int[][] excecoes = new int[3][total];
+        int posicao = 0;
+        for (int codigo = -1; codigo < medicos.size(); codigo++) {
+            for (Map.Entry<Integer, Integer> entrada : copias.get(codigo + 1).entrySet()) {
+                excecoes[0][posicao] = codigo;
+                excecoes[1][posicao] = entrada.getKey();
+                excecoes[2][posicao] = entrada.getValue();
+                posicao++;
+            }
+        }
+        return excecoes;
+    }
+
+    /**
+     * Cria um instantâneo numa thread própria quando o segmento atual do diário excede o limite definido.
+     */
+    private void verificarInstantaneo() {
+        DiarioOperacoes atual = diario;
+        if (atual == null || limiteSegmentoDiario <= 0 || atual.bytesSegmento() < limiteSegmentoDiario
+                || !instantaneoEmCurso.compareAndSet(false, true)) {
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                criarInstantaneo();
+            } catch (IOException | IllegalStateException e) {
+                System.err.println("Erro ao criar instantâneo do estado: " + e.getMessage());
+            } finally {
+                instantaneoEmCurso.set(false);
+            }
+        }, "instantaneo-estado");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Grava as operações pendentes e fecha o diário de operações, se estiver ativo.
+     * 
+     * @throws IOException Se ocorrer um erro ao gravar o diário.
+     */
+    public void fechar() throws IOException {
+        bloqueioEstado.writeLock().lock();
+        try {
+            if (diario != null) {
+                diario.close();
+                diario = null;
             }
+        } finally {
+            bloqueioEstado.writeLock().unlock();
         }
-        horariosDisponiveis.put(medico, horarios);
+    }
+
+    /**
+     * Obtém a configuração da grelha de horários dos médicos.
+     * 
+     * @return A configuração de horários.
+     */
+    public ConfiguracaoHorario getConfiguracaoHorario() {
+        return configuracaoHorario;
+    }
+
+    /**
+     * Indica se o diário de operações está ativo.
+     *
+     * @return true se as operações são registadas num diário.
+     */
+    public boolean temDiario() {
+        return diario != null;
+    }
+
+    /**
+     * Obtém as métricas das operações do gestor: cada operação pública conta as chamadas,
+     * os erros e a latência.
+     * 
+     * @return As métricas.
+     */
+    public MetricasGestor getMetricas() {
+        return metricas;
     }
 
     /**
      * Regista um paciente.
      * 
      * @param paciente O paciente a ser registado.
+     * @throws IllegalArgumentException Se o ID ou o nome forem inválidos (ver Validador)
+     *                                  ou o paciente já estiver registado.
      */
     public void registarPaciente(Paciente paciente) {
-        if (paciente == null) {
-            throw new IllegalArgumentException("Paciente não pode ser nulo.");
-        }
-        if (!paciente.getId().matches("\\d+")) {
-            throw new IllegalArgumentException("ID do paciente deve conter apenas números.");
+        metricas.executar(OperacaoGestor.REGISTAR_PACIENTE, () -> {
+            if (paciente == null) {
+                throw new IllegalArgumentException("Paciente não pode ser nulo.");
+            }
+            Validador.validar(Validador.Campo.ID_PACIENTE, paciente.getId());
+            Validador.validar(Validador.Campo.NOME_PACIENTE, paciente.getNome());
+            inserirPaciente(paciente);
+        });
+    }
+
+    /**
+     * Regista um lote de pacientes cujos IDs e nomes já foram validados (ver Validador),
+     * como os lidos pelo ImportadorCsv. Os pacientes com um ID já registado, ou repetido no lote,
+     * são recusados sem impedir o registo dos restantes. Os pacientes registados são gravados no
+     * diário de operações com um único registo, pelo que o lote espera no máximo uma vez pela gravação.
+     * 
+     * @param novos Os pacientes a registar.
+     * @return Para cada paciente, null se foi registado ou o motivo da recusa.
+     */
+    String[] registarPacientesValidados(List<Paciente> novos) {
+        return metricas.medir(OperacaoGestor.REGISTAR_LOTE_PACIENTES, () -> {
+            String[] recusas = new String[novos.size()];
+            List<Paciente> aceites = new ArrayList<>(novos.size());
+            Set<String> idsNoLote = new HashSet<>();
+            long sequencia = 0;
+            bloqueioEstado.readLock().lock();
+            try {
+                synchronized (pacientes) {
+                    for (int i = 0; i < recusas.length; i++) {
+                        Paciente paciente = novos.get(i);
+                        if (paciente.getIndice() >= 0 && !pacientes.contem(paciente)) {
+                            recusas[i] = "Paciente já registado noutro gestor.";
+                        } else if (pacientes.obterPorId(paciente.getId()) != null || !idsNoLote.add(paciente.getId())) {
+                            recusas[i] = "Paciente com este ID já registado.";
+                        } else {
+                            aceites.add(paciente);
+                        }
+                    }
+                    if (diario != null && !aceites.isEmpty()) {
+                        sequencia = diario.registarPacientes(aceites);
+                    }
+                    for (Paciente paciente : aceites) {
+                        paciente.associar(consultas, exames);
+                        pacientes.adicionar(paciente);
+                    }
+                }
+            } finally {
+                bloqueioEstado.readLock().unlock();
+            }
+            aguardarDiario(sequencia);
+            verificarInstantaneo();
+            return recusas;
+        });
+    }
+
+    private void inserirPaciente(Paciente paciente) {
+        if (paciente.getIndice() >= 0 && !pacientes.contem(paciente)) {
+            throw new IllegalArgumentException("Paciente já registado noutro gestor.");
         }
-        for (Paciente p : pacientes) {
-            if (p.getId().equals(paciente.getId())) {
-                throw new IllegalArgumentException("Paciente com este ID já registado.");
+        long sequencia = 0;
+        bloqueioEstado.readLock().lock();
+        try {
+            synchronized (pacientes) {
+                if (pacientes.obterPorId(paciente.getId()) != null) {
+                    throw new IllegalArgumentException("Paciente com este ID já registado.");
+                }
+                if (diario != null) {
+                    sequencia = diario.registarPaciente(paciente);
+                }
+                paciente.associar(consultas, exames);
+                pacientes.adicionar(paciente);
             }
+        } finally {
+            bloqueioEstado.readLock().unlock();
         }
-        this.pacientes.add(paciente);
+        aguardarDiario(sequencia);
+        verificarInstantaneo();
     }
 
     /**
      * Agenda uma consulta para um paciente.
+     * A marcação é feita sob o bloqueio do médico, pelo que marcações de médicos diferentes
+     * não concorrem entre si.
      * 
      * @param paciente O paciente.
      * @param dataHora A data e hora da consulta.
      * @param medico   O médico responsável.
      */
     public void agendarConsulta(Paciente paciente, LocalDateTime dataHora, Medico medico) {
-        if (paciente == null || dataHora == null || medico == null) {
-            throw new IllegalArgumentException("Dados inválidos para agendar consulta.");
-        }
-        if (!medicos.contains(medico)) {
-            throw new IllegalArgumentException("Médico não registado.");
-        }
-        if (!pacientes.contains(paciente)) {
-            throw new IllegalArgumentException("Paciente não registado.");
-        }
-        if (dataHora.isBefore(LocalDateTime.now())) {
-            throw new IllegalArgumentException("Data e hora da consulta não podem ser no passado.");
-        }
-        if (!horariosDisponiveis.get(medico).contains(dataHora)) {
-            throw new IllegalArgumentException("Horário não disponível para este médico.");
-        }
-        Consulta consulta = new Consulta(dataHora, medico, paciente);
-        consultas.add(consulta);
-        paciente.adicionarConsulta(consulta);
-        removerHorarioDisponivel(medico, dataHora);
+        metricas.executar(OperacaoGestor.AGENDAR_CONSULTA, () -> {
+            HorarioMedico horario = validarMarcacao(paciente, dataHora, null, medico, false, LocalDateTime.now());
+            long sequencia = 0;
+            bloqueioEstado.readLock().lock();
+            horario.bloquear();
+            try {
+                if (!horario.reservar(dataHora)) {
+                    throw new IllegalArgumentException("Horário não disponível para este médico.");
+                }
+                if (diario != null) {
+                    sequencia = registarNoDiario(horario, dataHora,
+                            () -> diario.registarConsulta(paciente, dataHora, horario.getCodigo()));
+                }
+                criarConsulta(paciente, dataHora, horario.getCodigo());
+            } finally {
+                horario.desbloquear();
+                bloqueioEstado.readLock().unlock();
+            }
+            aguardarDiario(sequencia);
+            verificarInstantaneo();
+        });
     }
 
     /**
@@ -140,232 +563,1342 @@ public class GerirConsultasExames {
      * @param medico     O médico responsável.
      */
     public void agendarExame(Paciente paciente, LocalDateTime dataHora, String designacao, Medico medico) {
-        if (paciente == null || dataHora == null || designacao == null || designacao.isEmpty() || medico == null) {
-            throw new IllegalArgumentException("Dados inválidos para agendar exame.");
+        metricas.executar(OperacaoGestor.AGENDAR_EXAME, () -> {
+            HorarioMedico horario = validarMarcacao(paciente, dataHora, designacao, medico, true, LocalDateTime.now());
+            long sequencia = 0;
+            bloqueioEstado.readLock().lock();
+            horario.bloquear();
+            try {
+                if (!horario.reservar(dataHora)) {
+                    throw new IllegalArgumentException("Horário não disponível para este médico.");
+                }
+                if (diario != null) {
+                    sequencia = registarNoDiario(horario, dataHora,
+                            () -> diario.registarExame(paciente, dataHora, designacao, horario.getCodigo()));
+                }
+                criarExame(paciente, dataHora, designacao, horario.getCodigo());
+            } finally {
+                horario.desbloquear();
+                bloqueioEstado.readLock().unlock();
+            }
+            aguardarDiario(sequencia);
+            verificarInstantaneo();
+        });
+    }
+
+    /**
+     * Agenda um lote de consultas e exames de uma só vez: ou ficam todos agendados, ou nenhum.
+     * Todos os pedidos são validados antes de qualquer reserva e o bloqueio de cada médico
+     * envolvido é obtido uma única vez, por ordem de código, para evitar impasses entre lotes.
+     * O lote é gravado no diário de operações como um único registo.
+     * 
+     * @param pedidos Os pedidos de marcação.
+     * @throws IllegalArgumentException Se algum pedido for inválido ou algum horário não estiver
+     *                                  disponível; nesse caso nenhuma marcação é feita.
+     */
+    public void agendarLote(List<PedidoMarcacao> pedidos) {
+        metricas.executar(OperacaoGestor.AGENDAR_LOTE, () -> agendarLote(pedidos, false));
+    }
+
+    /**
+     * Importa um lote de consultas e exames de outro sistema, como as lidas pelo ImportadorCsv,
+     * da mesma forma que {@link #agendarLote(List)}. Como podem ser marcações já realizadas,
+     * só é verificada a consistência de cada uma (paciente e médico registados, data e hora
+     * num horário e horário livre); não é verificado se a data e hora está no futuro, na janela
+     * de marcação ou num horário de trabalho, tal como ao repor as marcações do diário.
+     * 
+     * @param pedidos Os pedidos de marcação.
+     * @throws IllegalArgumentException Se algum pedido for inválido ou algum horário estiver
+     *                                  ocupado; nesse caso nenhuma marcação é feita.
+     */
+    void importarLote(List<PedidoMarcacao> pedidos) {
+        metricas.executar(OperacaoGestor.AGENDAR_LOTE, () -> agendarLote(pedidos, true));
+    }
+
+    /**
+     * Agenda um lote de marcações. As mensagens de erro indicam o número do pedido
+     * quando o lote tem mais de um.
+     * 
+     * @param pedidos   Os pedidos de marcação.
+     * @param historico true para aceitar marcações no passado ou fora dos horários de trabalho.
+     */
+    private void agendarLote(List<PedidoMarcacao> pedidos, boolean historico) {
+        if (pedidos == null) {
+            throw new IllegalArgumentException("Lote de marcações não pode ser nulo.");
         }
-        if (!medicos.contains(medico)) {
-            throw new IllegalArgumentException("Médico não registado.");
+        if (pedidos.isEmpty()) {
+            return;
         }
-        if (!pacientes.contains(paciente)) {
-            throw new IllegalArgumentException("Paciente não registado.");
+        LocalDateTime agora = historico ? null : LocalDateTime.now();
+        HorarioMedico[] horarios = new HorarioMedico[pedidos.size()];
+        for (int i = 0; i < horarios.length; i++) {
+            PedidoMarcacao pedido = pedidos.get(i);
+            if (pedido == null) {
+                throw new IllegalArgumentException("Pedido " + (i + 1) + ": pedido não pode ser nulo.");
+            }
+            try {
+                horarios[i] = validarMarcacao(pedido.getPaciente(), pedido.getDataHora(), pedido.getDesignacao(),
+                        pedido.getMedico(), pedido.eExame(), agora);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(prefixoPedido(pedidos, i) + e.getMessage());
+            }
         }
-        if (dataHora.isBefore(LocalDateTime.now())) {
-            throw new IllegalArgumentException("Data e hora do exame não podem ser no passado.");
+        HorarioMedico[] bloqueados = Arrays.stream(horarios).distinct()
+                .sorted(Comparator.comparingInt(HorarioMedico::getCodigo)).toArray(HorarioMedico[]::new);
+        int[] codigos = new int[horarios.length];
+        long sequencia = 0;
+        bloqueioEstado.readLock().lock();
+        for (HorarioMedico horario : bloqueados) {
+            horario.bloquear();
         }
-        if (!horariosDisponiveis.get(medico).contains(dataHora)) {
-            throw new IllegalArgumentException("Horário não disponível para este médico.");
+        int reservados = 0;
+        try {
+            for (; reservados < horarios.length; reservados++) {
+                LocalDateTime dataHora = pedidos.get(reservados).getDataHora();
+                if (historico ? !horarios[reservados].ocupar(dataHora) : !horarios[reservados].reservar(dataHora)) {
+                    throw new IllegalArgumentException(prefixoPedido(pedidos, reservados)
+                            + "Horário não disponível para este médico.");
+                }
+                codigos[reservados] = horarios[reservados].getCodigo();
+            }
+            if (diario != null) {
+                sequencia = diario.registarLote(pedidos, codigos);
+            }
+            for (int i = 0; i < pedidos.size(); i++) {
+                PedidoMarcacao pedido = pedidos.get(i);
+                if (pedido.eExame()) {
+                    criarExame(pedido.getPaciente(), pedido.getDataHora(), pedido.getDesignacao(), codigos[i]);
+                } else {
+                    criarConsulta(pedido.getPaciente(), pedido.getDataHora(), codigos[i]);
+                }
+            }
+        } catch (RuntimeException e) {
+            // Desfaz as reservas já feitas; as marcações só são criadas depois de todas as reservas e do diário
+            for (int i = 0; i < reservados; i++) {
+                horarios[i].libertar(pedidos.get(i).getDataHora());
+            }
+            throw e;
+        } finally {
+            for (int i = bloqueados.length - 1; i >= 0; i--) {
+                bloqueados[i].desbloquear();
+            }
+            bloqueioEstado.readLock().unlock();
         }
-        Exame exame = new Exame(dataHora, designacao, medico, paciente);
-        exames.add(exame);
-        paciente.adicionarExame(exame);
-        removerHorarioDisponivel(medico, dataHora);
+        aguardarDiario(sequencia);
+        verificarInstantaneo();
+    }
+
+    private static String prefixoPedido(List<PedidoMarcacao> pedidos, int posicao) {
+        return pedidos.size() > 1 ? "Pedido " + (posicao + 1) + ": " : "";
     }
 
     /**
-     * Remove um horário disponível para um médico.
+     * Regista no diário de operações uma marcação cujo horário já foi reservado, libertando-o
+     * se o registo falhar, para que a memória nunca tenha alterações que o diário não tem.
+     * Deve ser chamado com o bloqueio do médico.
      * 
-     * @param medico   O médico.
-     * @param dataHora O horário a ser removido.
+     * @return O número de sequência do registo.
      */
-    private void removerHorarioDisponivel(Medico medico, LocalDateTime dataHora) {
-        horariosDisponiveis.get(medico).remove(dataHora);
+    private long registarNoDiario(HorarioMedico horario, LocalDateTime dataHora, LongSupplier registo) {
+        try {
+            return registo.getAsLong();
+        } catch (RuntimeException e) {
+            horario.libertar(dataHora);
+            throw e;
+        }
     }
 
     /**
-     * Regista os resultados de um exame.
+     * Valida os dados de uma marcação, sem verificar a disponibilidade do horário.
+     * Se agora for null, não verifica se a data e hora está no passado.
      * 
-     * @param exame       O exame.
-     * @param observacoes As observações do exame (máximo de 30 caracteres).
+     * @return O horário do médico.
      */
-    public void registarResultadosExame(Exame exame, String observacoes) {
-        if (exame == null || observacoes == null || observacoes.isEmpty()) {
-            throw new IllegalArgumentException("Dados inválidos para registar resultados do exame.");
+    private HorarioMedico validarMarcacao(Paciente paciente, LocalDateTime dataHora, String designacao, Medico medico,
+                                          boolean exame, LocalDateTime agora) {
+        // Os erros de validação são contados na operação que a pediu
+        long medicao = metricas.iniciar();
+        try {
+            if (paciente == null || dataHora == null || medico == null || (exame && !Validador.textoValido(designacao))) {
+                throw new IllegalArgumentException(exame ? "Dados inválidos para agendar exame." : "Dados inválidos para agendar consulta.");
+            }
+            HorarioMedico horario = horariosDisponiveis.get(medico);
+            if (horario == null) {
+                throw new IllegalArgumentException("Médico não registado.");
+            }
+            if (!pacientes.contem(paciente)) {
+                throw new IllegalArgumentException("Paciente não registado.");
+            }
+            if (agora != null && dataHora.isBefore(agora)) {
+                throw new IllegalArgumentException(exame ? "Data e hora do exame não podem ser no passado."
+                        : "Data e hora da consulta não podem ser no passado.");
+            }
+            return horario;
+        } finally {
+            metricas.registar(OperacaoGestor.VALIDAR_MARCACAO, medicao);
         }
-        if (observacoes.length() > 30) {
-            throw new IllegalArgumentException("Observações não podem ter mais que 30 caracteres.");
+    }
+
+    private Consulta criarConsulta(Paciente paciente, LocalDateTime dataHora, int codigoMedico) {
+        int linha = consultas.adicionar(paciente, codigoMedico, dataHora, null);
+        indexar(consultas, linha);
+        paciente.getLinhasConsultas().adicionar(linha);
+        return consultas.consulta(linha);
+    }
+
+    private Exame criarExame(Paciente paciente, LocalDateTime dataHora, String designacao, int codigoMedico) {
+        int linha = exames.adicionar(paciente, codigoMedico, dataHora, designacao);
+        indexar(exames, linha);
+        paciente.getLinhasExames().adicionar(linha);
+        return exames.exame(linha);
+    }
+
+    /**
+     * Acrescenta uma marcação aos índices por data e hora, por paciente e instante, por tipo
+     * de exame e à agenda do médico.
+     */
+    private void indexar(ArmazemMarcacoes armazem, int linha) {
+        int minuto = armazem.minuto(linha);
+        int paciente = armazem.indicePaciente(linha);
+        if (armazem == exames) {
+            examesPorDataHora.adicionar(minuto, linha);
+            examesPorTipo.adicionar(exames.designacao(linha), minuto, linha);
+            examesPorPacienteInstante.adicionar(paciente, minuto, linha);
+            // Na agenda do médico, os exames são distinguidos das consultas pelo complemento da linha
+            agendas.get(exames.codigoMedico(linha)).adicionar(minuto, ~linha);
+        } else {
+            consultasPorDataHora.adicionar(minuto, linha);
+            consultasPorPacienteInstante.adicionar(paciente, minuto, linha);
+            agendas.get(consultas.codigoMedico(linha)).adicionar(minuto, linha);
         }
-        exame.setObservacoes(observacoes);
     }
 
     /**
-     * Pesquisa um paciente pelo nome.
-     * 
-     * @param nome O nome do paciente.
-     * @return O paciente encontrado ou null se não encontrado.
+     * Retira uma marcação dos índices onde foi acrescentada por {@link #indexar(ArmazemMarcacoes, int)}.
+     * A lista de marcações do paciente não é alterada.
      */
-    public Paciente pesquisarPaciente(String nome) {
-        for (Paciente paciente : pacientes) {
-            if (paciente.getNome().equalsIgnoreCase(nome)) {
-                return paciente;
-            }
+    private void desindexar(ArmazemMarcacoes armazem, int linha) {
+        boolean exame = armazem == exames;
+        int minuto = armazem.minuto(linha);
+        int paciente = armazem.indicePaciente(linha);
+        IndiceTemporal porDataHora = exame ? examesPorDataHora : consultasPorDataHora;
+        IndicePacienteInstante porPacienteInstante = exame ? examesPorPacienteInstante : consultasPorPacienteInstante;
+        porDataHora.remover(minuto, linha);
+        agendas.get(armazem.codigoMedico(linha)).remover(minuto, exame ? ~linha : linha);
+        if (exame) {
+            examesPorTipo.remover(exames.designacao(linha), minuto, linha);
+        }
+        if (porPacienteInstante.remover(paciente, minuto, linha)) {
+            // Outra marcação do paciente no mesmo minuto, com outro médico, passa a ser a do índice
+            porDataHora.noMinuto(minuto).filter(outra -> armazem.indicePaciente(outra) == paciente).findFirst()
+                    .ifPresent(outra -> porPacienteInstante.adicionar(paciente, minuto, outra));
         }
-        return null;
     }
 
     /**
-     * Pesquisa um paciente pelo ID (número do cartão de cidadão).
-     * 
-     * @param id O ID do paciente.
-     * @return O paciente encontrado ou null se não encontrado.
+     * Cancela uma consulta, devolvendo o horário à disponibilidade do médico.
+     * A consulta deixa de ser devolvida pelas pesquisas e de contar na agenda do médico; os
+     * índices são atualizados em O(log n), sem percorrer as marcações do paciente.
+     *
+     * @param consulta A consulta.
+     * @throws IllegalArgumentException Se a consulta não pertencer a este gestor ou já tiver sido cancelada.
      */
-    public Paciente pesquisarPacientePorId(String id) {
-        for (Paciente paciente : pacientes) {
-            if (paciente.getId().equals(id)) {
-                return paciente;
+    public void cancelarConsulta(Consulta consulta) {
+        metricas.executar(OperacaoGestor.CANCELAR_CONSULTA, () -> {
+            if (consulta == null || consulta.getArmazem() != consultas) {
+                throw new IllegalArgumentException("Dados inválidos para cancelar consulta.");
             }
-        }
-        return null;
+            aguardarDiario(cancelar(consultas, consulta.getLinha()));
+            verificarInstantaneo();
+        });
     }
 
     /**
-     * Pesquisa um médico pelo nome.
-     * 
-     * @param nome O nome do médico.
-     * @return O médico encontrado ou null se não encontrado.
+     * Cancela um exame, devolvendo o horário à disponibilidade do médico.
+     * O exame deixa de ser devolvido pelas pesquisas e de contar na agenda do médico.
+     *
+     * @param exame O exame.
+     * @throws IllegalArgumentException Se o exame não pertencer a este gestor ou já tiver sido cancelado.
      */
-    public Medico pesquisarMedico(String nome) {
-        for (Medico medico : medicos) {
-            if (medico.getNome().equalsIgnoreCase(nome)) {
-                return medico;
+    public void cancelarExame(Exame exame) {
+        metricas.executar(OperacaoGestor.CANCELAR_EXAME, () -> {
+            if (exame == null || exame.getArmazem() != exames) {
+                throw new IllegalArgumentException("Dados inválidos para cancelar exame.");
             }
-        }
-        return null;
+            aguardarDiario(cancelar(exames, exame.getLinha()));
+            verificarInstantaneo();
+        });
     }
 
     /**
-     * Pesquisa um exame pelo paciente e data/hora.
-     * 
-     * @param paciente O paciente.
-     * @param dataHora A data e hora do exame.
-     * @return O exame encontrado ou null se não encontrado.
+     * Reagenda uma consulta para outra data e hora e, opcionalmente, outro médico.
+     * O novo horário é reservado e o anterior libertado de forma atómica: se o novo horário
+     * não estiver disponível, a consulta fica como estava.
+     *
+     * @param consulta A consulta.
+     * @param dataHora A nova data e hora.
+     * @param medico   O novo médico, ou null para manter o mesmo.
+     * @throws IllegalArgumentException Se os dados forem inválidos, a consulta tiver sido cancelada
+     *                                  ou o novo horário não estiver disponível.
      */
-    public Exame pesquisarExame(Paciente paciente, LocalDateTime dataHora) {
-        for (Exame exame : exames) {
-            if (exame.getPaciente().equals(paciente) && exame.getDataHora().equals(dataHora)) {
-                return exame;
+    public void reagendarConsulta(Consulta consulta, LocalDateTime dataHora, Medico medico) {
+        metricas.executar(OperacaoGestor.REAGENDAR_CONSULTA, () -> {
+            if (consulta == null || consulta.getArmazem() != consultas) {
+                throw new IllegalArgumentException("Dados inválidos para reagendar consulta.");
             }
-        }
-        return null;
+            aguardarDiario(reagendar(consultas, consulta.getLinha(), dataHora, medico));
+            verificarInstantaneo();
+        });
     }
 
     /**
-     * Exibe o histórico de consultas de um paciente.
-     * 
-     * @param nomePaciente O nome do paciente.
+     * Reagenda um exame para outra data e hora e, opcionalmente, outro médico.
+     * O novo horário é reservado e o anterior libertado de forma atómica: se o novo horário
+     * não estiver disponível, o exame fica como estava.
+     *
+     * @param exame    O exame.
+     * @param dataHora A nova data e hora.
+     * @param medico   O novo médico, ou null para manter o mesmo.
+     * @throws IllegalArgumentException Se os dados forem inválidos, o exame tiver sido cancelado
+     *                                  ou o novo horário não estiver disponível.
      */
-    public void verHistoricoConsultas(String nomePaciente) {
-        Paciente paciente = pesquisarPaciente(nomePaciente);
-        if (paciente != null) {
-            List<Consulta> consultas = paciente.getConsultas();
-            if (consultas.isEmpty()) {
-                System.out.println("Nenhuma consulta encontrada para este paciente.");
-            } else {
-                System.out.println("Histórico de Consultas:");
-                for (Consulta consulta : consultas) {
-                    System.out.println(consulta.getDataHora().format(dateTimeFormatter) + " - Médico: " + consulta.getMedico().getNome());
-                }
+    public void reagendarExame(Exame exame, LocalDateTime dataHora, Medico medico) {
+        metricas.executar(OperacaoGestor.REAGENDAR_EXAME, () -> {
+            if (exame == null || exame.getArmazem() != exames) {
+                throw new IllegalArgumentException("Dados inválidos para reagendar exame.");
             }
-        } else {
-            System.out.println("Paciente não encontrado.");
-        }
+            aguardarDiario(reagendar(exames, exame.getLinha(), dataHora, medico));
+            verificarInstantaneo();
+        });
     }
 
     /**
-     * Exibe o histórico de consultas por data e hora.
+     * Cancela uma marcação, registando-a no diário antes de a alterar em memória.
      * 
-     * @param dataHora A data e hora da consulta.
+     * @return O número de sequência do registo no diário, ou 0 se não há diário.
      */
-    public void verHistoricoConsultasPorDataHora(LocalDateTime dataHora) {
-        System.out.println("Consultas na data e hora: " + dataHora.format(dateTimeFormatter));
-        boolean found = false;
-        for (Consulta consulta : consultas) {
-            if (consulta.getDataHora().equals(dataHora)) {
-                System.out.println(consulta.getDataHora().format(dateTimeFormatter) + " - Médico: " + consulta.getMedico().getNome());
-                found = true;
+    private long cancelar(ArmazemMarcacoes armazem, int linha) {
+        boolean exame = armazem == exames;
+        long sequencia = 0;
+        bloqueioEstado.readLock().lock();
+        HorarioMedico horario = bloquearMedico(armazem, linha, null);
+        try {
+            if (armazem.cancelada(linha)) {
+                throw new IllegalArgumentException(exame ? "O exame já foi cancelado." : "A consulta já foi cancelada.");
             }
-        }
-        if (!found) {
-            System.out.println("Nenhuma consulta encontrada para a data e hora: " + dataHora.format(dateTimeFormatter));
+            if (diario != null) {
+                sequencia = exame ? diario.registarCancelamentoExame(exames.exame(linha), horario.getCodigo())
+                        : diario.registarCancelamentoConsulta(consultas.consulta(linha), horario.getCodigo());
+            }
+            anularMarcacao(armazem, linha, horario);
+            return sequencia;
+        } finally {
+            horario.desbloquear();
+            bloqueioEstado.readLock().unlock();
         }
     }
 
     /**
-     * Exibe o histórico de exames de um paciente.
+     * Reagenda uma marcação, registando-a no diário antes de a alterar em memória.
      * 
-     * @param nomePaciente O nome do paciente.
+     * @return O número de sequência do registo no diário, ou 0 se não há diário ou nada mudou.
      */
-    public void verHistoricoExames(String nomePaciente) {
-        Paciente paciente = pesquisarPaciente(nomePaciente);
-        if (paciente != null) {
-            List<Exame> exames = paciente.getExames();
-            if (exames.isEmpty()) {
-                System.out.println("Nenhum exame encontrado para este paciente.");
-            } else {
-                System.out.println("Histórico de Exames:");
-                for (Exame exame : exames) {
-                    System.out.println(exame.getDataHora().format(dateTimeFormatter) + " - " + exame.getDesignacao() + " - Médico: " + exame.getMedico().getNome() + " - Resultado: " + exame.getObservacoes());
-                }
+    private long reagendar(ArmazemMarcacoes armazem, int linha, LocalDateTime dataHora, Medico medico) {
+        boolean exame = armazem == exames;
+        HorarioMedico destino = validarMarcacao(armazem.paciente(linha), dataHora, armazem.designacao(linha),
+                medico == null ? armazem.medico(linha) : medico, exame, LocalDateTime.now());
+        bloqueioEstado.readLock().lock();
+        HorarioMedico origem = bloquearMedico(armazem, linha, destino);
+        try {
+            if (armazem.cancelada(linha)) {
+                throw new IllegalArgumentException(exame ? "O exame foi cancelado." : "A consulta foi cancelada.");
             }
-        } else {
-            System.out.println("Paciente não encontrado.");
+            LocalDateTime anterior = armazem.dataHora(linha);
+            if (origem == destino && IndiceTemporal.minuto(anterior) == IndiceTemporal.minuto(dataHora)) {
+                return 0;
+            }
+            if (!destino.reservar(dataHora)) {
+                throw new IllegalArgumentException("Horário não disponível para este médico.");
+            }
+            long sequencia = 0;
+            if (diario != null) {
+                sequencia = registarNoDiario(destino, dataHora, () -> exame
+                        ? diario.registarReagendamentoExame(exames.exame(linha), origem.getCodigo(),
+                                destino.getCodigo(), dataHora)
+                        : diario.registarReagendamentoConsulta(consultas.consulta(linha), origem.getCodigo(),
+                                destino.getCodigo(), dataHora));
+            }
+            moverMarcacao(armazem, linha, origem, destino, dataHora);
+            return sequencia;
+        } finally {
+            if (destino != origem) {
+                destino.desbloquear();
+            }
+            origem.desbloquear();
+            bloqueioEstado.readLock().unlock();
         }
     }
 
     /**
-     * Pesquisa exames por tipo.
-     * 
-     * @param tipoExame O tipo de exame.
+     * Obtém o bloqueio do médico atual de uma marcação e, se indicado, também o de outro médico,
+     * por ordem de código (como em agendarLote). A marcação pode mudar de médico enquanto se
+     * espera pelo bloqueio, por isso o médico é confirmado depois de bloqueado.
+     *
+     * @return O horário do médico atual da marcação, já bloqueado.
      */
-    public void verHistoricoExamesPorTipo(String tipoExame) {
-        System.out.println("Exames do tipo: " + tipoExame);
-        boolean found = false;
-        for (Exame exame : exames) {
-            if (exame.getDesignacao().equalsIgnoreCase(tipoExame)) {
-                System.out.println(exame.getDataHora().format(dateTimeFormatter) + " - " + exame.getDesignacao() + " - Médico: " + exame.getMedico().getNome() + " - Resultado: " + exame.getObservacoes());
-                found = true;
+    private HorarioMedico bloquearMedico(ArmazemMarcacoes armazem, int linha, HorarioMedico outro) {
+        while (true) {
+            HorarioMedico atual = horariosDisponiveis.get(armazem.medico(linha));
+            boolean outroPrimeiro = outro != null && outro.getCodigo() < atual.getCodigo();
+            (outroPrimeiro ? outro : atual).bloquear();
+            if (outro != null && outro != atual) {
+                (outroPrimeiro ? atual : outro).bloquear();
             }
+            if (armazem.codigoMedico(linha) == atual.getCodigo()) {
+                return atual;
+            }
+            if (outro != null && outro != atual) {
+                outro.desbloquear();
+            }
+            atual.desbloquear();
         }
-        if (!found) {
-            System.out.println("Nenhum exame encontrado para o tipo: " + tipoExame);
-        }
     }
 
     /**
-     * Pesquisa exames por data e hora.
+     * Cancela uma marcação: liberta o horário, retira-a dos índices e marca a linha.
+     * Deve ser chamado com o bloqueio do médico.
+     */
+    private void anularMarcacao(ArmazemMarcacoes armazem, int linha, HorarioMedico horario) {
+        horario.libertar(armazem.dataHora(linha));
+        desindexar(armazem, linha);
+        armazem.cancelar(linha);
+    }
+
+    /**
+     * Muda uma marcação para um horário já reservado, libertando o anterior.
+     * Deve ser chamado com os bloqueios dos dois médicos.
+     */
+    private void moverMarcacao(ArmazemMarcacoes armazem, int linha, HorarioMedico origem, HorarioMedico destino,
+                               LocalDateTime dataHora) {
+        origem.libertar(armazem.dataHora(linha));
+        desindexar(armazem, linha);
+        armazem.mover(linha, destino.getCodigo(), dataHora);
+        indexar(armazem, linha);
+    }
+
+    /**
+     * Regista os resultados de um exame.
      * 
-     * @param dataHora A data e hora do exame.
+     * @param exame       O exame.
+     * @param observacoes As observações do exame (máximo de 30 caracteres).
      */
-    public void verHistoricoExamesPorDataHora(LocalDateTime dataHora) {
-        System.out.println("Exames na data e hora: " + dataHora.format(dateTimeFormatter));
-        boolean found = false;
-        for (Exame exame : exames) {
-            if (exame.getDataHora().equals(dataHora)) {
-                System.out.println(exame.getDataHora().format(dateTimeFormatter) + " - " + exame.getDesignacao() + " - Médico: " + exame.getMedico().getNome() + " - Resultado: " + exame.getObservacoes());
-                found = true;
+    public void registarResultadosExame(Exame exame, String observacoes) {
+        metricas.executar(OperacaoGestor.REGISTAR_RESULTADOS, () -> {
+            if (exame == null || exame.getArmazem() != exames || observacoes == null || observacoes.isEmpty()) {
+                throw new IllegalArgumentException("Dados inválidos para registar resultados do exame.");
             }
-        }
-        if (!found) {
-            System.out.println("Nenhum exame encontrado para a data e hora: " + dataHora.format(dateTimeFormatter));
-        }
+            Validador.validar(Validador.Campo.OBSERVACOES, observacoes);
+            // O bloqueio do médico garante que o diário regista os resultados pela mesma ordem que a memória
+            long sequencia = 0;
+            bloqueioEstado.readLock().lock();
+            HorarioMedico horario = bloquearMedico(exames, exame.getLinha(), null);
+            try {
+                if (exame.isCancelado()) {
+                    throw new IllegalArgumentException("O exame foi cancelado.");
+                }
+                if (diario != null) {
+                    sequencia = diario.registarResultadosExame(exame, observacoes, horario.getCodigo());
+                }
+                exame.setObservacoes(observacoes);
+            } finally {
+                horario.desbloquear();
+                bloqueioEstado.readLock().unlock();
+            }
+            aguardarDiario(sequencia);
+            verificarInstantaneo();
+        });
     }
 
     /**
-     * Obtém os horários disponíveis para consultas de um médico.
-     * 
-     * @param medico O médico.
-     * @return Uma lista de horários disponíveis.
+     * Marca um feriado: a clínica fecha nesse dia e nenhum médico tem horários disponíveis.
+     * As marcações já feitas para esse dia mantêm-se.
+     *
+     * @param dia O dia.
+     * @throws IllegalArgumentException Se o dia for inválido.
      */
-    public List<LocalDateTime> obterHorariosDisponiveisConsulta(Medico medico) {
-        return new ArrayList<>(horariosDisponiveis.get(medico));
+    public void adicionarFeriado(LocalDate dia) {
+        definirExcecao(null, dia, dia == null ? null : dia.plusDays(1), ExcecoesHorario.FECHADO);
     }
 
     /**
-     * Obtém os horários disponíveis para exames de um médico.
-     * 
+     * Regista uma ausência de um médico (férias, baixa, formação) nos dias do intervalo [inicio, fim[.
+     * As marcações já feitas para esses dias mantêm-se.
+     *
      * @param medico O médico.
-     * @return Uma lista de horários disponíveis para exames.
+     * @param inicio O primeiro dia da ausência (inclusive).
+     * @param fim    O dia de regresso (exclusive).
+     * @throws IllegalArgumentException Se os dados forem inválidos ou o intervalo exceder um ano.
      */
-    public List<LocalDateTime> obterHorariosDisponiveisExame(Medico medico) {
-        return new ArrayList<>(horariosDisponiveis.get(medico));
+    public void adicionarAusencia(Medico medico, LocalDate inicio, LocalDate fim) {
+        if (medico == null) {
+            throw new IllegalArgumentException("Médico não pode ser nulo.");
+        }
+        definirExcecao(medico, inicio, fim, ExcecoesHorario.FECHADO);
+    }
+
+    /**
+     * Define um horário de trabalho especial num dia, para toda a clínica ou só para um médico,
+     * substituindo o do modelo semanal (também num dia que não seja útil).
+     * As marcações já feitas para esse dia mantêm-se.
+     *
+     * @param medico O médico, ou null para toda a clínica.
+     * @param dia    O dia.
+     * @param inicio A hora de início.
+     * @param fim    A hora de fim (exclusive); meia-noite representa o fim do dia.
+     * @throws IllegalArgumentException Se os dados forem inválidos ou o horário não estiver alinhado
+     *                                  com a duração de cada horário.
+     */
+    public void definirHorarioEspecial(Medico medico, LocalDate dia, LocalTime inicio, LocalTime fim) {
+        if (inicio == null || fim == null) {
+            throw new IllegalArgumentException("Dados inválidos para definir horário especial.");
+        }
+        definirExcecao(medico, dia, dia == null ? null : dia.plusDays(1), configuracaoHorario.intervalo(inicio, fim));
+    }
+
+    /**
+     * Remove as exceções de horário (feriados, ausências e horários especiais) da clínica ou de um
+     * médico nos dias do intervalo [inicio, fim[, que voltam a seguir o modelo semanal.
+     *
+     * @param medico O médico, ou null para as exceções da clínica.
+     * @param inicio O primeiro dia (inclusive).
+     * @param fim    O último dia (exclusive).
+     * @throws IllegalArgumentException Se os dados forem inválidos ou o intervalo exceder um ano.
+     */
+    public void removerExcecoes(Medico medico, LocalDate inicio, LocalDate fim) {
+        definirExcecao(medico, inicio, fim, -1);
+    }
+
+    /**
+     * Define (ou remove, com intervalo -1) as exceções de horário dos dias [inicio, fim[.
+     * As exceções de um médico são alteradas sob o seu bloqueio e as da clínica sob o bloqueio
+     * das suas exceções, para que o diário as registe pela mesma ordem que a memória.
+     */
+    private void definirExcecao(Medico medico, LocalDate inicio, LocalDate fim, int intervalo) {
+        metricas.executar(OperacaoGestor.DEFINIR_EXCECAO_HORARIO, () -> {
+            if (inicio == null || fim == null || !inicio.isBefore(fim) || inicio.toEpochDay() < 0
+                    || fim.toEpochDay() > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Dados inválidos para definir exceção de horário.");
+            }
+            if (fim.toEpochDay() - inicio.toEpochDay() > 366) {
+                throw new IllegalArgumentException("Uma exceção de horário não pode exceder um ano.");
+            }
+            HorarioMedico horario = null;
+            if (medico != null) {
+                horario = horariosDisponiveis.get(medico);
+                if (horario == null) {
+                    throw new IllegalArgumentException("Médico não registado.");
+                }
+            }
+            int diaInicio = (int) inicio.toEpochDay();
+            int diaFim = (int) fim.toEpochDay();
+            ExcecoesHorario excecoes = horario == null ? configuracaoHorario.getExcecoes() : horario.getExcecoes();
+            long sequencia = 0;
+            bloqueioEstado.readLock().lock();
+            try {
+                if (horario != null) {
+                    horario.bloquear();
+                }
+                try {
+                    synchronized (excecoes) {
+                        if (diario != null) {
+                            sequencia = diario.registarExcecaoHorario(horario == null ? -1 : horario.getCodigo(),
+                                    diaInicio, diaFim, intervalo);
+                        }
+                        aplicarExcecao(excecoes, diaInicio, diaFim, intervalo);
+                    }
+                } finally {
+                    if (horario != null) {
+                        horario.desbloquear();
+                    }
+                }
+            } finally {
+                bloqueioEstado.readLock().unlock();
+            }
+            aguardarDiario(sequencia);
+            verificarInstantaneo();
+        });
+    }
+
+    private static void aplicarExcecao(ExcecoesHorario excecoes, int diaInicio, int diaFim, int intervalo) {
+        for (int dia = diaInicio; dia < diaFim; dia++) {
+            if (intervalo < 0) {
+                excecoes.remover(dia);
+            } else {
+                excecoes.definir(dia, intervalo);
+            }
+        }
+    }
+
+    /**
+     * Repõe uma exceção de horário a partir do diário de operações ou de um instantâneo.
+     */
+    void restaurarExcecao(int codigoMedico, int diaInicio, int diaFim, int intervalo) {
+        aplicarExcecao(codigoMedico < 0 ? configuracaoHorario.getExcecoes()
+                : horariosDisponiveis.get(medicos.get(codigoMedico)).getExcecoes(), diaInicio, diaFim, intervalo);
+    }
+
+    /**
+     * Repõe um médico a partir do diário de operações.
+     */
+    void restaurarMedico(String nome, String especialidade) {
+        synchronized (medicos) {
+            adicionarMedico(new Medico(nome, especialidade));
+        }
+    }
+
+    /**
+     * Repõe um paciente a partir do diário de operações.
+     */
+    Paciente restaurarPaciente(String id, String nome, Date dataNascimento) {
+        Paciente paciente = new Paciente(id, nome, dataNascimento);
+        paciente.associar(consultas, exames);
+        return pacientes.adicionar(paciente) ? paciente : pacientes.obterPorId(id);
+    }
+
+    /**
+     * Repõe uma consulta a partir do diário de operações. As validações de data não se aplicam,
+     * porque a consulta pode já ter ocorrido ou estar fora da janela de marcação atual.
+     */
+    void restaurarConsulta(String pacienteId, int codigoMedico, LocalDateTime dataHora) {
+        restaurarConsulta(pacienteRestaurado(pacienteId), codigoMedico, dataHora);
+    }
+
+    private void restaurarConsulta(Paciente paciente, int codigoMedico, LocalDateTime dataHora) {
+        horariosDisponiveis.get(medicos.get(codigoMedico)).ocupar(dataHora);
+        criarConsulta(paciente, dataHora, codigoMedico);
+    }
+
+    /**
+     * Repõe um exame a partir do diário de operações.
+     */
+    void restaurarExame(String pacienteId, int codigoMedico, LocalDateTime dataHora, String designacao) {
+        restaurarExame(pacienteRestaurado(pacienteId), codigoMedico, dataHora, designacao);
+    }
+
+    private void restaurarExame(Paciente paciente, int codigoMedico, LocalDateTime dataHora, String designacao) {
+        horariosDisponiveis.get(medicos.get(codigoMedico)).ocupar(dataHora);
+        criarExame(paciente, dataHora, designacao, codigoMedico);
+    }
+
+    /**
+     * Repõe de uma só vez as consultas ou os exames de um instantâneo. As colunas são escritas
+     * diretamente no armazém e cada índice é construído a partir das linhas já ordenadas, com uma
+     * única lista por minuto, em vez de marcação a marcação; as vistas Consulta e Exame só são
+     * criadas quando uma pesquisa as devolve. As agendas e horários de cada médico e as marcações
+     * de cada paciente são independentes entre si e são repostos em paralelo. O resultado é o
+     * mesmo que repor as marcações uma a uma, pela ordem do instantâneo.
+     *
+     * @param exame       true para exames, false para consultas.
+     * @param pacientes   O índice no registo de pacientes do paciente de cada marcação.
+     * @param medicos     O código do médico de cada marcação.
+     * @param minutos     O minuto desde a época de cada marcação.
+     * @param designacoes A posição em textos da designação de cada exame (null nas consultas).
+     * @param observacoes A posição em textos das observações de cada exame, ou -1 (null nas consultas).
+     * @param textos      A tabela de textos do instantâneo.
+     */
+    void restaurarMarcacoes(boolean exame, int[] pacientes, int[] medicos, int[] minutos, int[] designacoes,
+                            int[] observacoes, String[] textos) {
+        ArmazemMarcacoes armazem = exame ? exames : consultas;
+        int total = minutos.length;
+        int primeira = armazem.carregar(pacientes, medicos, minutos, designacoes, textos);
+        int[] linhas = new int[total];
+        for (int i = 0; i < total; i++) {
+            linhas[i] = primeira + i;
+            if (exame && observacoes[i] >= 0) {
+                exames.definirObservacoes(linhas[i], textos[observacoes[i]]);
+            }
+        }
+
+        // Chaves (minuto, posição) por ordem cronológica; os agrupamentos estáveis mantêm essa ordem em cada grupo
+        long[] chaves = new long[total];
+        for (int i = 0; i < total; i++) {
+            chaves[i] = ((long) minutos[i] << 32) | i;
+        }
+        Arrays.parallelSort(chaves);
+        (exame ? examesPorDataHora : consultasPorDataHora).carregar(chaves, 0, total, linhas);
+
+        long[] porMedico = new long[total];
+        int[] inicios = agrupar(chaves, medicos, this.medicos.size(), porMedico);
+        // Na agenda do médico, os exames são distinguidos das consultas pelo complemento da linha
+        int[] linhasAgenda = exame ? Arrays.stream(linhas).map(linha -> ~linha).toArray() : linhas;
+        IntStream.range(0, this.medicos.size()).parallel().filter(codigo -> inicios[codigo] < inicios[codigo + 1])
+                .forEach(codigo -> {
+                    HorarioMedico horario = horariosDisponiveis.get(this.medicos.get(codigo));
+                    for (int i = inicios[codigo]; i < inicios[codigo + 1]; i++) {
+                        horario.ocuparMinuto(porMedico[i] >> 32);
+                    }
+                    agendas.get(codigo).carregar(porMedico, inicios[codigo], inicios[codigo + 1], linhasAgenda);
+                });
+        if (exame) {
+            long[] porTipo = new long[total];
+            int[] iniciosTipo = agrupar(chaves, designacoes, textos.length, porTipo);
+            IntStream.range(0, textos.length).parallel().filter(texto -> iniciosTipo[texto] < iniciosTipo[texto + 1])
+                    .forEach(texto -> examesPorTipo.carregar(textos[texto], porTipo, iniciosTipo[texto],
+                            iniciosTipo[texto + 1], linhas));
+        }
+
+        // As marcações de cada paciente ficam pela ordem do instantâneo, que é a ordem de marcação
+        long[] posicoes = new long[total];
+        Arrays.setAll(posicoes, i -> i);
+        long[] porPaciente = new long[total];
+        int totalPacientes = this.pacientes.tamanho();
+        int[] iniciosPaciente = agrupar(posicoes, pacientes, totalPacientes, porPaciente);
+        IndicePacienteInstante porPacienteInstante = exame ? examesPorPacienteInstante : consultasPorPacienteInstante;
+        IntStream.range(0, totalPacientes).parallel().filter(indice -> iniciosPaciente[indice] < iniciosPaciente[indice + 1])
+                .forEach(indice -> {
+                    int[] linhasPaciente = new int[iniciosPaciente[indice + 1] - iniciosPaciente[indice]];
+                    for (int j = 0; j < linhasPaciente.length; j++) {
+                        int i = (int) porPaciente[iniciosPaciente[indice] + j];
+                        linhasPaciente[j] = linhas[i];
+                        porPacienteInstante.adicionar(indice, minutos[i], linhas[i]);
+                    }
+                    Paciente paciente = this.pacientes.obterPorIndice(indice);
+                    (exame ? paciente.getLinhasExames() : paciente.getLinhasConsultas())
+                            .adicionarTodos(linhasPaciente, 0, linhasPaciente.length);
+                });
+    }
+
+    /**
+     * Agrupa chaves pelo grupo da posição guardada nos seus 32 bits menos significativos, com uma
+     * contagem por grupo; dentro de cada grupo as chaves ficam pela ordem original.
+     *
+     * @return O início de cada grupo em agrupadas, com mais uma posição para o fim do último.
+     */
+    private static int[] agrupar(long[] chaves, int[] grupos, int totalGrupos, long[] agrupadas) {
+        int[] inicios = new int[totalGrupos + 1];
+        for (long chave : chaves) {
+            inicios[grupos[(int) chave] + 1]++;
+        }
+        for (int grupo = 0; grupo < totalGrupos; grupo++) {
+            inicios[grupo + 1] += inicios[grupo];
+        }
+        int[] proximas = Arrays.copyOf(inicios, totalGrupos);
+        for (long chave : chaves) {
+            agrupadas[proximas[grupos[(int) chave]]++] = chave;
+        }
+        return inicios;
+    }
+
+    /**
+     * Repõe os resultados de um exame a partir do diário de operações.
+     */
+    void restaurarResultadosExame(String pacienteId, int codigoMedico, LocalDateTime dataHora, String observacoes) {
+        int linha = linhaRestaurada(exames, pacienteRestaurado(pacienteId), codigoMedico, dataHora);
+        if (linha >= 0) {
+            exames.definirObservacoes(linha, observacoes);
+        }
+    }
+
+    /**
+     * Repõe o cancelamento de uma consulta ou exame a partir do diário de operações.
+     */
+    void restaurarCancelamento(boolean exame, String pacienteId, int codigoMedico, LocalDateTime dataHora) {
+        ArmazemMarcacoes armazem = exame ? exames : consultas;
+        anularMarcacao(armazem, marcacaoRestaurada(armazem, pacienteId, codigoMedico, dataHora),
+                horariosDisponiveis.get(medicos.get(codigoMedico)));
+    }
+
+    /**
+     * Repõe o reagendamento de uma consulta ou exame a partir do diário de operações.
+     */
+    void restaurarReagendamento(boolean exame, String pacienteId, int codigoAnterior, LocalDateTime dataHoraAnterior,
+                                int codigoMedico, LocalDateTime dataHora) {
+        ArmazemMarcacoes armazem = exame ? exames : consultas;
+        int linha = marcacaoRestaurada(armazem, pacienteId, codigoAnterior, dataHoraAnterior);
+        HorarioMedico destino = horariosDisponiveis.get(medicos.get(codigoMedico));
+        destino.ocupar(dataHora);
+        moverMarcacao(armazem, linha, horariosDisponiveis.get(medicos.get(codigoAnterior)), destino, dataHora);
+    }
+
+    private int marcacaoRestaurada(ArmazemMarcacoes armazem, String pacienteId, int codigoMedico, LocalDateTime dataHora) {
+        int linha = linhaRestaurada(armazem, pacienteRestaurado(pacienteId), codigoMedico, dataHora);
+        if (linha < 0) {
+            throw new IllegalStateException("Diário de operações inconsistente: marcação de " + pacienteId
+                    + " em " + dataHora + " desconhecida.");
+        }
+        return linha;
+    }
+
+    /**
+     * Obtém a linha de uma marcação ativa pelo paciente, médico e data e hora, procurando só
+     * entre as marcações desse minuto.
+     *
+     * @return A linha ou -1 se não existir.
+     */
+    private int linhaRestaurada(ArmazemMarcacoes armazem, Paciente paciente, int codigoMedico, LocalDateTime dataHora) {
+        IndiceTemporal porDataHora = armazem == exames ? examesPorDataHora : consultasPorDataHora;
+        return porDataHora.noMinuto(IndiceTemporal.minuto(dataHora))
+                .filter(linha -> armazem.indicePaciente(linha) == paciente.getIndice()
+                        && armazem.codigoMedico(linha) == codigoMedico)
+                .findFirst().orElse(-1);
+    }
+
+    private Paciente pacienteRestaurado(String id) {
+        Paciente paciente = pacientes.obterPorId(id);
+        if (paciente == null) {
+            throw new IllegalStateException("Diário de operações inconsistente: paciente " + id + " desconhecido.");
+        }
+        return paciente;
+    }
+
+    /**
+     * Pesquisa um paciente pelo nome.
+     * 
+     * @param nome O nome do paciente.
+     * @return O paciente encontrado ou null se não encontrado.
+     */
+    public Paciente pesquisarPaciente(String nome) {
+        return metricas.medir(OperacaoGestor.PESQUISAR_PACIENTE, () -> pacientes.obterPorNome(nome));
+    }
+
+    /**
+     * Pesquisa todos os pacientes com o nome indicado.
+     * 
+     * @param nome O nome dos pacientes.
+     * @return Uma coleção, possivelmente vazia, com os pacientes encontrados.
+     */
+    public Collection<Paciente> pesquisarPacientesPorNome(String nome) {
+        return metricas.medir(OperacaoGestor.PESQUISAR_PACIENTE, () -> pacientes.obterTodosPorNome(nome));
+    }
+
+    /**
+     * Pesquisa um paciente pelo ID (número do cartão de cidadão).
+     * 
+     * @param id O ID do paciente.
+     * @return O paciente encontrado ou null se não encontrado.
+     */
+    public Paciente pesquisarPacientePorId(String id) {
+        return metricas.medir(OperacaoGestor.PESQUISAR_PACIENTE, () -> pacientes.obterPorId(id));
+    }
+
+    /**
+     * Pesquisa um médico pelo nome.
+     * 
+     * @param nome O nome do médico.
+     * @return O médico encontrado ou null se não encontrado.
+     */
+    public Medico pesquisarMedico(String nome) {
+        return metricas.medir(OperacaoGestor.PESQUISAR_MEDICO, () -> {
+            for (Medico medico : medicos) {
+                if (medico.getNome().equalsIgnoreCase(nome)) {
+                    return medico;
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Pesquisa um exame pelo paciente e data/hora.
+     * 
+     * @param paciente O paciente.
+     * @param dataHora A data e hora do exame.
+     * @return O exame encontrado ou null se não encontrado.
+     */
+    public Exame pesquisarExame(Paciente paciente, LocalDateTime dataHora) {
+        return metricas.medir(OperacaoGestor.PESQUISAR_MARCACAO, () -> {
+            int linha = linhaNoInstante(examesPorPacienteInstante, paciente, dataHora);
+            return linha < 0 ? null : exames.exame(linha);
+        });
+    }
+
+    /**
+     * Pesquisa uma consulta pelo paciente e data/hora.
+     * 
+     * @param paciente O paciente.
+     * @param dataHora A data e hora da consulta.
+     * @return A consulta encontrada ou null se não encontrada.
+     */
+    public Consulta pesquisarConsulta(Paciente paciente, LocalDateTime dataHora) {
+        return metricas.medir(OperacaoGestor.PESQUISAR_MARCACAO, () -> {
+            int linha = linhaNoInstante(consultasPorPacienteInstante, paciente, dataHora);
+            return linha < 0 ? null : consultas.consulta(linha);
+        });
+    }
+
+    /**
+     * Obtém a linha da marcação de um paciente registado numa data e hora.
+     * As marcações são sempre feitas ao minuto, pelo que um instante com segundos não tem marcações.
+     *
+     * @return A linha ou -1 se não existir.
+     */
+    private int linhaNoInstante(IndicePacienteInstante indice, Paciente paciente, LocalDateTime dataHora) {
+        if (dataHora == null || !pacientes.contem(paciente) || dataHora.getSecond() != 0 || dataHora.getNano() != 0) {
+            return -1;
+        }
+        long minuto = IndiceTemporal.minuto(dataHora);
+        return minuto == (int) minuto ? indice.obter(paciente.getIndice(), (int) minuto) : -1;
+    }
+
+    /**
+     * Pesquisa as consultas marcadas num intervalo de datas e horas.
+     * 
+     * @param inicio O início do intervalo (inclusive).
+     * @param fim    O fim do intervalo (exclusive).
+     * @return As consultas do intervalo, por ordem cronológica.
+     */
+    public List<Consulta> pesquisarConsultasEntre(LocalDateTime inicio, LocalDateTime fim) {
+        return metricas.medir(OperacaoGestor.PESQUISAR_HISTORICO,
+                () -> consultasPorDataHora.entre(inicio, fim).mapToObj(consultas::consulta).collect(Collectors.toList()));
+    }
+
+    /**
+     * Pesquisa as consultas marcadas num dia.
+     * 
+     * @param dia O dia.
+     * @return As consultas do dia, por ordem cronológica.
+     */
+    public List<Consulta> pesquisarConsultasNoDia(LocalDate dia) {
+        return metricas.medir(OperacaoGestor.PESQUISAR_HISTORICO,
+                () -> consultasPorDataHora.noDia(dia).mapToObj(consultas::consulta).collect(Collectors.toList()));
+    }
+
+    /**
+     * Pesquisa as consultas marcadas na semana (de segunda a domingo) que contém o dia indicado.
+     * 
+     * @param dia Um dia da semana pretendida.
+     * @return As consultas da semana, por ordem cronológica.
+     */
+    public List<Consulta> pesquisarConsultasNaSemana(LocalDate dia) {
+        return metricas.medir(OperacaoGestor.PESQUISAR_HISTORICO,
+                () -> consultasPorDataHora.naSemana(dia).mapToObj(consultas::consulta).collect(Collectors.toList()));
+    }
+
+    /**
+     * Pesquisa os exames marcados num intervalo de datas e horas.
+     * 
+     * @param inicio O início do intervalo (inclusive).
+     * @param fim    O fim do intervalo (exclusive).
+     * @return Os exames do intervalo, por ordem cronológica.
+     */
+    public List<Exame> pesquisarExamesEntre(LocalDateTime inicio, LocalDateTime fim) {
+        return metricas.medir(OperacaoGestor.PESQUISAR_HISTORICO,
+                () -> examesPorDataHora.entre(inicio, fim).mapToObj(exames::exame).collect(Collectors.toList()));
+    }
+
+    /**
+     * Pesquisa os exames marcados num dia.
+     * 
+     * @param dia O dia.
+     * @return Os exames do dia, por ordem cronológica.
+     */
+    public List<Exame> pesquisarExamesNoDia(LocalDate dia) {
+        return metricas.medir(OperacaoGestor.PESQUISAR_HISTORICO,
+                () -> examesPorDataHora.noDia(dia).mapToObj(exames::exame).collect(Collectors.toList()));
+    }
+
+    /**
+     * Pesquisa os exames marcados na semana (de segunda a domingo) que contém o dia indicado.
+     * 
+     * @param dia Um dia da semana pretendida.
+     * @return Os exames da semana, por ordem cronológica.
+     */
+    public List<Exame> pesquisarExamesNaSemana(LocalDate dia) {
+        return metricas.medir(OperacaoGestor.PESQUISAR_HISTORICO,
+                () -> examesPorDataHora.naSemana(dia).mapToObj(exames::exame).collect(Collectors.toList()));
+    }
+
+    /**
+     * Pesquisa os exames de um tipo, sem distinguir maiúsculas, minúsculas nem acentos.
+     * 
+     * @param tipoExame O tipo de exame.
+     * @return Os exames desse tipo, por ordem cronológica.
+     */
+    public List<Exame> pesquisarExamesPorTipo(String tipoExame) {
+        return metricas.medir(OperacaoGestor.PESQUISAR_HISTORICO,
+                () -> examesPorTipo.exatos(tipoExame, Ordem.CRESCENTE).mapToObj(exames::exame).collect(Collectors.toList()));
+    }
+
+    /**
+     * Pesquisa os exames cujo tipo começa pelo prefixo indicado.
+     * 
+     * @param prefixo O prefixo do tipo de exame.
+     * @return Os exames, agrupados por tipo em ordem alfabética.
+     */
+    public List<Exame> pesquisarExamesPorPrefixoTipo(String prefixo) {
+        return metricas.medir(OperacaoGestor.PESQUISAR_HISTORICO,
+                () -> examesPorTipo.comPrefixo(prefixo).mapToObj(exames::exame).collect(Collectors.toList()));
+    }
+
+    /**
+     * Conta os exames de um tipo.
+     * 
+     * @param tipoExame O tipo de exame.
+     * @return O número de exames desse tipo.
+     */
+    public int contarExamesPorTipo(String tipoExame) {
+        return metricas.medir(OperacaoGestor.PESQUISAR_HISTORICO, () -> examesPorTipo.contar(tipoExame));
+    }
+
+    /**
+     * Conta os exames de cada tipo.
+     * 
+     * @return Um mapa, por ordem alfabética, do tipo de exame para o número de exames.
+     */
+    public Map<String, Integer> contarExamesPorTipo() {
+        return metricas.medir(OperacaoGestor.PESQUISAR_HISTORICO, () -> examesPorTipo.contagemPorTipo());
+    }
+
+    /**
+     * Pesquisa as consultas que satisfazem um filtro, por ordem cronológica crescente.
+     * As consultas estão guardadas em colunas de inteiros (ver ArmazemMarcacoes); os objetos
+     * Consulta são criados à medida que a pesquisa é consumida.
+     * 
+     * @param filtro O filtro.
+     * @return As consultas.
+     */
+    public Stream<Consulta> pesquisarConsultas(FiltroHistorico filtro) {
+        return pesquisarConsultas(filtro, Ordem.CRESCENTE);
+    }
+
+    /**
+     * Pesquisa as consultas que satisfazem um filtro. O resultado é calculado à medida que é
+     * percorrido, a partir do índice mais seletivo para o filtro (paciente ou intervalo de datas),
+     * pelo que obter os primeiros resultados não obriga a percorrer todas as consultas.
+     * 
+     * @param filtro O filtro.
+     * @param ordem  A ordem cronológica.
+     * @return As consultas.
+     */
+    public Stream<Consulta> pesquisarConsultas(FiltroHistorico filtro, Ordem ordem) {
+        return metricas.medirPesquisa(OperacaoGestor.PESQUISAR_HISTORICO, () -> consultasFiltradas(filtro, ordem));
+    }
+
+    /**
+     * Obtém uma página das consultas que satisfazem um filtro.
+     * 
+     * @param filtro       O filtro.
+     * @param ordem        A ordem cronológica.
+     * @param deslocamento O número de consultas a saltar.
+     * @param limite       O número máximo de consultas.
+     * @return As consultas da página.
+     */
+    public Stream<Consulta> pesquisarConsultas(FiltroHistorico filtro, Ordem ordem, long deslocamento, long limite) {
+        return metricas.medirPesquisa(OperacaoGestor.PESQUISAR_HISTORICO, () -> {
+            validarPagina(deslocamento, limite);
+            return consultasFiltradas(filtro, ordem).skip(deslocamento).limit(limite);
+        });
+    }
+
+    private Stream<Consulta> consultasFiltradas(FiltroHistorico filtro, Ordem ordem) {
+        if (filtro == null || ordem == null) {
+            throw new IllegalArgumentException("Dados inválidos para pesquisar consultas.");
+        }
+        if (filtro.getTipoExame() != null) {
+            return Stream.empty();
+        }
+        IntStream origem;
+        if (filtro.getPaciente() != null) {
+            if (!pacientes.contem(filtro.getPaciente())) {
+                return Stream.empty();
+            }
+            // O histórico de um paciente está pela ordem de marcação e é pequeno: basta ordená-lo
+            origem = consultas.ordenarPorDataHora(filtro.getPaciente().getLinhasConsultas().copiar(), ordem);
+        } else if (filtro.temIntervalo()) {
+            origem = consultasPorDataHora.entre(inicioFiltro(filtro), fimFiltro(filtro), ordem);
+        } else {
+            origem = consultasPorDataHora.todos(ordem);
+        }
+        return origem.mapToObj(consultas::consulta).filter(filtro::aceita);
+    }
+
+    /**
+     * Pesquisa os exames que satisfazem um filtro, por ordem cronológica crescente.
+     * 
+     * @param filtro O filtro.
+     * @return Os exames.
+     */
+    public Stream<Exame> pesquisarExames(FiltroHistorico filtro) {
+        return pesquisarExames(filtro, Ordem.CRESCENTE);
+    }
+
+    /**
+     * Pesquisa os exames que satisfazem um filtro. O resultado é calculado à medida que é
+     * percorrido, a partir do índice mais seletivo para o filtro (paciente, intervalo de datas ou tipo),
+     * pelo que obter os primeiros resultados não obriga a percorrer todos os exames.
+     * 
+     * @param filtro O filtro.
+     * @param ordem  A ordem cronológica.
+     * @return Os exames.
+     */
+    public Stream<Exame> pesquisarExames(FiltroHistorico filtro, Ordem ordem) {
+        return metricas.medirPesquisa(OperacaoGestor.PESQUISAR_HISTORICO, () -> examesFiltrados(filtro, ordem));
+    }
+
+    /**
+     * Obtém uma página dos exames que satisfazem um filtro.
+     * 
+     * @param filtro       O filtro.
+     * @param ordem        A ordem cronológica.
+     * @param deslocamento O número de exames a saltar.
+     * @param limite       O número máximo de exames.
+     * @return Os exames da página.
+     */
+    public Stream<Exame> pesquisarExames(FiltroHistorico filtro, Ordem ordem, long deslocamento, long limite) {
+        return metricas.medirPesquisa(OperacaoGestor.PESQUISAR_HISTORICO, () -> {
+            validarPagina(deslocamento, limite);
+            return examesFiltrados(filtro, ordem).skip(deslocamento).limit(limite);
+        });
+    }
+
+    private Stream<Exame> examesFiltrados(FiltroHistorico filtro, Ordem ordem) {
+        if (filtro == null || ordem == null) {
+            throw new IllegalArgumentException("Dados inválidos para pesquisar exames.");
+        }
+        IntStream origem;
+        if (filtro.getPaciente() != null) {
+            if (!pacientes.contem(filtro.getPaciente())) {
+                return Stream.empty();
+            }
+            origem = exames.ordenarPorDataHora(filtro.getPaciente().getLinhasExames().copiar(), ordem);
+        } else if (filtro.temIntervalo()) {
+            origem = examesPorDataHora.entre(inicioFiltro(filtro), fimFiltro(filtro), ordem);
+        } else if (filtro.getTipoExame() != null) {
+            // O índice de tipos já garante o tipo, por isso só resta o médico
+            return examesPorTipo.exatos(filtro.getTipoExame(), ordem).mapToObj(exames::exame)
+                    .filter(exame -> filtro.getMedico() == null || exame.getMedico() == filtro.getMedico());
+        } else {
+            origem = examesPorDataHora.todos(ordem);
+        }
+        return origem.mapToObj(exames::exame).filter(filtro::aceita);
+    }
+
+    private static void validarPagina(long deslocamento, long limite) {
+        if (deslocamento < 0 || limite < 0) {
+            throw new IllegalArgumentException("O deslocamento e o limite não podem ser negativos.");
+        }
+    }
+
+    private static LocalDateTime inicioFiltro(FiltroHistorico filtro) {
+        return filtro.getInicio() == null ? LocalDateTime.MIN : filtro.getInicio();
+    }
+
+    private static LocalDateTime fimFiltro(FiltroHistorico filtro) {
+        // O índice temporal tem precisão ao minuto: o minuto do fim só é incluído se o fim não for exato
+        LocalDateTime fim = filtro.getFim();
+        if (fim == null) {
+            return LocalDateTime.MAX;
+        }
+        return fim.getSecond() == 0 && fim.getNano() == 0 ? fim : fim.plusMinutes(1);
+    }
+
+    /**
+     * Obtém a agenda de um médico num dia.
+     * 
+     * @param medico O médico.
+     * @param dia    O dia.
+     * @return As consultas e exames do dia, por ordem cronológica, e a ocupação do dia.
+     */
+    public AgendaMedico obterAgendaDia(Medico medico, LocalDate dia) {
+        if (dia == null) {
+            throw new IllegalArgumentException("Dados inválidos para obter a agenda.");
+        }
+        return obterAgenda(medico, dia, dia.plusDays(1));
+    }
+
+    /**
+     * Obtém a agenda de um médico na semana (de segunda a domingo) que contém o dia indicado.
+     * 
+     * @param medico O médico.
+     * @param dia    Um dia da semana pretendida.
+     * @return As consultas e exames da semana, por ordem cronológica, e a ocupação da semana.
+     */
+    public AgendaMedico obterAgendaSemana(Medico medico, LocalDate dia) {
+        if (dia == null) {
+            throw new IllegalArgumentException("Dados inválidos para obter a agenda.");
+        }
+        LocalDate segunda = dia.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        return obterAgenda(medico, segunda, segunda.plusWeeks(1));
+    }
+
+    /**
+     * Obtém a agenda de um médico nos dias do intervalo [inicio, fim[. As marcações vêm do
+     * índice temporal do próprio médico, pelo que o custo é O(log n + k) para k marcações,
+     * independentemente do histórico dos outros médicos; a ocupação é obtida dos contadores
+     * diários de horários ocupados, sem percorrer as marcações.
+     * 
+     * @param medico O médico.
+     * @param inicio O primeiro dia (inclusive).
+     * @param fim    O último dia (exclusive).
+     * @return As consultas e exames do período, por ordem cronológica, e a ocupação do período.
+     */
+    public AgendaMedico obterAgenda(Medico medico, LocalDate inicio, LocalDate fim) {
+        return metricas.medir(OperacaoGestor.OBTER_AGENDA, () -> {
+            HorarioMedico horario = medico == null ? null : horariosDisponiveis.get(medico);
+            if (horario == null || inicio == null || fim == null) {
+                throw new IllegalArgumentException("Dados inválidos para obter a agenda.");
+            }
+            List<EntradaAgenda> marcacoes = agendas.get(horario.getCodigo()).entre(inicio.atStartOfDay(), fim.atStartOfDay())
+                    .mapToObj(this::entradaAgenda).collect(Collectors.toList());
+            return new AgendaMedico(medico, inicio, fim, marcacoes, horario.ocupadosEntre(inicio, fim),
+                    horario.horariosUteisEntre(inicio, fim));
+        });
+    }
+
+    private EntradaAgenda entradaAgenda(int codigo) {
+        return codigo >= 0 ? new EntradaAgenda(consultas.consulta(codigo)) : new EntradaAgenda(exames.exame(~codigo));
+    }
+
+    /**
+     * Obtém os horários disponíveis para consultas de um médico.
+     * Os horários são calculados a partir do modelo semanal e das exceções (feriados, ausências
+     * e horários especiais); só os horários ocupados estão guardados.
+     * 
+     * @param medico O médico.
+     * @return Uma lista de horários disponíveis, por ordem cronológica.
+     */
+    public List<LocalDateTime> obterHorariosDisponiveisConsulta(Medico medico) {
+        return metricas.medir(OperacaoGestor.OBTER_HORARIOS,
+                () -> horariosDisponiveis.get(medico).horarios().collect(Collectors.toCollection(ArrayList::new)));
+    }
+
+    /**
+     * Obtém os horários disponíveis para exames de um médico.
+     * 
+     * @param medico O médico.
+     * @return Uma lista de horários disponíveis para exames, por ordem cronológica.
+     */
+    public List<LocalDateTime> obterHorariosDisponiveisExame(Medico medico) {
+        return metricas.medir(OperacaoGestor.OBTER_HORARIOS,
+                () -> horariosDisponiveis.get(medico).horarios().collect(Collectors.toCollection(ArrayList::new)));
+    }
+
+    /**
+     * Percorre os horários disponíveis para consultas de um médico, sem os copiar para uma lista.
+     * Os horários são calculados à medida que são consumidos.
+     * 
+     * @param medico O médico.
+     * @return Os horários disponíveis, por ordem cronológica.
+     */
+    public Stream<LocalDateTime> pesquisarHorariosDisponiveisConsulta(Medico medico) {
+        return metricas.medirPesquisa(OperacaoGestor.OBTER_HORARIOS, () -> horariosDisponiveis.get(medico).horarios());
+    }
+
+    /**
+     * Percorre os horários disponíveis para exames de um médico, sem os copiar para uma lista.
+     * Os horários são calculados à medida que são consumidos.
+     * 
+     * @param medico O médico.
+     * @return Os horários disponíveis para exames, por ordem cronológica.
+     */
+    public Stream<LocalDateTime> pesquisarHorariosDisponiveisExame(Medico medico) {
+        return metricas.medirPesquisa(OperacaoGestor.OBTER_HORARIOS, () -> horariosDisponiveis.get(medico).horarios());
+    }
+
+    /**
+     * Obtém os horários disponíveis de um médico num intervalo.
+     * 
+     * @param medico O médico.
+     * @param inicio O início do intervalo (inclusive).
+     * @param fim    O fim do intervalo (exclusive).
+     * @return Os horários disponíveis no intervalo, por ordem cronológica.
+     */
+    public Stream<LocalDateTime> obterHorariosDisponiveis(Medico medico, LocalDateTime inicio, LocalDateTime fim) {
+        return metricas.medirPesquisa(OperacaoGestor.OBTER_HORARIOS,
+                () -> horariosDisponiveis.get(medico).horariosEntre(inicio, fim));
+    }
+
+    /**
+     * Obtém uma página dos horários disponíveis de um médico num intervalo. Para obter a página
+     * seguinte, basta pedir de novo a partir do minuto seguinte ao último horário devolvido.
+     * O custo de cada página não depende da extensão da grelha de horários.
+     * 
+     * @param medico O médico.
+     * @param desde  O início do intervalo (inclusive).
+     * @param fim    O fim do intervalo (exclusive).
+     * @param limite O número máximo de horários.
+     * @return Até {@code limite} horários disponíveis, por ordem cronológica.
+     */
+    public List<LocalDateTime> obterHorariosDisponiveis(Medico medico, LocalDateTime desde, LocalDateTime fim, int limite) {
+        return metricas.medir(OperacaoGestor.OBTER_HORARIOS, () -> {
+            HorarioMedico horario = medico == null ? null : horariosDisponiveis.get(medico);
+            if (horario == null || desde == null || fim == null) {
+                throw new IllegalArgumentException("Dados inválidos para obter horários disponíveis.");
+            }
+            if (limite < 0) {
+                throw new IllegalArgumentException("O limite não pode ser negativo.");
+            }
+            return horario.horariosEntre(desde, fim).limit(limite).collect(Collectors.toList());
+        });
+    }
+
+    /**
+     * Obtém os próximos horários disponíveis de um médico a partir de uma data e hora.
+     * 
+     * @param medico     O médico.
+     * @param desde      A data e hora a partir da qual pesquisar (inclusive).
+     * @param quantidade O número máximo de horários.
+     * @return Até {@code quantidade} horários disponíveis, por ordem cronológica.
+     */
+    public List<LocalDateTime> obterProximosHorariosDisponiveis(Medico medico, LocalDateTime desde, int quantidade) {
+        return obterHorariosDisponiveis(medico, desde, LocalDateTime.MAX, quantidade);
+    }
+
+    /**
+     * Obtém os primeiros horários disponíveis, a partir de uma data e hora, de todos os médicos
+     * de uma especialidade (sem distinguir maiúsculas, minúsculas nem acentos).
+     * Os horários de cada médico já estão ordenados, pelo que basta intercalá-los com uma fila
+     * de prioridade com um horário por médico: o custo é O(d log d + k log d) para d médicos,
+     * independentemente da extensão da janela de marcação.
+     * 
+     * @param especialidade A especialidade.
+     * @param desde         A data e hora a partir da qual pesquisar (inclusive).
+     * @param quantidade    O número máximo de horários (k).
+     * @return Até {@code quantidade} horários disponíveis, por ordem cronológica e, no mesmo
+     *         instante, pela ordem de registo dos médicos.
+     */
+    public List<HorarioDisponivel> obterProximosHorariosPorEspecialidade(String especialidade, LocalDateTime desde, int quantidade) {
+        return metricas.medir(OperacaoGestor.OBTER_HORARIOS, () -> {
+            if (especialidade == null || desde == null || quantidade < 0) {
+                throw new IllegalArgumentException("Dados inválidos para obter horários disponíveis.");
+            }
+            List<Medico> especialistas = medicosPorEspecialidade.getOrDefault(IndiceDesignacoes.normalizar(especialidade), List.of());
+            HorarioMedico[] horarios = new HorarioMedico[especialistas.size()];
+            // Cada entrada da fila junta o índice do horário (32 bits superiores) e a posição do médico
+            PriorityQueue<Long> proximos = new PriorityQueue<>(Math.max(1, horarios.length));
+            int inicio = Math.max(configuracaoHorario.indiceTeto(desde), configuracaoHorario.inicioJanela());
+            int fim = configuracaoHorario.fimJanela();
+            for (int i = 0; i < horarios.length; i++) {
+                horarios[i] = horariosDisponiveis.get(especialistas.get(i));
+                int indice = horarios[i].proximoLivre(inicio, fim);
+                if (indice >= 0) {
+                    proximos.add(((long) indice << 32) | i);
+                }
+            }
+            List<HorarioDisponivel> resultado = new ArrayList<>(Math.min(quantidade, 64));
+            while (resultado.size() < quantidade && !proximos.isEmpty()) {
+                long entrada = proximos.poll();
+                int indice = (int) (entrada >>> 32);
+                int posicao = (int) entrada;
+                resultado.add(new HorarioDisponivel(especialistas.get(posicao), configuracaoHorario.dataHora(indice)));
+                int seguinte = horarios[posicao].proximoLivre(indice + 1, fim);
+                if (seguinte >= 0) {
+                    proximos.add(((long) seguinte << 32) | posicao);
+                }
+            }
+            return resultado;
+        });
+    }
+
+    /**
+     * Obtém o próximo horário disponível de um médico a partir de uma data e hora.
+     * 
+     * @param medico O médico.
+     * @param desde  A data e hora a partir da qual pesquisar.
+     * @return O próximo horário disponível ou null se não existir.
+     */
+    public LocalDateTime obterProximoHorarioDisponivel(Medico medico, LocalDateTime desde) {
+        return metricas.medir(OperacaoGestor.OBTER_HORARIOS,
+                () -> horariosDisponiveis.get(medico).proximoDisponivel(desde));
     }
 }
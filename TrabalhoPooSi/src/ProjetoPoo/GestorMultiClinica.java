@@ -0,0 +1,403 @@
+package ProjetoPoo;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Classe que gere as consultas e exames de várias clínicas, cada uma com o seu próprio gestor
+ * (GerirConsultasExames): médicos, pacientes, índices, bloqueios, exceções de horário, diário
+ * de operações e métricas. As operações de uma clínica são feitas diretamente no seu gestor,
+ * pelo que clínicas diferentes nunca concorrem entre si pelos mesmos bloqueios.
+ *
+ * Sobre os gestores, esta classe pesquisa pacientes em todas as clínicas e junta os históricos
+ * das clínicas por ordem cronológica. Cada paciente pertence a uma só clínica; a mesma pessoa
+ * pode estar registada em várias clínicas, com o mesmo ID, como pacientes distintos.
+ */
+public class GestorMultiClinica {
+    private ConcurrentNavigableMap<String, GerirConsultasExames> clinicas;
+
+    /**
+     * Construtor da classe GestorMultiClinica, sem clínicas.
+     */
+    public GestorMultiClinica() {
+        this.clinicas = new ConcurrentSkipListMap<>();
+    }
+
+    /**
+     * Adiciona uma clínica com a configuração de horários por omissão e sem diário de operações.
+     *
+     * @param nome O nome da clínica.
+     * @return O gestor da clínica.
+     * @throws IllegalArgumentException Se o nome for inválido ou já existir uma clínica com esse nome.
+     */
+    public GerirConsultasExames adicionarClinica(String nome) {
+        synchronized (clinicas) {
+            verificarClinica(nome, null);
+            return registarClinica(nome, new GerirConsultasExames());
+        }
+    }
+
+    /**
+     * Adiciona uma clínica com persistência num diário de operações próprio.
+     * Se o diário já existir, o estado anterior da clínica é reconstruído a partir dele.
+     *
+     * @param nome            O nome da clínica.
+     * @param configuracao    A configuração de horários da clínica, que não pode ser partilhada com
+     *                        outra clínica (contém os seus feriados e horários especiais).
+     * @param diretorioDiario A diretoria do diário de operações da clínica.
+     * @return O gestor da clínica.
+     * @throws IllegalArgumentException Se os dados forem inválidos ou já existir uma clínica com esse nome.
+     * @throws IOException Se ocorrer um erro ao ler ou abrir o diário.
+     */
+    public GerirConsultasExames adicionarClinica(String nome, ConfiguracaoHorario configuracao, Path diretorioDiario)
+            throws IOException {
+        if (configuracao == null || diretorioDiario == null) {
+            throw new IllegalArgumentException("Dados inválidos para adicionar clínica.");
+        }
+        synchronized (clinicas) {
+            verificarClinica(nome, configuracao);
+            GerirConsultasExames gestor = new GerirConsultasExames(configuracao);
+            gestor.ativarDiario(diretorioDiario);
+            return registarClinica(nome, gestor);
+        }
+    }
+
+    /**
+     * Verifica que o nome da clínica é válido e único e que a configuração de horários não
+     * pertence a outra clínica. Deve ser chamado com o bloqueio do mapa de clínicas.
+     */
+    private void verificarClinica(String nome, ConfiguracaoHorario configuracao) {
+        if (nome == null || nome.trim().isEmpty()) {
+            throw new IllegalArgumentException("Nome da clínica inválido.");
+        }
+        if (clinicas.containsKey(nome)) {
+            throw new IllegalArgumentException("Clínica já existente.");
+        }
+        for (GerirConsultasExames outro : clinicas.values()) {
+            if (outro.getConfiguracaoHorario() == configuracao) {
+                throw new IllegalArgumentException("A configuração de horários já pertence a outra clínica.");
+            }
+        }
+    }
+
+    private GerirConsultasExames registarClinica(String nome, GerirConsultasExames gestor) {
+        clinicas.put(nome, gestor);
+        gestor.getMetricas().registarJmxClinica(nome);
+        return gestor;
+    }
+
+    /**
+     * Obtém o gestor de uma clínica.
+     *
+     * @param nome O nome da clínica.
+     * @return O gestor da clínica, ou null se não existir.
+     */
+    public GerirConsultasExames getClinica(String nome) {
+        return nome == null ? null : clinicas.get(nome);
+    }
+
+    /**
+     * Obtém os nomes das clínicas, por ordem alfabética.
+     *
+     * @return Os nomes das clínicas.
+     */
+    public List<String> getClinicas() {
+        return new ArrayList<>(clinicas.keySet());
+    }
+
+    /**
+     * Obtém a clínica onde um paciente está registado.
+     *
+     * @param paciente O paciente.
+     * @return O nome da clínica, ou null se o paciente não estiver registado em nenhuma.
+     */
+    public String clinicaDoPaciente(Paciente paciente) {
+        if (paciente == null) {
+            return null;
+        }
+        for (Map.Entry<String, GerirConsultasExames> clinica : clinicas.entrySet()) {
+            if (clinica.getValue().pesquisarPacientePorId(paciente.getId()) == paciente) {
+                return clinica.getKey();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Pesquisa um paciente pelo ID em todas as clínicas.
+     *
+     * @param id O ID do paciente.
+     * @return O paciente registado com esse ID em cada clínica, pela ordem das clínicas.
+     */
+    public Map<String, Paciente> pesquisarPacientePorId(String id) {
+        Map<String, Paciente> resultado = new LinkedHashMap<>();
+        for (Map.Entry<String, GerirConsultasExames> clinica : clinicas.entrySet()) {
+            Paciente paciente = clinica.getValue().pesquisarPacientePorId(id);
+            if (paciente != null) {
+                resultado.put(clinica.getKey(), paciente);
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Pesquisa os pacientes com um nome em todas as clínicas.
+     *
+     * @param nome O nome dos pacientes.
+     * @return Os pacientes com esse nome, pela ordem das clínicas.
+     */
+    public List<Paciente> pesquisarPacientesPorNome(String nome) {
+        List<Paciente> resultado = new ArrayList<>();
+        for (GerirConsultasExames gestor : clinicas.values()) {
+            resultado.addAll(gestor.pesquisarPacientesPorNome(nome));
+        }
+        return resultado;
+    }
+
+    /**
+     * Pesquisa as consultas de todas as clínicas que satisfazem um filtro, por ordem cronológica.
+     * Cada clínica já devolve as suas consultas ordenadas, pelo que basta intercalá-las à medida
+     * que o resultado é percorrido; no mesmo instante, as clínicas seguem a ordem alfabética.
+     *
+     * @param filtro O filtro.
+     * @param ordem  A ordem cronológica do resultado.
+     * @return As consultas que satisfazem o filtro.
+     */
+    public Stream<Consulta> pesquisarConsultas(FiltroHistorico filtro, Ordem ordem) {
+        List<Stream<Consulta>> fontes = new ArrayList<>();
+        for (GerirConsultasExames gestor : clinicas.values()) {
+            fontes.add(gestor.pesquisarConsultas(filtro, ordem));
+        }
+        return intercalar(fontes, Consulta::getDataHora, ordem);
+    }
+
+    /**
+     * Pesquisa uma página das consultas de todas as clínicas que satisfazem um filtro, por ordem
+     * cronológica. Nenhuma clínica contribui com mais de {@code deslocamento + limite} consultas.
+     *
+     * @param filtro       O filtro.
+     * @param ordem        A ordem cronológica do resultado.
+     * @param deslocamento O número de consultas a saltar.
+     * @param limite       O número máximo de consultas.
+     * @return As consultas da página.
+     */
+    public Stream<Consulta> pesquisarConsultas(FiltroHistorico filtro, Ordem ordem, long deslocamento, long limite) {
+        validarPagina(deslocamento, limite);
+        List<Stream<Consulta>> fontes = new ArrayList<>();
+        for (GerirConsultasExames gestor : clinicas.values()) {
+            fontes.add(gestor.pesquisarConsultas(filtro, ordem, 0, saturar(deslocamento, limite)));
+        }
+        return intercalar(fontes, Consulta::getDataHora, ordem).skip(deslocamento).limit(limite);
+    }
+
+    /**
+     * Pesquisa os exames de todas as clínicas que satisfazem um filtro, por ordem cronológica.
+     *
+     * @param filtro O filtro.
+     * @param ordem  A ordem cronológica do resultado.
+     * @return Os exames que satisfazem o filtro.
+     */
+    public Stream<Exame> pesquisarExames(FiltroHistorico filtro, Ordem ordem) {
+        List<Stream<Exame>> fontes = new ArrayList<>();
+        for (GerirConsultasExames gestor : clinicas.values()) {
+            fontes.add(gestor.pesquisarExames(filtro, ordem));
+        }
+        return intercalar(fontes, Exame::getDataHora, ordem);
+    }
+
+    /**
+     * Pesquisa uma página dos exames de todas as clínicas que satisfazem um filtro, por ordem
+     * cronológica. Nenhuma clínica contribui com mais de {@code deslocamento + limite} exames.
+     *
+     * @param filtro       O filtro.
+     * @param ordem        A ordem cronológica do resultado.
+     * @param deslocamento O número de exames a saltar.
+     * @param limite       O número máximo de exames.
+     * @return Os exames da página.
+     */
+    public Stream<Exame> pesquisarExames(FiltroHistorico filtro, Ordem ordem, long deslocamento, long limite) {
+        validarPagina(deslocamento, limite);
+        List<Stream<Exame>> fontes = new ArrayList<>();
+        for (GerirConsultasExames gestor : clinicas.values()) {
+            fontes.add(gestor.pesquisarExames(filtro, ordem, 0, saturar(deslocamento, limite)));
+        }
+        return intercalar(fontes, Exame::getDataHora, ordem).skip(deslocamento).limit(limite);
+    }
+
+    /**
+     * Obtém as consultas, em todas as clínicas, dos pacientes registados com um ID, por ordem cronológica.
+     *
+     * @param id    O ID do paciente.
+     * @param ordem A ordem cronológica do resultado.
+     * @return As consultas do paciente.
+     */
+    public Stream<Consulta> pesquisarConsultasDoPaciente(String id, Ordem ordem) {
+        List<Stream<Consulta>> fontes = new ArrayList<>();
+        for (GerirConsultasExames gestor : clinicas.values()) {
+            Paciente paciente = gestor.pesquisarPacientePorId(id);
+            if (paciente != null) {
+                fontes.add(gestor.pesquisarConsultas(filtroPaciente(paciente), ordem));
+            }
+        }
+        return intercalar(fontes, Consulta::getDataHora, ordem);
+    }
+
+    /**
+     * Obtém os exames, em todas as clínicas, dos pacientes registados com um ID, por ordem cronológica.
+     *
+     * @param id    O ID do paciente.
+     * @param ordem A ordem cronológica do resultado.
+     * @return Os exames do paciente.
+     */
+    public Stream<Exame> pesquisarExamesDoPaciente(String id, Ordem ordem) {
+        List<Stream<Exame>> fontes = new ArrayList<>();
+        for (GerirConsultasExames gestor : clinicas.values()) {
+            Paciente paciente = gestor.pesquisarPacientePorId(id);
+            if (paciente != null) {
+                fontes.add(gestor.pesquisarExames(filtroPaciente(paciente), ordem));
+            }
+        }
+        return intercalar(fontes, Exame::getDataHora, ordem);
+    }
+
+    /**
+     * Cria um instantâneo do estado de cada clínica com diário de operações.
+     *
+     * @throws IOException Se ocorrer um erro ao gravar algum instantâneo.
+     */
+    public void criarInstantaneos() throws IOException {
+        for (GerirConsultasExames gestor : clinicas.values()) {
+            if (gestor.temDiario()) {
+                gestor.criarInstantaneo();
+            }
+        }
+    }
+
+    /**
+     * Fecha o diário de operações de todas as clínicas, mesmo que algum falhe.
+     *
+     * @throws IOException Se ocorrer um erro ao fechar algum diário (o primeiro, com os restantes suprimidos).
+     */
+    public void fechar() throws IOException {
+        IOException falha = null;
+        for (GerirConsultasExames gestor : clinicas.values()) {
+            try {
+                gestor.fechar();
+            } catch (IOException e) {
+                if (falha == null) {
+                    falha = e;
+                } else {
+                    falha.addSuppressed(e);
+                }
+            }
+        }
+        if (falha != null) {
+            throw falha;
+        }
+    }
+
+    private static FiltroHistorico filtroPaciente(Paciente paciente) {
+        FiltroHistorico filtro = new FiltroHistorico();
+        filtro.setPaciente(paciente);
+        return filtro;
+    }
+
+    private static void validarPagina(long deslocamento, long limite) {
+        if (deslocamento < 0 || limite < 0) {
+            throw new IllegalArgumentException("O deslocamento e o limite não podem ser negativos.");
+        }
+    }
+
+    private static long saturar(long deslocamento, long limite) {
+        long total = deslocamento + limite;
+        return total < 0 ? Long.MAX_VALUE : total;
+    }
+
+    /**
+     * Intercala sequências já ordenadas numa só, com uma fila de prioridade com o próximo elemento
+     * de cada uma: cada elemento custa O(log c) para c clínicas. A data e hora de cada elemento é
+     * lida uma única vez, porque uma marcação pode ser reagendada enquanto o resultado é percorrido.
+     */
+    private static <T> Stream<T> intercalar(List<Stream<T>> fontes, Function<T, LocalDateTime> dataHora, Ordem ordem) {
+        if (fontes.size() == 1) {
+            return fontes.get(0);
+        }
+        if (fontes.isEmpty()) {
+            return Stream.empty();
+        }
+        Comparator<Cabeca<T>> porDataHora = Comparator.comparing(cabeca -> cabeca.dataHora);
+        PriorityQueue<Cabeca<T>> proximos = new PriorityQueue<>(fontes.size(),
+                (ordem == Ordem.CRESCENTE ? porDataHora : porDataHora.reversed())
+                        .thenComparingInt(cabeca -> cabeca.posicao));
+        List<Iterator<T>> iteradores = new ArrayList<>(fontes.size());
+        for (Stream<T> fonte : fontes) {
+            iteradores.add(fonte.iterator());
+        }
+        Iterator<T> intercalado = new Iterator<T>() {
+            private boolean iniciado;
+
+            @Override
+            public boolean hasNext() {
+                if (!iniciado) {
+                    iniciado = true;
+                    for (int i = 0; i < iteradores.size(); i++) {
+                        avancar(i);
+                    }
+                }
+                return !proximos.isEmpty();
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Cabeca<T> cabeca = proximos.poll();
+                avancar(cabeca.posicao);
+                return cabeca.valor;
+            }
+
+            private void avancar(int posicao) {
+                Iterator<T> iterador = iteradores.get(posicao);
+                if (iterador.hasNext()) {
+                    T valor = iterador.next();
+                    proximos.add(new Cabeca<>(valor, dataHora.apply(valor), posicao));
+                }
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(intercalado,
+                Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> fontes.forEach(Stream::close));
+    }
+
+    /**
+     * Próximo elemento de uma das sequências a intercalar.
+     */
+    private static final class Cabeca<T> {
+        private final T valor;
+        private final LocalDateTime dataHora;
+        private final int posicao;
+
+        private Cabeca(T valor, LocalDateTime dataHora, int posicao) {
+            this.valor = valor;
+            this.dataHora = dataHora;
+            this.posicao = posicao;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package ProjetoPoo;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Classe que acumula latências, em nanossegundos, num histograma log-linear (ao estilo do
+ * HdrHistogram): cada potência de 2 é dividida em 16 intervalos iguais, pelo que qualquer
+ * percentil é obtido com um erro relativo inferior a 6,25%, de 1 ns até cerca de 18 minutos.
+ *
+ * Registar uma latência só incrementa um contador, sem criar objetos nem bloquear. Os contadores
+ * estão repartidos por faixas, escolhidas pela thread, para que threads em processadores
+ * diferentes raramente escrevam na mesma linha de cache; as faixas são somadas na leitura.
+ */
+class HistogramaLatencia {
+    private static final int BITS_SUBINTERVALO = 4;
+    private static final int SUBINTERVALOS = 1 << BITS_SUBINTERVALO;
+    private static final int MAXIMO_EXPOENTE = 40;
+    private static final int INTERVALOS = (MAXIMO_EXPOENTE - BITS_SUBINTERVALO + 2) * SUBINTERVALOS;
+    private static final int MAXIMO_FAIXAS = 8;
+
+    private AtomicLongArray[] faixas;
+    private int mascaraFaixas;
+    private LongAdder soma;
+    private LongAccumulator maximo;
+
+    /**
+     * Construtor da classe HistogramaLatencia.
+     */
+    HistogramaLatencia() {
+        int faixas = Integer.highestOneBit(Math.min(MAXIMO_FAIXAS, Runtime.getRuntime().availableProcessors()));
+        this.faixas = new AtomicLongArray[faixas];
+        for (int i = 0; i < faixas; i++) {
+            this.faixas[i] = new AtomicLongArray(INTERVALOS);
+        }
+        this.mascaraFaixas = faixas - 1;
+        this.soma = new LongAdder();
+        this.maximo = new LongAccumulator(Math::max, 0L);
+    }
+
+    /**
+     * Regista uma latência.
+     *
+     * @param nanos A latência em nanossegundos.
+     */
+    void registar(long nanos) {
+        long valor = Math.max(0L, nanos);
+        faixas[Thread.currentThread().hashCode() & mascaraFaixas].incrementAndGet(intervalo(valor));
+        soma.add(valor);
+        maximo.accumulate(valor);
+    }
+
+    /**
+     * Obtém o número de ocorrências de cada intervalo, somando todas as faixas.
+     *
+     * @return As contagens, pela ordem dos intervalos.
+     */
+    long[] contagens() {
+        long[] contagens = new long[INTERVALOS];
+        for (AtomicLongArray faixa : faixas) {
+            for (int i = 0; i < INTERVALOS; i++) {
+                contagens[i] += faixa.get(i);
+            }
+        }
+        return contagens;
+    }
+
+    /**
+     * Obtém a soma de todas as latências registadas.
+     *
+     * @return A soma em nanossegundos.
+     */
+    long soma() {
+        return soma.sum();
+    }
+
+    /**
+     * Obtém a maior latência registada.
+     *
+     * @return A latência máxima em nanossegundos.
+     */
+    long maximo() {
+        return maximo.get();
+    }
+
+    /**
+     * Repõe o histograma a zero. As latências registadas em simultâneo podem ou não ser mantidas.
+     */
+    void reiniciar() {
+        for (AtomicLongArray faixa : faixas) {
+            for (int i = 0; i < INTERVALOS; i++) {
+                faixa.set(i, 0L);
+            }
+        }
+        soma.reset();
+        maximo.reset();
+    }
+
+    /**
+     * Calcula um percentil a partir das contagens do histograma.
+     *
+     * @param contagens As contagens, obtidas com {@link #contagens()}.
+     * @param percentil O percentil, entre 0 e 100.
+     * @return O maior valor do intervalo onde está o percentil (limitado à latência máxima),
+     *         em nanossegundos, ou 0 se não houver registos.
+     */
+    long percentil(long[] contagens, double percentil) {
+        long total = 0;
+        for (long contagem : contagens) {
+            total += contagem;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long alvo = Math.max(1L, (long) Math.ceil(total * percentil / 100.0));
+        long acumulado = 0;
+        for (int i = 0; i < contagens.length; i++) {
+            acumulado += contagens[i];
+            if (acumulado >= alvo) {
+                return Math.min(maiorValor(i), maximo());
+            }
+        }
+        return maximo();
+    }
+
+    /**
+     * Obtém o intervalo de um valor: os 16 primeiros valores têm um intervalo cada; a partir
+     * daí, o expoente do bit mais significativo escolhe o grupo e os 4 bits seguintes o intervalo.
+     */
+    private static int intervalo(long valor) {
+        if (valor < SUBINTERVALOS) {
+            return (int) valor;
+        }
+        int expoente = 63 - Long.numberOfLeadingZeros(valor);
+        if (expoente > MAXIMO_EXPOENTE) {
+            return INTERVALOS - 1;
+        }
+        int subintervalo = (int) (valor >>> (expoente - BITS_SUBINTERVALO)) & (SUBINTERVALOS - 1);
+        return (expoente - BITS_SUBINTERVALO + 1) * SUBINTERVALOS + subintervalo;
+    }
+
+    /**
+     * Obtém o maior valor que pertence a um intervalo.
+     */
+    private static long maiorValor(int intervalo) {
+        int grupo = intervalo / SUBINTERVALOS;
+        if (grupo == 0) {
+            return intervalo;
+        }
+        int deslocamento = grupo - 1;
+        long menor = (long) (SUBINTERVALOS + intervalo % SUBINTERVALOS) << deslocamento;
+        return menor + (1L << deslocamento) - 1;
+    }
+}
@@ -0,0 +1,48 @@
+package ProjetoPoo;
+
+import java.time.LocalDateTime;
+
+/**
+ * Classe que representa um horário disponível de um médico.
+ */
+public class HorarioDisponivel {
+    private Medico medico;
+    private LocalDateTime dataHora;
+
+    /**
+     * Construtor da classe HorarioDisponivel.
+     *
+     * @param medico   O médico.
+     * @param dataHora A data e hora do horário.
+     */
+    public HorarioDisponivel(Medico medico, LocalDateTime dataHora) {
+        this.medico = medico;
+        this.dataHora = dataHora;
+    }
+
+    /**
+     * Obtém o médico.
+     *
+     * @return O médico.
+     */
+    public Medico getMedico() {
+        return medico;
+    }
+
+    /**
+     * Obtém a data e hora do horário.
+     *
+     * @return A data e hora.
+     */
+    public LocalDateTime getDataHora() {
+        return dataHora;
+    }
+
+    @Override
+    public String toString() {
+        return "HorarioDisponivel{" +
+                "medico=" + medico.getNome() +
+                ", dataHora=" + dataHora +
+                '}';
+    }
+}
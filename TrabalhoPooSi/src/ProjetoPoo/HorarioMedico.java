@@ -0,0 +1,368 @@
+package ProjetoPoo;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Classe que representa os horários de um médico.
+ * Os horários disponíveis não são guardados: um horário está disponível se estiver na janela
+ * de marcação, for útil segundo o modelo semanal e as exceções (da clínica e do próprio médico,
+ * como ausências ou horários especiais) e não estiver ocupado. Só os horários ocupados são
+ * guardados, em blocos de 32 dias com um bit por horário e o número de horários ocupados de
+ * cada dia; os blocos só existem enquanto tiverem marcações. Registar um médico custa, por isso,
+ * O(1) em tempo e memória, qualquer que seja o horizonte de marcação.
+ * As alterações são feitas sob o bloqueio próprio de cada médico, para que marcações
+ * de médicos diferentes nunca concorram entre si; as leituras não bloqueiam.
+ */
+public class HorarioMedico {
+    private static final int BITS_BLOCO = 5;
+    private static final int DIAS_POR_BLOCO = 1 << BITS_BLOCO;
+
+    private int codigo;
+    private ConfiguracaoHorario configuracao;
+    private ExcecoesHorario excecoes;
+    private ConcurrentNavigableMap<Integer, Bloco> ocupados;
+    private ReentrantLock bloqueio;
+
+    /**
+     * Horários ocupados de 32 dias consecutivos.
+     */
+    private static final class Bloco {
+        private final long[] bits;
+        private final int[] ocupadosPorDia = new int[DIAS_POR_BLOCO];
+        private int total;
+
+        private Bloco(int horariosPorDia) {
+            this.bits = new long[(DIAS_POR_BLOCO * horariosPorDia + 63) >>> 6];
+        }
+
+        private boolean ocupado(int posicao) {
+            return (bits[posicao >>> 6] & (1L << posicao)) != 0;
+        }
+
+        /**
+         * Obtém a primeira posição livre do intervalo [de, ate[, saltando 64 horários de cada vez
+         * enquanto estiverem todos ocupados, ou -1 se estiverem todas ocupadas.
+         */
+        private int proximoLivre(int de, int ate) {
+            int palavra = de >>> 6;
+            long livres = ~bits[palavra] & (-1L << de);
+            while (livres == 0) {
+                if (++palavra << 6 >= ate) {
+                    return -1;
+                }
+                livres = ~bits[palavra];
+            }
+            int livre = (palavra << 6) + Long.numberOfTrailingZeros(livres);
+            return livre < ate ? livre : -1;
+        }
+    }
+
+    /**
+     * Construtor da classe HorarioMedico.
+     *
+     * @param codigo       O código do médico (ordem de registo no gestor).
+     * @param configuracao A configuração de horários.
+     */
+    public HorarioMedico(int codigo, ConfiguracaoHorario configuracao) {
+        this.codigo = codigo;
+        this.configuracao = configuracao;
+        this.excecoes = new ExcecoesHorario();
+        this.ocupados = new ConcurrentSkipListMap<>();
+        this.bloqueio = new ReentrantLock();
+    }
+
+    /**
+     * Obtém o código do médico.
+     *
+     * @return O código do médico.
+     */
+    public int getCodigo() {
+        return codigo;
+    }
+
+    /**
+     * Obtém as exceções deste médico ao modelo semanal (ausências e horários especiais).
+     *
+     * @return As exceções.
+     */
+    ExcecoesHorario getExcecoes() {
+        return excecoes;
+    }
+
+    /**
+     * Adquire o bloqueio deste médico, para agrupar várias operações numa só operação atómica.
+     */
+    public void bloquear() {
+        bloqueio.lock();
+    }
+
+    /**
+     * Liberta o bloqueio deste médico.
+     */
+    public void desbloquear() {
+        bloqueio.unlock();
+    }
+
+    /**
+     * Verifica se um horário está disponível.
+     *
+     * @param dataHora O horário.
+     * @return true se o horário está disponível.
+     */
+    public boolean estaDisponivel(LocalDateTime dataHora) {
+        int indice = configuracao.indice(dataHora);
+        return indice >= 0 && naJanela(indice) && util(indice) && !ocupado(indice);
+    }
+
+    /**
+     * Reserva um horário, verificando e marcando-o numa única operação.
+     *
+     * @param dataHora O horário a reservar.
+     * @return true se o horário estava disponível e foi reservado, false caso contrário.
+     */
+    public boolean reservar(LocalDateTime dataHora) {
+        int indice = configuracao.indice(dataHora);
+        if (indice < 0 || !naJanela(indice) || !util(indice)) {
+            return false;
+        }
+        return ocupar(indice);
+    }
+
+    /**
+     * Marca um horário como ocupado sem verificar a janela de marcação nem os horários de
+     * trabalho, para repor marcações já feitas (que podem ter ocorrido no passado ou num dia
+     * que entretanto deixou de ser útil).
+     *
+     * @param dataHora O horário.
+     * @return true se o horário não estava ocupado.
+     */
+    boolean ocupar(LocalDateTime dataHora) {
+        int indice = configuracao.indice(dataHora);
+        return indice >= 0 && ocupar(indice);
+    }
+
+    /**
+     * Marca como ocupado o horário que começa num minuto, como {@link #ocupar(LocalDateTime)},
+     * sem criar a data e hora; usado ao carregar as marcações de um instantâneo.
+     *
+     * @param minuto O minuto desde a época.
+     * @return true se o horário não estava ocupado.
+     */
+    boolean ocuparMinuto(long minuto) {
+        int indice = configuracao.indiceDoMinuto(minuto);
+        return indice >= 0 && ocupar(indice);
+    }
+
+    private boolean ocupar(int indice) {
+        bloqueio.lock();
+        try {
+            if (ocupado(indice)) {
+                return false;
+            }
+            int dia = configuracao.diaDoIndice(indice);
+            Bloco bloco = ocupados.get(dia >>> BITS_BLOCO);
+            if (bloco == null) {
+                bloco = new Bloco(configuracao.getHorariosPorDia());
+                ocupados.put(dia >>> BITS_BLOCO, bloco);
+            }
+            int posicao = posicao(indice);
+            bloco.bits[posicao >>> 6] |= 1L << posicao;
+            bloco.ocupadosPorDia[dia & (DIAS_POR_BLOCO - 1)]++;
+            bloco.total++;
+            return true;
+        } finally {
+            bloqueio.unlock();
+        }
+    }
+
+    /**
+     * Liberta um horário reservado.
+     *
+     * @param dataHora O horário a libertar.
+     * @return true se o horário estava reservado e foi libertado, false caso contrário.
+     */
+    public boolean libertar(LocalDateTime dataHora) {
+        int indice = configuracao.indice(dataHora);
+        if (indice < 0) {
+            return false;
+        }
+        bloqueio.lock();
+        try {
+            if (!ocupado(indice)) {
+                return false;
+            }
+            int dia = configuracao.diaDoIndice(indice);
+            Bloco bloco = ocupados.get(dia >>> BITS_BLOCO);
+            int posicao = posicao(indice);
+            bloco.bits[posicao >>> 6] &= ~(1L << posicao);
+            bloco.ocupadosPorDia[dia & (DIAS_POR_BLOCO - 1)]--;
+            if (--bloco.total == 0) {
+                ocupados.remove(dia >>> BITS_BLOCO);
+            }
+            return true;
+        } finally {
+            bloqueio.unlock();
+        }
+    }
+
+    /**
+     * Obtém o primeiro horário disponível igual ou posterior a uma data e hora.
+     *
+     * @param desde A data e hora a partir da qual pesquisar.
+     * @return O próximo horário disponível ou null se não existir na janela de marcação.
+     */
+    public LocalDateTime proximoDisponivel(LocalDateTime desde) {
+        int indice = proximoLivre(Math.max(configuracao.indiceTeto(desde), configuracao.inicioJanela()),
+                configuracao.fimJanela());
+        return indice < 0 ? null : configuracao.dataHora(indice);
+    }
+
+    /**
+     * Obtém todos os horários disponíveis da janela de marcação, por ordem cronológica.
+     * Os horários são calculados à medida que a sequência é percorrida.
+     *
+     * @return Os horários disponíveis.
+     */
+    public Stream<LocalDateTime> horarios() {
+        return indicesLivres(configuracao.inicioJanela(), configuracao.fimJanela()).mapToObj(configuracao::dataHora);
+    }
+
+    /**
+     * Obtém os horários disponíveis no intervalo [inicio, fim[, limitado à janela de marcação,
+     * por ordem cronológica. Os horários são calculados à medida que a sequência é percorrida.
+     *
+     * @param inicio O início do intervalo (inclusive).
+     * @param fim    O fim do intervalo (exclusive).
+     * @return Os horários disponíveis no intervalo.
+     */
+    public Stream<LocalDateTime> horariosEntre(LocalDateTime inicio, LocalDateTime fim) {
+        if (!inicio.isBefore(fim)) {
+            return Stream.empty();
+        }
+        return indicesLivres(Math.max(configuracao.indiceTeto(inicio), configuracao.inicioJanela()),
+                Math.min(configuracao.indiceTeto(fim), configuracao.fimJanela()))
+                .mapToObj(configuracao::dataHora);
+    }
+
+    /**
+     * Obtém o número de horários disponíveis na janela de marcação. Percorre todos os horários
+     * da janela, pelo que custa O(horários da janela).
+     *
+     * @return O número de horários disponíveis.
+     */
+    public int tamanho() {
+        return (int) indicesLivres(configuracao.inicioJanela(), configuracao.fimJanela()).count();
+    }
+
+    /**
+     * Obtém o número de horários ocupados nos dias do intervalo [inicio, fim[.
+     *
+     * @param inicio O primeiro dia (inclusive).
+     * @param fim    O último dia (exclusive).
+     * @return O número de horários ocupados.
+     */
+    public int ocupadosEntre(LocalDate inicio, LocalDate fim) {
+        long de = Math.max(0L, inicio.toEpochDay());
+        long ate = Math.min(Integer.MAX_VALUE, fim.toEpochDay());
+        if (de >= ate) {
+            return 0;
+        }
+        int total = 0;
+        for (Map.Entry<Integer, Bloco> entrada
+                : ocupados.subMap((int) (de >>> BITS_BLOCO), true, (int) ((ate - 1) >>> BITS_BLOCO), true).entrySet()) {
+            long primeiroDia = (long) entrada.getKey() << BITS_BLOCO;
+            int[] porDia = entrada.getValue().ocupadosPorDia;
+            for (int i = (int) Math.max(0L, de - primeiroDia); i < porDia.length && primeiroDia + i < ate; i++) {
+                total += porDia[i];
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Obtém o número de horários úteis deste médico nos dias do intervalo [inicio, fim[,
+     * tendo em conta as exceções da clínica e as suas.
+     *
+     * @param inicio O primeiro dia (inclusive).
+     * @param fim    O último dia (exclusive).
+     * @return O número de horários úteis.
+     */
+    public int horariosUteisEntre(LocalDate inicio, LocalDate fim) {
+        return configuracao.horariosUteisEntre(inicio, fim, excecoes);
+    }
+
+    private IntStream indicesLivres(int inicio, int fim) {
+        int primeiro = proximoLivre(inicio, fim);
+        return IntStream.iterate(primeiro, i -> i >= 0, i -> proximoLivre(i + 1, fim));
+    }
+
+    /**
+     * Obtém o índice do primeiro horário disponível do intervalo [indice, limite[, calculando
+     * os horários de trabalho de cada dia à medida que avança. Não verifica a janela de marcação.
+     *
+     * @param indice O índice de partida.
+     * @param limite O índice onde parar (exclusive).
+     * @return O índice do horário disponível, ou -1 se não existir.
+     */
+    int proximoLivre(int indice, int limite) {
+        int horariosPorDia = configuracao.getHorariosPorDia();
+        while (indice < limite) {
+            int dia = configuracao.diaDoIndice(indice);
+            int primeiro = dia * horariosPorDia;
+            int horarios = configuracao.horariosDoDia(dia, excecoes);
+            int de = Math.max(indice - primeiro, ExcecoesHorario.inicio(horarios));
+            int ate = (int) Math.min(ExcecoesHorario.fim(horarios), (long) limite - primeiro);
+            if (de < ate) {
+                Bloco bloco = ocupados.isEmpty() ? null : ocupados.get(dia >>> BITS_BLOCO);
+                if (bloco == null) {
+                    return primeiro + de;
+                }
+                int inicioDia = (dia & (DIAS_POR_BLOCO - 1)) * horariosPorDia;
+                int livre = bloco.proximoLivre(inicioDia + de, inicioDia + ate);
+                if (livre >= 0) {
+                    return primeiro + livre - inicioDia;
+                }
+            }
+            if ((long) primeiro + horariosPorDia > Integer.MAX_VALUE) {
+                return -1;
+            }
+            indice = primeiro + horariosPorDia;
+        }
+        return -1;
+    }
+
+    private boolean naJanela(int indice) {
+        return indice >= configuracao.inicioJanela() && indice < configuracao.fimJanela();
+    }
+
+    private boolean util(int indice) {
+        int dia = configuracao.diaDoIndice(indice);
+        int horarios = configuracao.horariosDoDia(dia, excecoes);
+        int horarioDia = indice - dia * configuracao.getHorariosPorDia();
+        return horarioDia >= ExcecoesHorario.inicio(horarios) && horarioDia < ExcecoesHorario.fim(horarios);
+    }
+
+    /**
+     * Obtém a posição de um horário no seu bloco.
+     */
+    private int posicao(int indice) {
+        int horariosPorDia = configuracao.getHorariosPorDia();
+        int dia = indice / horariosPorDia;
+        return (dia & (DIAS_POR_BLOCO - 1)) * horariosPorDia + (indice - dia * horariosPorDia);
+    }
+
+    private boolean ocupado(int indice) {
+        if (ocupados.isEmpty()) {
+            return false;
+        }
+        Bloco bloco = ocupados.get(configuracao.diaDoIndice(indice) >>> BITS_BLOCO);
+        return bloco != null && bloco.ocupado(posicao(indice));
+    }
+}
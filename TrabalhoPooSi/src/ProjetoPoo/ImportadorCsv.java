@@ -0,0 +1,476 @@
+package ProjetoPoo;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.format.ResolverStyle;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Classe que importa médicos, pacientes, marcações e resultados de exames a partir de um ficheiro CSV.
+ *
+ * O ficheiro é lido linha a linha, em lotes: as linhas de cada lote são analisadas e validadas
+ * em paralelo e depois aplicadas ao gestor pela ordem do ficheiro. As linhas seguidas do mesmo
+ * tipo são aplicadas de uma só vez: os médicos e os pacientes são registados em lote, ficando
+ * rejeitados só os que já estavam registados, e as marcações são importadas num lote atómico;
+ * só se esse lote for recusado são importadas uma a uma, para encontrar as que falham. Cada lote
+ * é gravado no diário de operações com um único registo, e a importação só termina depois de
+ * tudo o que importou estar gravado.
+ *
+ * As marcações podem ser históricas: são aceites no passado e fora dos horários de trabalho
+ * atuais, desde que o paciente e o médico estejam registados e o horário esteja livre.
+ * As linhas rejeitadas são escritas num ficheiro à parte, com o número da linha e o motivo
+ * da rejeição.
+ *
+ * O primeiro campo de cada linha indica o tipo de registo:
+ * <pre>
+ * MEDICO,nome,especialidade
+ * PACIENTE,id,nome,dd-MM-yyyy
+ * CONSULTA,idPaciente,nomeMedico,dd-MM-yyyy HH:mm
+ * EXAME,idPaciente,nomeMedico,dd-MM-yyyy HH:mm,designacao
+ * RESULTADO,idPaciente,dd-MM-yyyy HH:mm,observacoes
+ * </pre>
+ * Os campos podem estar entre aspas (com as aspas interiores duplicadas). As linhas vazias
+ * e as começadas por '#' são ignoradas.
+ */
+public class ImportadorCsv {
+    private static final int TAMANHO_LOTE = 8192;
+    private static final DateTimeFormatter FORMATO_DATA = DateTimeFormatter.ofPattern("dd-MM-uuuu")
+            .withResolverStyle(ResolverStyle.STRICT);
+    private static final DateTimeFormatter FORMATO_DATA_HORA = DateTimeFormatter.ofPattern("dd-MM-uuuu HH:mm")
+            .withResolverStyle(ResolverStyle.STRICT);
+
+    private GerirConsultasExames gestor;
+    private char separador;
+    private int tamanhoLote;
+    private Map<String, Medico> medicosPorNome;
+
+    /**
+     * Tipos de registo aceites no ficheiro, com o campo de validação de cada posição
+     * (null nas posições que não são texto validado).
+     */
+    private enum Tipo {
+        MEDICO(null, Validador.Campo.NOME_MEDICO, Validador.Campo.ESPECIALIDADE),
+        PACIENTE(null, Validador.Campo.ID_PACIENTE, Validador.Campo.NOME_PACIENTE, null),
+        CONSULTA(null, Validador.Campo.ID_PACIENTE, Validador.Campo.NOME_MEDICO, null),
+        EXAME(null, Validador.Campo.ID_PACIENTE, Validador.Campo.NOME_MEDICO, null, Validador.Campo.DESIGNACAO),
+        RESULTADO(null, Validador.Campo.ID_PACIENTE, null, Validador.Campo.OBSERVACOES);
+
+        private final int campos;
+        private final Validador.Campo[] validacoes;
+
+        Tipo(Validador.Campo... validacoes) {
+            this.campos = validacoes.length;
+            this.validacoes = validacoes;
+        }
+    }
+
+    /**
+     * Uma linha do ficheiro, depois de analisada.
+     */
+    private static class Linha {
+        private long numero;
+        private String texto;
+        private Tipo tipo;
+        private String[] campos;
+        private LocalDateTime dataHora;
+        private Date dataNascimento;
+        private String erro;
+
+        private Linha(long numero, String texto) {
+            this.numero = numero;
+            this.texto = texto;
+        }
+    }
+
+    /**
+     * Resultado de uma importação.
+     */
+    public static class Resultado {
+        private long lidas;
+        private long importadas;
+        private long rejeitadas;
+
+        /**
+         * Obtém o número de linhas lidas (sem contar as vazias e os comentários).
+         *
+         * @return O número de linhas lidas.
+         */
+        public long getLidas() {
+            return lidas;
+        }
+
+        /**
+         * Obtém o número de linhas importadas.
+         *
+         * @return O número de linhas importadas.
+         */
+        public long getImportadas() {
+            return importadas;
+        }
+
+        /**
+         * Obtém o número de linhas rejeitadas.
+         *
+         * @return O número de linhas rejeitadas.
+         */
+        public long getRejeitadas() {
+            return rejeitadas;
+        }
+
+        @Override
+        public String toString() {
+            return "Linhas lidas: " + lidas + ", importadas: " + importadas + ", rejeitadas: " + rejeitadas;
+        }
+    }
+
+    /**
+     * Construtor da classe ImportadorCsv, com campos separados por vírgulas.
+     *
+     * @param gestor O gestor onde importar os dados.
+     */
+    public ImportadorCsv(GerirConsultasExames gestor) {
+        this(gestor, ',', TAMANHO_LOTE);
+    }
+
+    /**
+     * Construtor da classe ImportadorCsv.
+     *
+     * @param gestor      O gestor onde importar os dados.
+     * @param separador   O separador dos campos.
+     * @param tamanhoLote O número de linhas de cada lote.
+     */
+    public ImportadorCsv(GerirConsultasExames gestor, char separador, int tamanhoLote) {
+        if (gestor == null) {
+            throw new IllegalArgumentException("Gestor não pode ser nulo.");
+        }
+        if (separador == '"' || separador == '\n' || separador == '\r') {
+            throw new IllegalArgumentException("Separador inválido.");
+        }
+        if (tamanhoLote <= 0) {
+            throw new IllegalArgumentException("O tamanho do lote deve ser positivo.");
+        }
+        this.gestor = gestor;
+        this.separador = separador;
+        this.tamanhoLote = tamanhoLote;
+        this.medicosPorNome = new HashMap<>();
+    }
+
+    /**
+     * Importa um ficheiro CSV, escrevendo as linhas rejeitadas noutro ficheiro.
+     *
+     * @param ficheiro            O ficheiro a importar (em UTF-8).
+     * @param ficheiroRejeitadas  O ficheiro onde escrever as linhas rejeitadas.
+     * @return O resultado da importação.
+     * @throws IOException Se ocorrer um erro de leitura ou escrita.
+     */
+    public Resultado importar(Path ficheiro, Path ficheiroRejeitadas) throws IOException {
+        try (BufferedReader entrada = Files.newBufferedReader(ficheiro, StandardCharsets.UTF_8);
+             BufferedWriter rejeitadas = Files.newBufferedWriter(ficheiroRejeitadas, StandardCharsets.UTF_8)) {
+            return importar(entrada, rejeitadas);
+        }
+    }
+
+    /**
+     * Importa os dados lidos de um Reader, escrevendo as linhas rejeitadas num Writer.
+     *
+     * @param entrada     A origem dos dados em CSV.
+     * @param rejeitadas  O destino das linhas rejeitadas.
+     * @return O resultado da importação.
+     * @throws IOException Se ocorrer um erro de leitura ou escrita.
+     */
+    public Resultado importar(Reader entrada, Writer rejeitadas) throws IOException {
+        BufferedReader leitor = entrada instanceof BufferedReader ? (BufferedReader) entrada : new BufferedReader(entrada, 1 << 16);
+        Resultado resultado = new Resultado();
+        List<Linha> lote = new ArrayList<>(tamanhoLote);
+        long numero = 0;
+        String texto;
+        while ((texto = leitor.readLine()) != null) {
+            numero++;
+            if (texto.isBlank() || texto.charAt(0) == '#') {
+                continue;
+            }
+            lote.add(new Linha(numero, texto));
+            if (lote.size() == tamanhoLote) {
+                processarLote(lote, rejeitadas, resultado);
+                lote.clear();
+            }
+        }
+        processarLote(lote, rejeitadas, resultado);
+        gestor.sincronizarDiario();
+        rejeitadas.flush();
+        return resultado;
+    }
+
+    private void processarLote(List<Linha> lote, Writer rejeitadas, Resultado resultado) throws IOException {
+        // A análise não depende do estado do gestor, por isso as linhas do lote são validadas em paralelo
+        IntStream.range(0, lote.size()).parallel().forEach(i -> analisar(lote.get(i)));
+        List<Linha> pendentes = new ArrayList<>();
+        for (Linha linha : lote) {
+            if (linha.erro != null) {
+                continue;
+            }
+            // As linhas pendentes são aplicadas primeiro, porque esta linha pode depender delas
+            if (!pendentes.isEmpty() && grupo(pendentes.get(0).tipo) != grupo(linha.tipo)) {
+                aplicarPendentes(pendentes);
+            }
+            if (linha.tipo != Tipo.RESULTADO) {
+                pendentes.add(linha);
+                continue;
+            }
+            try {
+                registarResultado(linha);
+            } catch (IllegalArgumentException e) {
+                linha.erro = e.getMessage();
+            }
+        }
+        aplicarPendentes(pendentes);
+        for (Linha linha : lote) {
+            resultado.lidas++;
+            if (linha.erro == null) {
+                resultado.importadas++;
+            } else {
+                resultado.rejeitadas++;
+                escreverRejeitada(linha, rejeitadas);
+            }
+        }
+    }
+
+    private void analisar(Linha linha) {
+        String[] campos = separar(linha.texto);
+        if (campos == null) {
+            linha.erro = "Aspas não terminadas.";
+            return;
+        }
+        Tipo tipo;
+        try {
+            tipo = Tipo.valueOf(campos[0].toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            linha.erro = "Tipo de registo desconhecido: " + campos[0];
+            return;
+        }
+        if (campos.length != tipo.campos) {
+            linha.erro = "Número de campos inválido: esperados " + tipo.campos + ", encontrados " + campos.length + ".";
+            return;
+        }
+        for (int i = 1; i < campos.length; i++) {
+            if (campos[i].isEmpty()) {
+                linha.erro = "Campo " + (i + 1) + " vazio.";
+                return;
+            }
+        }
+        linha.erro = Validador.verificar(tipo.validacoes, campos);
+        if (linha.erro != null) {
+            return;
+        }
+        linha.tipo = tipo;
+        linha.campos = campos;
+        try {
+            switch (tipo) {
+                case PACIENTE:
+                    linha.dataNascimento = Date.from(LocalDate.parse(campos[3], FORMATO_DATA)
+                            .atStartOfDay(ZoneId.systemDefault()).toInstant());
+                    break;
+                case CONSULTA:
+                case EXAME:
+                    linha.dataHora = LocalDateTime.parse(campos[3], FORMATO_DATA_HORA);
+                    break;
+                case RESULTADO:
+                    linha.dataHora = LocalDateTime.parse(campos[2], FORMATO_DATA_HORA);
+                    break;
+                default:
+                    break;
+            }
+        } catch (DateTimeParseException e) {
+            linha.erro = "Data inválida: " + e.getParsedString();
+        }
+    }
+
+    /**
+     * Obtém o grupo de um tipo de registo: as linhas seguidas do mesmo grupo são aplicadas juntas.
+     */
+    private static Tipo grupo(Tipo tipo) {
+        return tipo == Tipo.EXAME ? Tipo.CONSULTA : tipo;
+    }
+
+    /**
+     * Aplica as linhas pendentes, todas do mesmo grupo, e esvazia a lista.
+     */
+    private void aplicarPendentes(List<Linha> linhas) {
+        if (linhas.isEmpty()) {
+            return;
+        }
+        switch (grupo(linhas.get(0).tipo)) {
+            case MEDICO:
+                registarMedicos(linhas);
+                break;
+            case PACIENTE:
+                registarPacientes(linhas);
+                break;
+            default:
+                importarMarcacoes(linhas);
+                break;
+        }
+        linhas.clear();
+    }
+
+    private void registarMedicos(List<Linha> linhas) {
+        List<Medico> medicos = new ArrayList<>(linhas.size());
+        for (Linha linha : linhas) {
+            medicos.add(new Medico(linha.campos[1], linha.campos[2]));
+        }
+        String[] recusas = gestor.registarMedicosValidados(medicos);
+        for (int i = 0; i < recusas.length; i++) {
+            linhas.get(i).erro = recusas[i];
+            if (recusas[i] == null) {
+                medicosPorNome.putIfAbsent(medicos.get(i).getNome(), medicos.get(i));
+            }
+        }
+    }
+
+    private void registarPacientes(List<Linha> linhas) {
+        List<Paciente> pacientes = new ArrayList<>(linhas.size());
+        for (Linha linha : linhas) {
+            pacientes.add(new Paciente(linha.campos[1], linha.campos[2], linha.dataNascimento));
+        }
+        String[] recusas = gestor.registarPacientesValidados(pacientes);
+        for (int i = 0; i < recusas.length; i++) {
+            linhas.get(i).erro = recusas[i];
+        }
+    }
+
+    /**
+     * Importa as marcações pendentes num único lote. Como o lote é atómico, se for recusado
+     * nenhuma marcação foi feita e as linhas são importadas uma a uma, ficando cada linha
+     * recusada com o seu próprio motivo.
+     */
+    private void importarMarcacoes(List<Linha> linhas) {
+        List<PedidoMarcacao> pedidos = new ArrayList<>(linhas.size());
+        List<Linha> pendentes = new ArrayList<>(linhas.size());
+        for (Linha linha : linhas) {
+            try {
+                String[] campos = linha.campos;
+                pedidos.add(linha.tipo == Tipo.EXAME
+                        ? new PedidoMarcacao(paciente(campos[1]), linha.dataHora, campos[4], medico(campos[2]))
+                        : new PedidoMarcacao(paciente(campos[1]), linha.dataHora, medico(campos[2])));
+                pendentes.add(linha);
+            } catch (IllegalArgumentException e) {
+                linha.erro = e.getMessage();
+            }
+        }
+        try {
+            gestor.importarLote(pedidos);
+        } catch (IllegalArgumentException e) {
+            for (int i = 0; i < pedidos.size(); i++) {
+                try {
+                    gestor.importarLote(List.of(pedidos.get(i)));
+                } catch (IllegalArgumentException erro) {
+                    pendentes.get(i).erro = erro.getMessage();
+                }
+            }
+        }
+    }
+
+    private void registarResultado(Linha linha) {
+        String[] campos = linha.campos;
+        Exame exame = gestor.pesquisarExame(paciente(campos[1]), linha.dataHora);
+        if (exame == null) {
+            throw new IllegalArgumentException("Exame não encontrado.");
+        }
+        gestor.registarResultadosExame(exame, campos[3]);
+    }
+
+    private Paciente paciente(String id) {
+        Paciente paciente = gestor.pesquisarPacientePorId(id);
+        if (paciente == null) {
+            throw new IllegalArgumentException("Paciente não registado.");
+        }
+        return paciente;
+    }
+
+    private Medico medico(String nome) {
+        Medico medico = medicosPorNome.get(nome);
+        if (medico == null) {
+            medico = gestor.pesquisarMedico(nome);
+            if (medico == null) {
+                throw new IllegalArgumentException("Médico não registado.");
+            }
+            medicosPorNome.put(nome, medico);
+        }
+        return medico;
+    }
+
+    private void escreverRejeitada(Linha linha, Writer rejeitadas) throws IOException {
+        rejeitadas.write(Long.toString(linha.numero));
+        rejeitadas.write(separador);
+        escreverCampo(linha.erro, rejeitadas);
+        rejeitadas.write(separador);
+        rejeitadas.write(linha.texto);
+        rejeitadas.write(System.lineSeparator());
+    }
+
+    private void escreverCampo(String campo, Writer saida) throws IOException {
+        saida.write('"');
+        for (int i = 0; i < campo.length(); i++) {
+            char c = campo.charAt(i);
+            if (c == '"') {
+                saida.write('"');
+            }
+            saida.write(c);
+        }
+        saida.write('"');
+    }
+
+    /**
+     * Separa uma linha nos seus campos, sem espaços nas extremidades.
+     *
+     * @param texto A linha.
+     * @return Os campos, ou null se houver aspas por terminar.
+     */
+    private String[] separar(String texto) {
+        List<String> campos = new ArrayList<>(6);
+        StringBuilder campo = new StringBuilder();
+        boolean entreAspas = false;
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            if (entreAspas) {
+                if (c != '"') {
+                    campo.append(c);
+                } else if (i + 1 < texto.length() && texto.charAt(i + 1) == '"') {
+                    campo.append('"');
+                    i++;
+                } else {
+                    entreAspas = false;
+                }
+            } else if (c == '"') {
+                entreAspas = true;
+            } else if (c == separador) {
+                campos.add(campo.toString().strip());
+                campo.setLength(0);
+            } else {
+                campo.append(c);
+            }
+        }
+        if (entreAspas) {
+            return null;
+        }
+        campos.add(campo.toString().strip());
+        return campos.toArray(new String[0]);
+    }
+}
@@ -0,0 +1,157 @@
+package ProjetoPoo;
+
+import java.text.Normalizer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+
+/**
+ * Classe que indexa as linhas do armazém de exames pela designação (tipo de exame).
+ * As designações são comparadas sem distinguir maiúsculas, minúsculas nem acentos,
+ * pelo que "Ecografia", "ECOGRAFIA" e "ecografía" correspondem ao mesmo tipo.
+ * O índice é ordenado, o que permite pesquisas por prefixo sem percorrer todos os exames.
+ * Os exames de cada tipo são mantidos por ordem cronológica.
+ */
+class IndiceDesignacoes {
+    private static final Pattern ACENTOS = Pattern.compile("\\p{M}+");
+
+    private ConcurrentNavigableMap<String, Tipo> porDesignacao;
+
+    /**
+     * Exames de um tipo e respetiva contagem.
+     */
+    private static class Tipo {
+        private String designacao;
+        private IndiceTemporal exames = new IndiceTemporal();
+        private AtomicInteger total = new AtomicInteger();
+
+        private Tipo(String designacao) {
+            this.designacao = designacao;
+        }
+    }
+
+    /**
+     * Construtor da classe IndiceDesignacoes.
+     */
+    IndiceDesignacoes() {
+        this.porDesignacao = new ConcurrentSkipListMap<>();
+    }
+
+    /**
+     * Adiciona um exame ao índice.
+     *
+     * @param designacao A designação do exame.
+     * @param minuto     O minuto desde a época do exame.
+     * @param linha      A linha do exame.
+     */
+    void adicionar(String designacao, long minuto, int linha) {
+        Tipo tipo = porDesignacao.computeIfAbsent(normalizar(designacao), k -> new Tipo(designacao));
+        tipo.exames.adicionar(minuto, linha);
+        tipo.total.incrementAndGet();
+    }
+
+    /**
+     * Adiciona de uma só vez exames com a mesma designação (ver IndiceTemporal#carregar).
+     *
+     * @param designacao A designação dos exames.
+     * @param chaves     As chaves (minuto e posição da linha), ordenadas.
+     * @param de         A primeira chave (inclusive).
+     * @param ate        A última chave (exclusive).
+     * @param linhas     As linhas dos exames.
+     */
+    void carregar(String designacao, long[] chaves, int de, int ate, int[] linhas) {
+        Tipo tipo = porDesignacao.computeIfAbsent(normalizar(designacao), k -> new Tipo(designacao));
+        tipo.exames.carregar(chaves, de, ate, linhas);
+        tipo.total.addAndGet(ate - de);
+    }
+
+    /**
+     * Remove um exame do índice.
+     *
+     * @param designacao A designação do exame.
+     * @param minuto     O minuto desde a época do exame.
+     * @param linha      A linha do exame.
+     */
+    void remover(String designacao, long minuto, int linha) {
+        Tipo tipo = porDesignacao.get(normalizar(designacao));
+        if (tipo != null && tipo.exames.remover(minuto, linha)) {
+            tipo.total.decrementAndGet();
+        }
+    }
+
+    /**
+     * Obtém os exames de um tipo, pela ordem cronológica indicada.
+     *
+     * @param designacao A designação do tipo de exame.
+     * @param ordem      A ordem cronológica.
+     * @return As linhas dos exames desse tipo.
+     */
+    IntStream exatos(String designacao, Ordem ordem) {
+        Tipo tipo = designacao == null ? null : porDesignacao.get(normalizar(designacao));
+        return tipo == null ? IntStream.empty() : tipo.exames.todos(ordem);
+    }
+
+    /**
+     * Obtém os exames cujo tipo começa pelo prefixo indicado.
+     *
+     * @param prefixo O prefixo da designação.
+     * @return As linhas dos exames, agrupadas por tipo em ordem alfabética e, em cada tipo, por ordem cronológica.
+     */
+    IntStream comPrefixo(String prefixo) {
+        if (prefixo == null) {
+            return IntStream.empty();
+        }
+        String chave = normalizar(prefixo);
+        return porDesignacao.subMap(chave, true, chave + Character.MAX_VALUE, false).values().stream()
+                .flatMapToInt(tipo -> tipo.exames.todos(Ordem.CRESCENTE));
+    }
+
+    /**
+     * Obtém o número de exames de um tipo.
+     *
+     * @param designacao A designação do tipo de exame.
+     * @return O número de exames.
+     */
+    int contar(String designacao) {
+        Tipo tipo = designacao == null ? null : porDesignacao.get(normalizar(designacao));
+        return tipo == null ? 0 : tipo.total.get();
+    }
+
+    /**
+     * Obtém o número de exames de cada tipo.
+     *
+     * @return Um mapa, por ordem alfabética, da designação (tal como foi registada pela primeira vez)
+     *         para o número de exames; os tipos sem exames (por terem sido todos cancelados) são omitidos.
+     */
+    Map<String, Integer> contagemPorTipo() {
+        Map<String, Integer> contagem = new LinkedHashMap<>();
+        for (Tipo tipo : porDesignacao.values()) {
+            int total = tipo.total.get();
+            if (total > 0) {
+                contagem.put(tipo.designacao, total);
+            }
+        }
+        return contagem;
+    }
+
+    /**
+     * Normaliza uma designação, removendo acentos e ignorando maiúsculas e minúsculas.
+     *
+     * @param designacao A designação.
+     * @return A designação normalizada.
+     */
+    static String normalizar(String designacao) {
+        String semAcentos = designacao;
+        for (int i = 0; i < designacao.length(); i++) {
+            if (designacao.charAt(i) > 0x7F) {
+                semAcentos = ACENTOS.matcher(Normalizer.normalize(designacao, Normalizer.Form.NFD)).replaceAll("");
+                break;
+            }
+        }
+        return RegistoPacientes.normalizarNome(semAcentos);
+    }
+}
@@ -0,0 +1,176 @@
+package ProjetoPoo;
+
+import java.util.Arrays;
+
+/**
+ * Classe que indexa as linhas de um armazém de marcações pela chave composta
+ * (índice do paciente, minuto desde a época), permitindo obter em O(1) a marcação de um
+ * paciente numa data e hora. Se o mesmo paciente tiver várias marcações no mesmo minuto,
+ * o índice guarda a primeira.
+ *
+ * As remoções não deixam marcas na tabela: as entradas seguintes da mesma sequência de sondagem
+ * são recuadas para a posição libertada, pelo que remover também custa O(1).
+ *
+ * A chave é um long e a linha um int, guardados em tabelas de dispersão de endereçamento
+ * aberto, sem nenhum objeto por entrada. O índice está dividido em segmentos com bloqueios
+ * próprios, para que marcações de pacientes diferentes raramente concorram entre si.
+ */
+class IndicePacienteInstante {
+    private static final int BITS_SEGMENTOS = 6;
+    private static final long VAZIA = 0L;
+
+    private Segmento[] segmentos;
+
+    /**
+     * Tabela de dispersão de um segmento, com sondagem linear.
+     */
+    private static final class Segmento {
+        private long[] chaves = new long[16];
+        private int[] linhas = new int[16];
+        private int ocupadas;
+
+        private synchronized void adicionar(long chave, long dispersao, int linha) {
+            if (4 * (ocupadas + 1) > 3 * chaves.length) {
+                crescer();
+            }
+            int mascara = chaves.length - 1;
+            for (int i = (int) dispersao & mascara; ; i = (i + 1) & mascara) {
+                if (chaves[i] == chave) {
+                    return;
+                }
+                if (chaves[i] == VAZIA) {
+                    chaves[i] = chave;
+                    linhas[i] = linha;
+                    ocupadas++;
+                    return;
+                }
+            }
+        }
+
+        private synchronized int obter(long chave, long dispersao) {
+            int mascara = chaves.length - 1;
+            for (int i = (int) dispersao & mascara; ; i = (i + 1) & mascara) {
+                if (chaves[i] == chave) {
+                    return linhas[i];
+                }
+                if (chaves[i] == VAZIA) {
+                    return -1;
+                }
+            }
+        }
+
+        private synchronized boolean remover(long chave, long dispersao, int linha) {
+            int mascara = chaves.length - 1;
+            int i = (int) dispersao & mascara;
+            while (chaves[i] != chave) {
+                if (chaves[i] == VAZIA) {
+                    return false;
+                }
+                i = (i + 1) & mascara;
+            }
+            if (linhas[i] != linha) {
+                return false;
+            }
+            // Recua as entradas seguintes cuja posição ideal não fica entre a posição libertada e a sua
+            for (int j = (i + 1) & mascara; chaves[j] != VAZIA; j = (j + 1) & mascara) {
+                int ideal = (int) dispersar(chaves[j]) & mascara;
+                boolean ficaNoLugar = i <= j ? i < ideal && ideal <= j : i < ideal || ideal <= j;
+                if (!ficaNoLugar) {
+                    chaves[i] = chaves[j];
+                    linhas[i] = linhas[j];
+                    i = j;
+                }
+            }
+            chaves[i] = VAZIA;
+            ocupadas--;
+            return true;
+        }
+
+        private void crescer() {
+            long[] antigasChaves = chaves;
+            int[] antigasLinhas = linhas;
+            chaves = new long[antigasChaves.length * 2];
+            linhas = new int[antigasChaves.length * 2];
+            int mascara = chaves.length - 1;
+            for (int j = 0; j < antigasChaves.length; j++) {
+                if (antigasChaves[j] != VAZIA) {
+                    int i = (int) dispersar(antigasChaves[j]) & mascara;
+                    while (chaves[i] != VAZIA) {
+                        i = (i + 1) & mascara;
+                    }
+                    chaves[i] = antigasChaves[j];
+                    linhas[i] = antigasLinhas[j];
+                }
+            }
+        }
+    }
+
+    /**
+     * Construtor da classe IndicePacienteInstante.
+     */
+    IndicePacienteInstante() {
+        this.segmentos = new Segmento[1 << BITS_SEGMENTOS];
+        Arrays.setAll(segmentos, i -> new Segmento());
+    }
+
+    /**
+     * Adiciona uma linha ao índice, se ainda não existir outra com a mesma chave.
+     *
+     * @param paciente O índice do paciente.
+     * @param minuto   O minuto desde a época.
+     * @param linha    A linha.
+     */
+    void adicionar(int paciente, int minuto, int linha) {
+        long chave = chave(paciente, minuto);
+        long dispersao = dispersar(chave);
+        segmentos[(int) (dispersao >>> (64 - BITS_SEGMENTOS))].adicionar(chave, dispersao, linha);
+    }
+
+    /**
+     * Obtém a linha de um paciente num minuto.
+     *
+     * @param paciente O índice do paciente.
+     * @param minuto   O minuto desde a época.
+     * @return A linha ou -1 se não existir.
+     */
+    int obter(int paciente, int minuto) {
+        long chave = chave(paciente, minuto);
+        long dispersao = dispersar(chave);
+        return segmentos[(int) (dispersao >>> (64 - BITS_SEGMENTOS))].obter(chave, dispersao);
+    }
+
+    /**
+     * Remove a linha de um paciente num minuto, se for essa a linha guardada no índice.
+     *
+     * @param paciente O índice do paciente.
+     * @param minuto   O minuto desde a época.
+     * @param linha    A linha.
+     * @return true se a linha foi removida.
+     */
+    boolean remover(int paciente, int minuto, int linha) {
+        long chave = chave(paciente, minuto);
+        long dispersao = dispersar(chave);
+        return segmentos[(int) (dispersao >>> (64 - BITS_SEGMENTOS))].remover(chave, dispersao, linha);
+    }
+
+    /**
+     * Junta o índice do paciente (mais um, para a chave nunca ser 0) e o minuto num long.
+     */
+    private static long chave(int paciente, int minuto) {
+        return ((long) (paciente + 1) << 32) | (minuto & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Mistura os bits da chave (finalizador do MurmurHash3), para que chaves consecutivas
+     * fiquem espalhadas pelos segmentos e pelas posições de cada tabela.
+     */
+    private static long dispersar(long chave) {
+        long h = chave;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
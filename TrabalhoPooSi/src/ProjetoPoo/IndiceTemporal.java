@@ -0,0 +1,164 @@
+package ProjetoPoo;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.TemporalAdjusters;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.IntStream;
+
+/**
+ * Classe que indexa as linhas de um armazém de marcações pela data e hora, agrupadas por
+ * minuto desde a época. As linhas de cada minuto são guardadas num array de inteiros.
+ * As pesquisas por dia, semana ou intervalo custam O(log n + k); remover uma linha custa
+ * O(log n) mais o número de linhas desse minuto.
+ */
+class IndiceTemporal {
+    private ConcurrentNavigableMap<Long, ListaIndices> porMinuto;
+
+    /**
+     * Construtor da classe IndiceTemporal.
+     */
+    IndiceTemporal() {
+        this.porMinuto = new ConcurrentSkipListMap<>();
+    }
+
+    /**
+     * Adiciona uma linha ao índice.
+     *
+     * @param minuto O minuto desde a época da marcação.
+     * @param linha  A linha.
+     */
+    void adicionar(long minuto, int linha) {
+        porMinuto.computeIfAbsent(minuto, k -> new ListaIndices()).adicionar(linha);
+    }
+
+    /**
+     * Adiciona de uma só vez as linhas indicadas por chaves já ordenadas, como se fossem adicionadas
+     * uma a uma pela ordem das chaves, mas criando uma única lista por minuto. Cada chave tem o minuto
+     * nos 32 bits mais significativos e, nos restantes, a posição da linha no array de linhas.
+     *
+     * @param chaves As chaves, ordenadas.
+     * @param de     A primeira chave (inclusive).
+     * @param ate    A última chave (exclusive).
+     * @param linhas As linhas.
+     */
+    void carregar(long[] chaves, int de, int ate, int[] linhas) {
+        for (int i = de; i < ate; ) {
+            long minuto = chaves[i] >> 32;
+            int fim = i + 1;
+            while (fim < ate && chaves[fim] >> 32 == minuto) {
+                fim++;
+            }
+            int[] valores = new int[fim - i];
+            for (int j = i; j < fim; j++) {
+                valores[j - i] = linhas[(int) chaves[j]];
+            }
+            ListaIndices existentes = porMinuto.putIfAbsent(minuto, new ListaIndices(valores));
+            if (existentes != null) {
+                existentes.adicionarTodos(valores, 0, valores.length);
+            }
+            i = fim;
+        }
+    }
+
+    /**
+     * Remove uma linha do índice.
+     *
+     * @param minuto O minuto desde a época da marcação.
+     * @param linha  A linha.
+     * @return true se a linha estava no índice.
+     */
+    boolean remover(long minuto, int linha) {
+        ListaIndices linhas = porMinuto.get(minuto);
+        return linhas != null && linhas.remover(linha);
+    }
+
+    /**
+     * Obtém as linhas de um minuto, pela ordem de inserção.
+     *
+     * @param minuto O minuto desde a época.
+     * @return As linhas desse minuto.
+     */
+    IntStream noMinuto(long minuto) {
+        ListaIndices linhas = porMinuto.get(minuto);
+        return linhas == null ? IntStream.empty() : linhas.valores();
+    }
+
+    /**
+     * Obtém as linhas do intervalo [inicio, fim[, por ordem cronológica.
+     *
+     * @param inicio O início do intervalo (inclusive).
+     * @param fim    O fim do intervalo (exclusive).
+     * @return As linhas do intervalo.
+     */
+    IntStream entre(LocalDateTime inicio, LocalDateTime fim) {
+        return entre(inicio, fim, Ordem.CRESCENTE);
+    }
+
+    /**
+     * Obtém as linhas do intervalo [inicio, fim[, pela ordem cronológica indicada.
+     * As linhas do mesmo minuto ficam sempre pela ordem de inserção.
+     *
+     * @param inicio O início do intervalo (inclusive).
+     * @param fim    O fim do intervalo (exclusive).
+     * @param ordem  A ordem cronológica.
+     * @return As linhas do intervalo.
+     */
+    IntStream entre(LocalDateTime inicio, LocalDateTime fim, Ordem ordem) {
+        long de = minuto(inicio);
+        long ate = minuto(fim);
+        if (de >= ate) {
+            return IntStream.empty();
+        }
+        return porOrdem(porMinuto.subMap(de, ate), ordem);
+    }
+
+    /**
+     * Obtém todas as linhas, pela ordem cronológica indicada.
+     *
+     * @param ordem A ordem cronológica.
+     * @return As linhas.
+     */
+    IntStream todos(Ordem ordem) {
+        return porOrdem(porMinuto, ordem);
+    }
+
+    /**
+     * Obtém as linhas de um dia, por ordem cronológica.
+     *
+     * @param dia O dia.
+     * @return As linhas do dia.
+     */
+    IntStream noDia(LocalDate dia) {
+        return entre(dia.atStartOfDay(), dia.plusDays(1).atStartOfDay());
+    }
+
+    /**
+     * Obtém as linhas da semana (de segunda a domingo) que contém o dia indicado.
+     *
+     * @param dia Um dia da semana pretendida.
+     * @return As linhas da semana, por ordem cronológica.
+     */
+    IntStream naSemana(LocalDate dia) {
+        LocalDate segunda = dia.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        return entre(segunda.atStartOfDay(), segunda.plusWeeks(1).atStartOfDay());
+    }
+
+    private IntStream porOrdem(ConcurrentNavigableMap<Long, ListaIndices> minutos, Ordem ordem) {
+        ConcurrentNavigableMap<Long, ListaIndices> ordenados = ordem == Ordem.DECRESCENTE ? minutos.descendingMap() : minutos;
+        return ordenados.values().stream().flatMapToInt(ListaIndices::valores);
+    }
+
+    /**
+     * Converte uma data e hora no número de minutos desde a época (1970-01-01T00:00).
+     *
+     * @param dataHora A data e hora.
+     * @return O número de minutos.
+     */
+    static long minuto(LocalDateTime dataHora) {
+        return Math.floorDiv(dataHora.toEpochSecond(ZoneOffset.UTC), 60L);
+    }
+}
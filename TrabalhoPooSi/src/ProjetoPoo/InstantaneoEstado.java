@@ -0,0 +1,311 @@
+package ProjetoPoo;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Classe que grava e carrega instantâneos do estado do gestor de consultas e exames.
+ *
+ * O formato é colunar: um cabeçalho com as contagens, uma tabela de textos sem repetições
+ * e, para cada entidade (médicos, pacientes, consultas e exames), uma coluna de inteiros
+ * por atributo. Os textos são referidos pela sua posição na tabela, os médicos pelo seu
+ * código e os pacientes pela sua posição no instantâneo. No fim é gravado o CRC32 de todo
+ * o conteúdo. Os horários ocupados não são gravados: são reconstruídos a partir das marcações.
+ * As marcações canceladas não são gravadas. A versão 2 acrescenta, no fim, as exceções de horário
+ * (da clínica e de cada médico), com uma entrada por dia; os instantâneos da versão 1 continuam a ser lidos.
+ * Ao carregar, cada coluna das marcações é lida de uma só vez e reposta diretamente nos armazéns e
+ * nos índices do gestor, sem criar objetos por marcação.
+ */
+class InstantaneoEstado {
+    private static final int MAGICO = 0x47434531;
+    private static final int VERSAO = 2;
+    private static final int CABECALHO = 7 * 4;
+    private static final int SEM_TEXTO = -1;
+    private static final long SEM_DATA = Long.MIN_VALUE;
+
+    private InstantaneoEstado() {
+    }
+
+    /**
+     * Grava um instantâneo, de forma atómica, no ficheiro indicado.
+     *
+     * @param ficheiro       O ficheiro de destino.
+     * @param medicos        Os médicos, pela ordem dos seus códigos.
+     * @param pacientes      Os pacientes, com os homónimos pela ordem de registo.
+     * @param consultas       O armazém de consultas.
+     * @param estadoConsultas O estado das consultas a gravar (ver ArmazemMarcacoes#copiarEstado()).
+     * @param exames          O armazém de exames.
+     * @param estadoExames    O estado dos exames a gravar (ver ArmazemMarcacoes#copiarEstado()).
+     * @param excecoes        As exceções de horário, em três colunas: código do médico (-1 para a clínica),
+     *                        dia (em dias desde a época) e intervalo de trabalho em minutos.
+     * @throws IOException Se ocorrer um erro de escrita.
+     */
+    static void gravar(Path ficheiro, List<Medico> medicos, List<Paciente> pacientes,
+                       ArmazemMarcacoes consultas, long[] estadoConsultas,
+                       ArmazemMarcacoes exames, long[] estadoExames, int[][] excecoes) throws IOException {
+        Map<String, Integer> textos = new HashMap<>();
+        // Posição de cada paciente no instantâneo, pelo seu índice no registo
+        int maiorIndice = -1;
+        for (Paciente paciente : pacientes) {
+            maiorIndice = Math.max(maiorIndice, paciente.getIndice());
+        }
+        int[] posicoesPacientes = new int[maiorIndice + 1];
+        for (int i = 0; i < pacientes.size(); i++) {
+            posicoesPacientes[pacientes.get(i).getIndice()] = i;
+        }
+        int[] linhasConsultas = ativas(estadoConsultas);
+        int[] linhasExames = ativas(estadoExames);
+        // As observações podem ser alteradas enquanto o instantâneo é gravado, por isso são lidas uma única vez
+        String[] resultados = new String[linhasExames.length];
+        for (int i = 0; i < resultados.length; i++) {
+            resultados[i] = exames.observacoes(linhasExames[i]);
+        }
+
+        Path temporario = ficheiro.resolveSibling(ficheiro.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (OutputStream saida = Files.newOutputStream(temporario);
+             DataOutputStream out = new DataOutputStream(
+                     new BufferedOutputStream(new CheckedOutputStream(saida, crc), 1 << 16))) {
+            String[] tabela = construirTabela(textos, medicos, pacientes, exames, linhasExames, resultados);
+            out.writeInt(MAGICO);
+            out.writeInt(VERSAO);
+            out.writeInt(tabela.length);
+            out.writeInt(medicos.size());
+            out.writeInt(pacientes.size());
+            out.writeInt(linhasConsultas.length);
+            out.writeInt(linhasExames.length);
+            for (String texto : tabela) {
+                byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+
+            for (Medico medico : medicos) {
+                out.writeInt(textos.get(medico.getNome()));
+            }
+            for (Medico medico : medicos) {
+                out.writeInt(textos.get(medico.getEspecialidade()));
+            }
+
+            for (Paciente paciente : pacientes) {
+                out.writeInt(textos.get(paciente.getId()));
+            }
+            for (Paciente paciente : pacientes) {
+                out.writeInt(textos.get(paciente.getNome()));
+            }
+            for (Paciente paciente : pacientes) {
+                Date dataNascimento = paciente.getDataNascimento();
+                out.writeLong(dataNascimento == null ? SEM_DATA : dataNascimento.getTime());
+            }
+
+            gravarMarcacoes(out, consultas, linhasConsultas, estadoConsultas, posicoesPacientes);
+
+            gravarMarcacoes(out, exames, linhasExames, estadoExames, posicoesPacientes);
+            for (int linha : linhasExames) {
+                out.writeInt(textos.get(exames.designacao(linha)));
+            }
+            for (String observacoes : resultados) {
+                out.writeInt(observacoes == null ? SEM_TEXTO : textos.get(observacoes));
+            }
+
+            out.writeInt(excecoes[0].length);
+            for (int[] coluna : excecoes) {
+                for (int valor : coluna) {
+                    out.writeInt(valor);
+                }
+            }
+            out.flush();
+            saida.write(ByteBuffer.allocate(4).putInt((int) crc.getValue()).array());
+        }
+        try (FileChannel canal = FileChannel.open(temporario, StandardOpenOption.WRITE)) {
+            canal.force(true);
+        }
+        Files.move(temporario, ficheiro, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Carrega um instantâneo no gestor, lendo o ficheiro através de um MappedByteBuffer.
+     *
+     * @param ficheiro O ficheiro do instantâneo.
+     * @param gestor   O gestor onde repor o estado (sem médicos registados).
+     * @throws IOException Se o ficheiro não puder ser lido ou estiver corrompido.
+     */
+    static void carregar(Path ficheiro, GerirConsultasExames gestor) throws IOException {
+        MappedByteBuffer dados;
+        try (FileChannel canal = FileChannel.open(ficheiro, StandardOpenOption.READ)) {
+            dados = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+        }
+        int versao = dados.capacity() < CABECALHO + 4 ? 0 : dados.getInt(4);
+        if (dados.capacity() < CABECALHO + 4 || dados.getInt(0) != MAGICO || versao < 1 || versao > VERSAO) {
+            throw new IOException("Instantâneo inválido: " + ficheiro);
+        }
+        int fim = dados.capacity() - 4;
+        CRC32 crc = new CRC32();
+        crc.update(dados.duplicate().limit(fim));
+        if ((int) crc.getValue() != dados.getInt(fim)) {
+            throw new IOException("Instantâneo corrompido: " + ficheiro);
+        }
+
+        int totalTextos = dados.getInt(8);
+        int totalMedicos = dados.getInt(12);
+        int totalPacientes = dados.getInt(16);
+        int totalConsultas = dados.getInt(20);
+        int totalExames = dados.getInt(24);
+
+        String[] tabela = new String[totalTextos];
+        int posicao = CABECALHO;
+        byte[] bytes = new byte[256];
+        for (int i = 0; i < totalTextos; i++) {
+            int tamanho = dados.getInt(posicao);
+            if (bytes.length < tamanho) {
+                bytes = new byte[Math.max(tamanho, bytes.length * 2)];
+            }
+            dados.get(posicao + 4, bytes, 0, tamanho);
+            tabela[i] = new String(bytes, 0, tamanho, StandardCharsets.UTF_8);
+            posicao += 4 + tamanho;
+        }
+
+        int nomesMedicos = posicao;
+        int especialidades = nomesMedicos + 4 * totalMedicos;
+        for (int i = 0; i < totalMedicos; i++) {
+            gestor.restaurarMedico(tabela[dados.getInt(nomesMedicos + 4 * i)], tabela[dados.getInt(especialidades + 4 * i)]);
+        }
+        posicao = especialidades + 4 * totalMedicos;
+
+        int ids = posicao;
+        int nomes = ids + 4 * totalPacientes;
+        int nascimentos = nomes + 4 * totalPacientes;
+        // Índice no registo de pacientes de cada paciente, pela sua posição no instantâneo
+        int[] indicesPacientes = new int[totalPacientes];
+        for (int i = 0; i < totalPacientes; i++) {
+            long nascimento = dados.getLong(nascimentos + 8 * i);
+            indicesPacientes[i] = gestor.restaurarPaciente(tabela[dados.getInt(ids + 4 * i)],
+                    tabela[dados.getInt(nomes + 4 * i)], nascimento == SEM_DATA ? null : new Date(nascimento)).getIndice();
+        }
+        posicao = nascimentos + 8 * totalPacientes;
+
+        // As marcações são repostas coluna a coluna, sem criar objetos por marcação
+        posicao = carregarMarcacoes(dados, posicao, totalConsultas, false, indicesPacientes, tabela, gestor);
+        posicao = carregarMarcacoes(dados, posicao, totalExames, true, indicesPacientes, tabela, gestor);
+
+        if (versao >= 2) {
+            int totalExcecoes = dados.getInt(posicao);
+            int medicosExcecao = posicao + 4;
+            int dias = medicosExcecao + 4 * totalExcecoes;
+            int intervalos = dias + 4 * totalExcecoes;
+            for (int i = 0; i < totalExcecoes; i++) {
+                int dia = dados.getInt(dias + 4 * i);
+                gestor.restaurarExcecao(dados.getInt(medicosExcecao + 4 * i), dia, dia + 1, dados.getInt(intervalos + 4 * i));
+            }
+        }
+    }
+
+    /**
+     * Lê as colunas das consultas ou dos exames e repõe-nas no gestor de uma só vez.
+     *
+     * @return A posição a seguir às colunas lidas.
+     */
+    private static int carregarMarcacoes(ByteBuffer dados, int posicao, int total, boolean exames,
+                                         int[] indicesPacientes, String[] tabela, GerirConsultasExames gestor) {
+        int[] pacientes = lerInteiros(dados, posicao, total);
+        for (int i = 0; i < total; i++) {
+            pacientes[i] = indicesPacientes[pacientes[i]];
+        }
+        int[] medicos = lerInteiros(dados, posicao + 4 * total, total);
+        long[] instantes = new long[total];
+        dados.slice(posicao + 8 * total, 8 * total).asLongBuffer().get(instantes);
+        int[] minutos = new int[total];
+        for (int i = 0; i < total; i++) {
+            minutos[i] = Math.toIntExact(Math.floorDiv(instantes[i], 60L));
+        }
+        posicao += 16 * total;
+        int[] designacoes = null;
+        int[] observacoes = null;
+        if (exames) {
+            designacoes = lerInteiros(dados, posicao, total);
+            observacoes = lerInteiros(dados, posicao + 4 * total, total);
+            posicao += 8 * total;
+        }
+        gestor.restaurarMarcacoes(exames, pacientes, medicos, minutos, designacoes, observacoes, tabela);
+        return posicao;
+    }
+
+    private static int[] lerInteiros(ByteBuffer dados, int posicao, int total) {
+        int[] valores = new int[total];
+        dados.slice(posicao, 4 * total).asIntBuffer().get(valores);
+        return valores;
+    }
+
+    /**
+     * Obtém as linhas que não estavam canceladas no momento da cópia do estado.
+     */
+    private static int[] ativas(long[] estado) {
+        int[] linhas = new int[estado.length];
+        int total = 0;
+        for (int linha = 0; linha < estado.length; linha++) {
+            if (!ArmazemMarcacoes.cancelada(estado[linha])) {
+                linhas[total++] = linha;
+            }
+        }
+        return Arrays.copyOf(linhas, total);
+    }
+
+    /**
+     * Grava as colunas comuns às consultas e aos exames: paciente, médico e data e hora.
+     * O médico e a data e hora vêm da cópia do estado, porque podem ser alterados durante a gravação.
+     */
+    private static void gravarMarcacoes(DataOutputStream out, ArmazemMarcacoes armazem, int[] linhas, long[] estado,
+                                        int[] posicoesPacientes) throws IOException {
+        for (int linha : linhas) {
+            out.writeInt(posicoesPacientes[armazem.indicePaciente(linha)]);
+        }
+        for (int linha : linhas) {
+            out.writeInt(ArmazemMarcacoes.codigoMedico(estado[linha]));
+        }
+        for (int linha : linhas) {
+            out.writeLong(ArmazemMarcacoes.minuto(estado[linha]) * 60L);
+        }
+    }
+
+    private static String[] construirTabela(Map<String, Integer> textos, List<Medico> medicos, List<Paciente> pacientes,
+                                            ArmazemMarcacoes exames, int[] linhasExames, String[] resultados) {
+        for (Medico medico : medicos) {
+            textos.putIfAbsent(medico.getNome(), textos.size());
+            textos.putIfAbsent(medico.getEspecialidade(), textos.size());
+        }
+        for (Paciente paciente : pacientes) {
+            textos.putIfAbsent(paciente.getId(), textos.size());
+            textos.putIfAbsent(paciente.getNome(), textos.size());
+        }
+        for (int linha : linhasExames) {
+            textos.putIfAbsent(exames.designacao(linha), textos.size());
+        }
+        for (String observacoes : resultados) {
+            if (observacoes != null) {
+                textos.putIfAbsent(observacoes, textos.size());
+            }
+        }
+        String[] tabela = new String[textos.size()];
+        for (Map.Entry<String, Integer> entrada : textos.entrySet()) {
+            tabela[entrada.getValue()] = entrada.getKey();
+        }
+        return tabela;
+    }
+}
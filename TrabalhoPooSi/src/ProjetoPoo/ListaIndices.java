@@ -0,0 +1,160 @@
+package ProjetoPoo;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Classe que representa uma lista de inteiros (linhas de um armazém de marcações) que só cresce.
+ * As inserções são sincronizadas; as leituras não bloqueiam e veem sempre um prefixo consistente
+ * da lista, porque o tamanho só é publicado depois de o valor estar escrito.
+ * Cada valor ocupa 4 bytes, sem nenhum objeto por elemento.
+ *
+ * Remover um valor não encolhe a lista: a sua posição passa a conter uma marca que as leituras
+ * ignoram, para que uma leitura em curso nunca veja os restantes valores mudar de posição.
+ * As leituras filtram sempre a marca, porque uma remoção pode acontecer depois de a leitura começar.
+ * Quando mais de metade das posições têm a marca, os valores são copiados para um array novo,
+ * para que marcar e cancelar repetidamente o mesmo horário não faça a lista crescer sem limite;
+ * as leituras em curso continuam a percorrer o array antigo, que deixa de ser alterado.
+ */
+class ListaIndices {
+    private static final int[] VAZIA = new int[0];
+    private static final int REMOVIDO = Integer.MIN_VALUE;
+
+    private volatile int[] valores;
+    private volatile int tamanho;
+    private volatile int removidos;
+
+    /**
+     * Construtor da classe ListaIndices, sem memória reservada até à primeira inserção.
+     */
+    ListaIndices() {
+        this.valores = VAZIA;
+    }
+
+    /**
+     * Construtor da classe ListaIndices, com valores iniciais. O array passa a pertencer à lista.
+     *
+     * @param valores Os valores, pela ordem de inserção.
+     */
+    ListaIndices(int[] valores) {
+        this.valores = valores;
+        this.tamanho = valores.length;
+    }
+
+    /**
+     * Adiciona um valor no fim da lista.
+     *
+     * @param valor O valor.
+     */
+    synchronized void adicionar(int valor) {
+        int n = tamanho;
+        int[] atuais = valores;
+        if (n == atuais.length) {
+            atuais = Arrays.copyOf(atuais, n + (n >> 1) + 2);
+            valores = atuais;
+        }
+        atuais[n] = valor;
+        tamanho = n + 1;
+    }
+
+    /**
+     * Adiciona no fim da lista os valores do intervalo [de, ate[ de um array, crescendo uma única vez.
+     *
+     * @param origem Os valores.
+     * @param de     A primeira posição (inclusive).
+     * @param ate    A última posição (exclusive).
+     */
+    synchronized void adicionarTodos(int[] origem, int de, int ate) {
+        int n = tamanho;
+        int[] atuais = valores;
+        if (n + ate - de > atuais.length) {
+            atuais = Arrays.copyOf(atuais, n + ate - de);
+            valores = atuais;
+        }
+        System.arraycopy(origem, de, atuais, n, ate - de);
+        tamanho = n + ate - de;
+    }
+
+    /**
+     * Remove a primeira ocorrência de um valor. Percorre a lista, pelo que só deve ser usado
+     * em listas curtas, como as marcações de um minuto.
+     *
+     * @param valor O valor.
+     * @return true se o valor existia na lista.
+     */
+    synchronized boolean remover(int valor) {
+        int n = tamanho;
+        int[] atuais = valores;
+        for (int i = 0; i < n; i++) {
+            if (atuais[i] == valor) {
+                atuais[i] = REMOVIDO;
+                removidos++;
+                if (removidos * 2 > n) {
+                    compactar(atuais, n);
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Copia os valores para um array novo, com o mesmo comprimento, sem as marcas de remoção.
+     * As posições a seguir aos valores ficam com a marca, para que uma leitura que obteve o
+     * tamanho anterior e depois o array novo só veja valores existentes. O array é publicado
+     * antes do tamanho, para que quem vê o tamanho novo veja também o array novo.
+     *
+     * @param atuais O array atual.
+     * @param n      O tamanho atual.
+     */
+    private void compactar(int[] atuais, int n) {
+        int[] novos = new int[atuais.length];
+        int m = 0;
+        for (int i = 0; i < n; i++) {
+            if (atuais[i] != REMOVIDO) {
+                novos[m++] = atuais[i];
+            }
+        }
+        Arrays.fill(novos, m, novos.length, REMOVIDO);
+        valores = novos;
+        removidos = 0;
+        tamanho = m;
+    }
+
+    /**
+     * Obtém o número de valores da lista.
+     *
+     * @return O número de valores.
+     */
+    int tamanho() {
+        return tamanho - removidos;
+    }
+
+    /**
+     * Obtém os valores da lista, pela ordem de inserção.
+     *
+     * @return Os valores existentes no momento da chamada.
+     */
+    IntStream valores() {
+        // O tamanho é lido antes do array: o array lido tem sempre pelo menos esse comprimento
+        int n = tamanho;
+        return Arrays.stream(this.valores, 0, n).filter(valor -> valor != REMOVIDO);
+    }
+
+    /**
+     * Copia os valores da lista.
+     *
+     * @return Um array com os valores existentes no momento da chamada.
+     */
+    int[] copiar() {
+        int n = tamanho;
+        int[] copia = Arrays.copyOf(valores, n);
+        int m = 0;
+        for (int i = 0; i < n; i++) {
+            if (copia[i] != REMOVIDO) {
+                copia[m++] = copia[i];
+            }
+        }
+        return m == n ? copia : Arrays.copyOf(copia, m);
+    }
+}
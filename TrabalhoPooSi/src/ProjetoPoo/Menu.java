@@ -1,13 +1,27 @@
 package ProjetoPoo;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.time.temporal.TemporalAdjusters;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Scanner;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
 
 /**
  * Classe responsável por apresentar o menu da aplicação.
@@ -16,6 +30,9 @@ public class Menu {
     private static GerirConsultasExames gestor;
     private static Scanner scanner = new Scanner(System.in);
     private static DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm");
+    private static DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("dd-MM-yyyy");
+    private static final String DIRETORIO_DIARIO = "dados-consultas-exames";
+    private static final int TAMANHO_PAGINA = 20;
 
     /**
      * Método principal que inicializa o menu.
@@ -23,7 +40,12 @@ public class Menu {
      * @param args Argumentos da linha de comando.
      */
     public static void main(String[] args) {
-        GerirConsultasExames.inicializarGestor();
+        try {
+            GerirConsultasExames.inicializarGestor(Paths.get(DIRETORIO_DIARIO));
+        } catch (IOException e) {
+            System.out.println("Erro ao abrir o diário de operações: " + e.getMessage());
+            return;
+        }
         gestor = GerirConsultasExames.getInstance();
 
         int opcao = -1;
@@ -39,6 +61,13 @@ public class Menu {
             System.out.println("8. Ver Histórico de Exames por Nome");
             System.out.println("9. Ver Histórico de Exames por Tipo");
             System.out.println("10. Ver Histórico de Exames por Data e Hora");
+            System.out.println("11. Importar Dados de Ficheiro CSV");
+            System.out.println("12. Exportar Histórico");
+            System.out.println("13. Próximos Horários por Especialidade");
+            System.out.println("14. Ver Métricas do Gestor");
+            System.out.println("15. Ver Agenda de Médico");
+            System.out.println("16. Cancelar ou Reagendar Marcação");
+            System.out.println("17. Gerir Exceções de Horário");
             System.out.println("0. Sair");
             System.out.print("Escolha uma opção: ");
             try {
@@ -81,8 +110,35 @@ public class Menu {
                 case 10:
                     verHistoricoExamesPorDataHora();
                     break;
+                case 11:
+                    importarCsv();
+                    break;
+                case 12:
+                    exportarHistorico();
+                    break;
+                case 13:
+                    verProximosHorariosPorEspecialidade();
+                    break;
+                case 14:
+                    verMetricas();
+                    break;
+                case 15:
+                    verAgendaMedico();
+                    break;
+                case 16:
+                    alterarMarcacao();
+                    break;
+                case 17:
+                    gerirExcecoesHorario();
+                    break;
                 case 0:
                     System.out.println("Saindo da aplicação...");
+                    try {
+                        gestor.criarInstantaneo();
+                        gestor.fechar();
+                    } catch (IOException e) {
+                        System.out.println("Erro ao gravar o diário de operações: " + e.getMessage());
+                    }
                     break;
                 default:
                     System.out.println("Opção inválida. Tente novamente.");
@@ -97,19 +153,18 @@ public class Menu {
     private static void registarMedico() {
         System.out.print("Nome do médico: ");
         String nome = scanner.nextLine();
-        if (!nome.matches("[a-zA-Z\\s]+")) {
-            System.out.println("Erro: O nome do médico deve conter apenas caracteres alfabéticos.");
-            return;
-        }
         System.out.print("Especialidade do médico: ");
         String especialidade = scanner.nextLine();
         if (!especialidade.equalsIgnoreCase("Obstetra") && !especialidade.equalsIgnoreCase("Obstetrícia")) {
             System.out.println("Erro: Especialidade deve ser 'Obstetra' ou 'Obstetrícia'.");
             return;
         }
-        Medico medico = new Medico(nome, especialidade);
-        gestor.registarMedico(medico);
-        System.out.println("Médico registado com sucesso!");
+        try {
+            gestor.registarMedico(new Medico(nome, especialidade));
+            System.out.println("Médico registado com sucesso!");
+        } catch (IllegalArgumentException e) {
+            System.out.println("Erro: " + e.getMessage());
+        }
     }
 
     /**
@@ -118,27 +173,21 @@ public class Menu {
     private static void registarPaciente() {
         System.out.print("ID do paciente (apenas números): ");
         String id = scanner.nextLine();
-        if (!id.matches("\\d+")) {
-            System.out.println("Erro: O ID do paciente deve conter apenas números.");
-            return;
-        }
         System.out.print("Nome do paciente: ");
         String nome = scanner.nextLine();
-        if (!nome.matches("[a-zA-Z\\s]+")) {
-            System.out.println("Erro: O nome do paciente deve conter apenas caracteres alfabéticos.");
-            return;
-        }
         System.out.print("Data de nascimento do paciente (dd-MM-yyyy): ");
         String dataNascimentoStr = scanner.nextLine();
         SimpleDateFormat sdf = new SimpleDateFormat("dd-MM-yyyy");
         sdf.setLenient(false); // Desabilita a análise leniente
         try {
             Date dataNascimento = sdf.parse(dataNascimentoStr);
-            Paciente paciente = new Paciente(id, nome, dataNascimento);
-            gestor.registarPaciente(paciente);
+            // O ID e o nome são validados pelo gestor
+            gestor.registarPaciente(new Paciente(id, nome, dataNascimento));
             System.out.println("Paciente registado com sucesso!");
         } catch (ParseException e) {
             System.out.println("Formato de data inválido. Use 'dd-MM-yyyy'.");
+        } catch (IllegalArgumentException e) {
+            System.out.println("Erro: " + e.getMessage());
         }
     }
 
@@ -148,39 +197,29 @@ public class Menu {
     private static void agendarConsulta() {
         System.out.print("Nome do paciente: ");
         String nomePaciente = scanner.nextLine();
-        if (!nomePaciente.matches("[a-zA-Z\\s]+")) {
-            System.out.println("Erro: O nome do paciente deve conter apenas caracteres alfabéticos.");
+        if (!Validador.nomeValido(nomePaciente)) {
+            System.out.println("Erro: " + Validador.Campo.NOME_PACIENTE.getMensagem());
             return;
         }
         Paciente paciente = gestor.pesquisarPaciente(nomePaciente);
         if (paciente != null) {
             System.out.print("Nome do médico: ");
             String nomeMedico = scanner.nextLine();
-            if (!nomeMedico.matches("[a-zA-Z\\s]+")) {
-                System.out.println("Erro: O nome do médico deve conter apenas caracteres alfabéticos.");
+            if (!Validador.textoValido(nomeMedico)) {
+                System.out.println("Erro: " + Validador.Campo.NOME_MEDICO.getMensagem());
                 return;
             }
             Medico medico = gestor.pesquisarMedico(nomeMedico);
             if (medico != null) {
-                List<LocalDateTime> horariosDisponiveis = gestor.obterHorariosDisponiveisConsulta(medico);
                 System.out.println("Horários disponíveis para consultas:");
-                for (int i = 0; i < horariosDisponiveis.size(); i++) {
-                    System.out.println((i + 1) + ". " + horariosDisponiveis.get(i).format(dateTimeFormatter));
-                }
-                System.out.print("Escolha um horário (número): ");
-                try {
-                    int escolha = scanner.nextInt();
-                    scanner.nextLine(); // Consumir a nova linha
-                    if (escolha > 0 && escolha <= horariosDisponiveis.size()) {
-                        LocalDateTime dataHora = horariosDisponiveis.get(escolha - 1);
+                LocalDateTime dataHora = escolherHorario(medico);
+                if (dataHora != null) {
+                    try {
                         gestor.agendarConsulta(paciente, dataHora, medico);
                         System.out.println("Consulta agendada com sucesso!");
-                    } else {
-                        System.out.println("Escolha inválida.");
+                    } catch (IllegalArgumentException e) {
+                        System.out.println("Erro: " + e.getMessage());
                     }
-                } catch (Exception e) {
-                    System.out.println("Entrada inválida. Por favor, escolha um número válido.");
-                    scanner.nextLine(); // Consumir a entrada inválida
                 }
             } else {
                 System.out.println("Médico não encontrado.");
@@ -196,41 +235,31 @@ public class Menu {
     private static void agendarExame() {
         System.out.print("Nome do paciente: ");
         String nomePaciente = scanner.nextLine();
-        if (!nomePaciente.matches("[a-zA-Z\\s]+")) {
-            System.out.println("Erro: O nome do paciente deve conter apenas caracteres alfabéticos.");
+        if (!Validador.nomeValido(nomePaciente)) {
+            System.out.println("Erro: " + Validador.Campo.NOME_PACIENTE.getMensagem());
             return;
         }
         Paciente paciente = gestor.pesquisarPaciente(nomePaciente);
         if (paciente != null) {
             System.out.print("Nome do médico: ");
             String nomeMedico = scanner.nextLine();
-            if (!nomeMedico.matches("[a-zA-Z\\s]+")) {
-                System.out.println("Erro: O nome do médico deve conter apenas caracteres alfabéticos.");
+            if (!Validador.textoValido(nomeMedico)) {
+                System.out.println("Erro: " + Validador.Campo.NOME_MEDICO.getMensagem());
                 return;
             }
             Medico medico = gestor.pesquisarMedico(nomeMedico);
             if (medico != null) {
-                List<LocalDateTime> horariosDisponiveis = gestor.obterHorariosDisponiveisExame(medico);
                 System.out.println("Horários disponíveis para exames:");
-                for (int i = 0; i < horariosDisponiveis.size(); i++) {
-                    System.out.println((i + 1) + ". " + horariosDisponiveis.get(i).format(dateTimeFormatter));
-                }
-                System.out.print("Escolha um horário (número): ");
-                try {
-                    int escolha = scanner.nextInt();
-                    scanner.nextLine(); // Consumir a nova linha
-                    if (escolha > 0 && escolha <= horariosDisponiveis.size()) {
-                        LocalDateTime dataHora = horariosDisponiveis.get(escolha - 1);
-                        System.out.print("Designação do Exame (por exemplo, Ecografia): ");
-                        String designacao = scanner.nextLine();
+                LocalDateTime dataHora = escolherHorario(medico);
+                if (dataHora != null) {
+                    System.out.print("Designação do Exame (por exemplo, Ecografia): ");
+                    String designacao = scanner.nextLine();
+                    try {
                         gestor.agendarExame(paciente, dataHora, designacao, medico);
                         System.out.println("Exame agendado com sucesso!");
-                    } else {
-                        System.out.println("Escolha inválida.");
+                    } catch (IllegalArgumentException e) {
+                        System.out.println("Erro: " + e.getMessage());
                     }
-                } catch (Exception e) {
-                    System.out.println("Entrada inválida. Por favor, escolha um número válido.");
-                    scanner.nextLine(); // Consumir a entrada inválida
                 }
             } else {
                 System.out.println("Médico não encontrado.");
@@ -240,14 +269,278 @@ public class Menu {
         }
     }
 
+    /**
+     * Pede ao utilizador que escolha um horário disponível de um médico: os próximos horários,
+     * os de um dia ou os de uma semana. Os horários são obtidos e mostrados uma página de cada vez.
+     *
+     * @param medico O médico.
+     * @return O horário escolhido, ou null se nenhum foi escolhido.
+     */
+    private static LocalDateTime escolherHorario(Medico medico) {
+        System.out.print("Ver 1. os próximos horários, 2. os horários de um dia ou 3. os horários de uma semana: ");
+        String modo = scanner.nextLine().trim();
+        LocalDateTime agora = LocalDateTime.now();
+        LocalDateTime desde;
+        LocalDateTime fim;
+        if (modo.equals("1")) {
+            desde = agora;
+            fim = LocalDateTime.MAX;
+        } else if (modo.equals("2") || modo.equals("3")) {
+            System.out.print(modo.equals("2") ? "Dia (dd-MM-yyyy): " : "Um dia da semana (dd-MM-yyyy): ");
+            LocalDate dia;
+            try {
+                dia = LocalDate.parse(scanner.nextLine().trim(), dateFormatter);
+            } catch (DateTimeParseException e) {
+                System.out.println("Formato de data inválido. Use 'dd-MM-yyyy'.");
+                return null;
+            }
+            if (modo.equals("3")) {
+                dia = dia.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            }
+            desde = dia.atStartOfDay();
+            fim = dia.plusDays(modo.equals("2") ? 1 : 7).atStartOfDay();
+            if (desde.isBefore(agora)) {
+                desde = agora;
+            }
+        } else {
+            System.out.println("Opção inválida.");
+            return null;
+        }
+
+        PrintWriter saida = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out)));
+        while (true) {
+            List<LocalDateTime> pagina = gestor.obterHorariosDisponiveis(medico, desde, fim, TAMANHO_PAGINA);
+            if (pagina.isEmpty()) {
+                System.out.println("Não há horários disponíveis.");
+                return null;
+            }
+            for (int i = 0; i < pagina.size(); i++) {
+                saida.print(i + 1);
+                saida.print(". ");
+                dateTimeFormatter.formatTo(pagina.get(i), saida);
+                saida.println();
+            }
+            boolean haMais = pagina.size() == TAMANHO_PAGINA;
+            saida.print(haMais ? "Escolha um horário (número) ou 0 para ver mais: " : "Escolha um horário (número): ");
+            saida.flush();
+            int escolha;
+            try {
+                escolha = Integer.parseInt(scanner.nextLine().trim());
+            } catch (NumberFormatException e) {
+                System.out.println("Entrada inválida. Por favor, escolha um número válido.");
+                return null;
+            }
+            if (escolha == 0 && haMais) {
+                desde = pagina.get(pagina.size() - 1).plusMinutes(1);
+            } else if (escolha > 0 && escolha <= pagina.size()) {
+                return pagina.get(escolha - 1);
+            } else {
+                System.out.println("Escolha inválida.");
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Exibe os primeiros horários disponíveis de todos os médicos de uma especialidade.
+     */
+    private static void verProximosHorariosPorEspecialidade() {
+        System.out.print("Especialidade: ");
+        String especialidade = scanner.nextLine().trim();
+        List<HorarioDisponivel> horarios = gestor.obterProximosHorariosPorEspecialidade(especialidade, LocalDateTime.now(), TAMANHO_PAGINA);
+        if (horarios.isEmpty()) {
+            System.out.println("Não há horários disponíveis para esta especialidade.");
+            return;
+        }
+        PrintWriter saida = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out)));
+        for (HorarioDisponivel horario : horarios) {
+            dateTimeFormatter.formatTo(horario.getDataHora(), saida);
+            saida.print(" - Médico: ");
+            saida.println(horario.getMedico().getNome());
+        }
+        saida.flush();
+    }
+
+    /**
+     * Exibe a agenda de um médico num dia ou numa semana, com a taxa de ocupação.
+     */
+    private static void verAgendaMedico() {
+        System.out.print("Nome do médico: ");
+        Medico medico = gestor.pesquisarMedico(scanner.nextLine());
+        if (medico == null) {
+            System.out.println("Médico não encontrado.");
+            return;
+        }
+        System.out.print("Dia (dd-MM-yyyy, vazio para hoje): ");
+        String diaStr = scanner.nextLine().trim();
+        LocalDate dia;
+        try {
+            dia = diaStr.isEmpty() ? LocalDate.now() : LocalDate.parse(diaStr, dateFormatter);
+        } catch (DateTimeParseException e) {
+            System.out.println("Formato de data inválido. Use 'dd-MM-yyyy'.");
+            return;
+        }
+        System.out.print("Dia ou semana (D/S): ");
+        boolean semana = scanner.nextLine().trim().equalsIgnoreCase("S");
+        AgendaMedico agenda = semana ? gestor.obterAgendaSemana(medico, dia) : gestor.obterAgendaDia(medico, dia);
+        PrintWriter saida = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out)));
+        saida.println("Agenda de " + medico.getNome() + " de " + dateFormatter.format(agenda.getInicio())
+                + " a " + dateFormatter.format(agenda.getFim().minusDays(1)) + ":");
+        for (EntradaAgenda entrada : agenda.getMarcacoes()) {
+            dateTimeFormatter.formatTo(entrada.getDataHora(), saida);
+            saida.print(entrada.eExame() ? " - Exame (" + entrada.getExame().getDesignacao() + ")" : " - Consulta");
+            saida.print(" - Paciente: ");
+            saida.println(entrada.getPaciente().getNome());
+        }
+        if (agenda.getMarcacoes().isEmpty()) {
+            saida.println("Sem marcações.");
+        }
+        saida.printf("Ocupação: %d de %d horários (%.0f%%)%n", agenda.getHorariosOcupados(), agenda.getHorariosUteis(),
+                agenda.getOcupacao() * 100);
+        saida.flush();
+    }
+
+    /**
+     * Cancela ou reagenda uma consulta ou um exame de um paciente.
+     */
+    private static void alterarMarcacao() {
+        System.out.print("Nome do paciente: ");
+        String nomePaciente = scanner.nextLine();
+        if (!Validador.nomeValido(nomePaciente)) {
+            System.out.println("Erro: " + Validador.Campo.NOME_PACIENTE.getMensagem());
+            return;
+        }
+        Paciente paciente = gestor.pesquisarPaciente(nomePaciente);
+        if (paciente == null) {
+            System.out.println("Paciente não encontrado.");
+            return;
+        }
+        System.out.print("Consulta ou exame (C/E): ");
+        boolean exame = scanner.nextLine().trim().equalsIgnoreCase("E");
+        System.out.print("Data e Hora da Marcação (dd-MM-yyyy HH:mm): ");
+        LocalDateTime dataHora;
+        try {
+            dataHora = LocalDateTime.parse(scanner.nextLine(), dateTimeFormatter);
+        } catch (DateTimeParseException e) {
+            System.out.println("Formato de data e hora inválido. Use 'dd-MM-yyyy HH:mm'.");
+            return;
+        }
+        Consulta consulta = exame ? null : gestor.pesquisarConsulta(paciente, dataHora);
+        Exame exameEncontrado = exame ? gestor.pesquisarExame(paciente, dataHora) : null;
+        if (consulta == null && exameEncontrado == null) {
+            System.out.println(exame ? "Exame não encontrado." : "Consulta não encontrada.");
+            return;
+        }
+        System.out.print("Cancelar ou reagendar (C/R): ");
+        boolean reagendar = scanner.nextLine().trim().equalsIgnoreCase("R");
+        try {
+            if (!reagendar) {
+                if (exame) {
+                    gestor.cancelarExame(exameEncontrado);
+                } else {
+                    gestor.cancelarConsulta(consulta);
+                }
+                System.out.println(exame ? "Exame cancelado com sucesso!" : "Consulta cancelada com sucesso!");
+                return;
+            }
+            Medico medico = exame ? exameEncontrado.getMedico() : consulta.getMedico();
+            System.out.print("Nome do novo médico (vazio para manter " + medico.getNome() + "): ");
+            String nomeMedico = scanner.nextLine();
+            if (!nomeMedico.trim().isEmpty()) {
+                medico = gestor.pesquisarMedico(nomeMedico);
+                if (medico == null) {
+                    System.out.println("Médico não encontrado.");
+                    return;
+                }
+            }
+            System.out.println("Horários disponíveis:");
+            LocalDateTime novaDataHora = escolherHorario(medico);
+            if (novaDataHora != null) {
+                if (exame) {
+                    gestor.reagendarExame(exameEncontrado, novaDataHora, medico);
+                } else {
+                    gestor.reagendarConsulta(consulta, novaDataHora, medico);
+                }
+                System.out.println(exame ? "Exame reagendado com sucesso!" : "Consulta reagendada com sucesso!");
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println("Erro: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Marca feriados, ausências de médicos e horários especiais, ou remove-os.
+     */
+    private static void gerirExcecoesHorario() {
+        System.out.print("Feriado, ausência, horário especial ou remover (F/A/H/R): ");
+        String tipo = scanner.nextLine().trim().toUpperCase();
+        if (!tipo.equals("F") && !tipo.equals("A") && !tipo.equals("H") && !tipo.equals("R")) {
+            System.out.println("Opção inválida.");
+            return;
+        }
+        Medico medico = null;
+        if (!tipo.equals("F")) {
+            System.out.print(tipo.equals("A") ? "Nome do médico: " : "Nome do médico (vazio para toda a clínica): ");
+            String nomeMedico = scanner.nextLine();
+            if (tipo.equals("A") || !nomeMedico.trim().isEmpty()) {
+                medico = gestor.pesquisarMedico(nomeMedico);
+                if (medico == null) {
+                    System.out.println("Médico não encontrado.");
+                    return;
+                }
+            }
+        }
+        try {
+            System.out.print(tipo.equals("A") || tipo.equals("R") ? "Primeiro dia (dd-MM-yyyy): " : "Dia (dd-MM-yyyy): ");
+            LocalDate inicio = LocalDate.parse(scanner.nextLine().trim(), dateFormatter);
+            switch (tipo) {
+                case "F":
+                    gestor.adicionarFeriado(inicio);
+                    System.out.println("Feriado registado com sucesso!");
+                    break;
+                case "H": {
+                    System.out.print("Hora de início (HH:mm): ");
+                    LocalTime horaInicio = LocalTime.parse(scanner.nextLine().trim());
+                    System.out.print("Hora de fim (HH:mm): ");
+                    LocalTime horaFim = LocalTime.parse(scanner.nextLine().trim());
+                    gestor.definirHorarioEspecial(medico, inicio, horaInicio, horaFim);
+                    System.out.println("Horário especial definido com sucesso!");
+                    break;
+                }
+                default: {
+                    System.out.print("Último dia (dd-MM-yyyy): ");
+                    LocalDate fim = LocalDate.parse(scanner.nextLine().trim(), dateFormatter).plusDays(1);
+                    if (tipo.equals("A")) {
+                        gestor.adicionarAusencia(medico, inicio, fim);
+                        System.out.println("Ausência registada com sucesso!");
+                    } else {
+                        gestor.removerExcecoes(medico, inicio, fim);
+                        System.out.println("Exceções removidas com sucesso!");
+                    }
+                }
+            }
+        } catch (DateTimeParseException e) {
+            System.out.println("Formato inválido. Use 'dd-MM-yyyy' para datas e 'HH:mm' para horas.");
+        } catch (IllegalArgumentException e) {
+            System.out.println("Erro: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Exibe as métricas das operações do gestor: chamadas, erros e latências.
+     */
+    private static void verMetricas() {
+        System.out.print(gestor.getMetricas().relatorio());
+    }
+
     /**
      * Regista os resultados de um exame.
      */
     private static void registarResultadosExame() {
         System.out.print("Nome do paciente: ");
         String nomePaciente = scanner.nextLine();
-        if (!nomePaciente.matches("[a-zA-Z\\s]+")) {
-            System.out.println("Erro: O nome do paciente deve conter apenas caracteres alfabéticos.");
+        if (!Validador.nomeValido(nomePaciente)) {
+            System.out.println("Erro: " + Validador.Campo.NOME_PACIENTE.getMensagem());
             return;
         }
         Paciente paciente = gestor.pesquisarPaciente(nomePaciente);
@@ -260,8 +553,12 @@ public class Menu {
                 if (exame != null) {
                     System.out.print("Resultado do Exame (até 30 caracteres): ");
                     String resultado = scanner.nextLine();
-                    gestor.registarResultadosExame(exame, resultado);
-                    System.out.println("Resultado registado com sucesso!");
+                    try {
+                        gestor.registarResultadosExame(exame, resultado);
+                        System.out.println("Resultado registado com sucesso!");
+                    } catch (IllegalArgumentException e) {
+                        System.out.println("Erro: " + e.getMessage());
+                    }
                 } else {
                     System.out.println("Exame não encontrado.");
                 }
@@ -279,12 +576,19 @@ public class Menu {
     private static void verHistoricoConsultas() {
         System.out.print("Nome do Paciente: ");
         String nomePaciente = scanner.nextLine();
-        if (!nomePaciente.matches("[a-zA-Z\\s]+")) {
-            System.out.println("Erro: O nome do paciente deve conter apenas caracteres alfabéticos.");
+        if (!Validador.nomeValido(nomePaciente)) {
+            System.out.println("Erro: " + Validador.Campo.NOME_PACIENTE.getMensagem());
             return;
         }
-        if (gestor.pesquisarPaciente(nomePaciente) != null) {
-            gestor.verHistoricoConsultas(nomePaciente);
+        Paciente paciente = gestor.pesquisarPaciente(nomePaciente);
+        if (paciente != null) {
+            FiltroHistorico filtro = new FiltroHistorico();
+            filtro.setPaciente(paciente);
+            try (Stream<Consulta> consultas = gestor.pesquisarConsultas(filtro)) {
+                if (mostrarPaginas("Histórico de Consultas:", consultas, Menu::escreverConsulta) == 0) {
+                    System.out.println("Nenhuma consulta encontrada para este paciente.");
+                }
+            }
         } else {
             System.out.println("Paciente não encontrado.");
         }
@@ -298,7 +602,13 @@ public class Menu {
         String dataHoraStr = scanner.nextLine();
         try {
             LocalDateTime dataHora = LocalDateTime.parse(dataHoraStr, dateTimeFormatter);
-            gestor.verHistoricoConsultasPorDataHora(dataHora);
+            FiltroHistorico filtro = new FiltroHistorico();
+            filtro.setIntervalo(dataHora, dataHora.plusMinutes(1));
+            try (Stream<Consulta> consultas = gestor.pesquisarConsultas(filtro)) {
+                if (mostrarPaginas("Consultas na data e hora: " + dataHoraStr, consultas, Menu::escreverConsulta) == 0) {
+                    System.out.println("Nenhuma consulta encontrada para a data e hora: " + dataHoraStr);
+                }
+            }
         } catch (DateTimeParseException e) {
             System.out.println("Formato de data e hora inválido. Use 'dd-MM-yyyy HH:mm'.");
         }
@@ -310,19 +620,17 @@ public class Menu {
     private static void verHistoricoExames() {
         System.out.print("Nome do Paciente: ");
         String nomePaciente = scanner.nextLine();
-        if (!nomePaciente.matches("[a-zA-Z\\s]+")) {
-            System.out.println("Erro: O nome do paciente deve conter apenas caracteres alfabéticos.");
+        if (!Validador.nomeValido(nomePaciente)) {
+            System.out.println("Erro: " + Validador.Campo.NOME_PACIENTE.getMensagem());
             return;
         }
         Paciente paciente = gestor.pesquisarPaciente(nomePaciente);
         if (paciente != null) {
-            List<Exame> exames = paciente.getExames();
-            if (exames.isEmpty()) {
-                System.out.println("Nenhum exame encontrado para este paciente.");
-            } else {
-                System.out.println("Histórico de Exames:");
-                for (Exame exame : exames) {
-                    System.out.println(exame.getDataHora().format(dateTimeFormatter) + " - " + exame.getDesignacao() + " - Médico: " + exame.getMedico().getNome() + " - Resultado: " + exame.getObservacoes());
+            FiltroHistorico filtro = new FiltroHistorico();
+            filtro.setPaciente(paciente);
+            try (Stream<Exame> exames = gestor.pesquisarExames(filtro)) {
+                if (mostrarPaginas("Histórico de Exames:", exames, Menu::escreverExame) == 0) {
+                    System.out.println("Nenhum exame encontrado para este paciente.");
                 }
             }
         } else {
@@ -336,7 +644,13 @@ public class Menu {
     private static void verHistoricoExamesPorTipo() {
         System.out.print("Tipo de Exame: ");
         String tipoExame = scanner.nextLine();
-        gestor.verHistoricoExamesPorTipo(tipoExame);
+        FiltroHistorico filtro = new FiltroHistorico();
+        filtro.setTipoExame(tipoExame);
+        try (Stream<Exame> exames = gestor.pesquisarExames(filtro)) {
+            if (mostrarPaginas("Exames do tipo: " + tipoExame, exames, Menu::escreverExame) == 0) {
+                System.out.println("Nenhum exame encontrado para o tipo: " + tipoExame);
+            }
+        }
     }
 
     /**
@@ -347,9 +661,116 @@ public class Menu {
         String dataHoraStr = scanner.nextLine();
         try {
             LocalDateTime dataHora = LocalDateTime.parse(dataHoraStr, dateTimeFormatter);
-            gestor.verHistoricoExamesPorDataHora(dataHora);
+            FiltroHistorico filtro = new FiltroHistorico();
+            filtro.setIntervalo(dataHora, dataHora.plusMinutes(1));
+            try (Stream<Exame> exames = gestor.pesquisarExames(filtro)) {
+                if (mostrarPaginas("Exames na data e hora: " + dataHoraStr, exames, Menu::escreverExame) == 0) {
+                    System.out.println("Nenhum exame encontrado para a data e hora: " + dataHoraStr);
+                }
+            }
         } catch (DateTimeParseException e) {
             System.out.println("Formato de data e hora inválido. Use 'dd-MM-yyyy HH:mm'.");
         }
     }
+
+    /**
+     * Mostra os resultados de uma pesquisa em páginas de tamanho fixo. Os resultados só são obtidos
+     * à medida que são mostrados e cada página é escrita de uma só vez na consola.
+     *
+     * @param cabecalho  O texto a mostrar antes do primeiro resultado.
+     * @param resultados Os resultados.
+     * @param escrever   A forma de escrever cada resultado.
+     * @return O número de resultados mostrados.
+     */
+    private static <T> int mostrarPaginas(String cabecalho, Stream<T> resultados, BiConsumer<PrintWriter, T> escrever) {
+        Iterator<T> cursor = resultados.iterator();
+        if (!cursor.hasNext()) {
+            return 0;
+        }
+        PrintWriter saida = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16));
+        saida.println(cabecalho);
+        int total = 0;
+        while (cursor.hasNext()) {
+            for (int i = 0; i < TAMANHO_PAGINA && cursor.hasNext(); i++) {
+                escrever.accept(saida, cursor.next());
+                total++;
+            }
+            saida.flush();
+            if (cursor.hasNext()) {
+                System.out.print("Mostrar mais resultados? (s/n): ");
+                if (!scanner.nextLine().trim().equalsIgnoreCase("s")) {
+                    break;
+                }
+            }
+        }
+        return total;
+    }
+
+    private static void escreverConsulta(PrintWriter saida, Consulta consulta) {
+        dateTimeFormatter.formatTo(consulta.getDataHora(), saida);
+        saida.print(" - Médico: ");
+        saida.println(consulta.getMedico().getNome());
+    }
+
+    private static void escreverExame(PrintWriter saida, Exame exame) {
+        dateTimeFormatter.formatTo(exame.getDataHora(), saida);
+        saida.print(" - ");
+        saida.print(exame.getDesignacao());
+        saida.print(" - Médico: ");
+        saida.print(exame.getMedico().getNome());
+        saida.print(" - Resultado: ");
+        saida.println(exame.getObservacoes());
+    }
+
+    /**
+     * Importa médicos, pacientes, marcações e resultados de exames de um ficheiro CSV.
+     */
+    private static void importarCsv() {
+        System.out.print("Caminho do ficheiro CSV: ");
+        String caminho = scanner.nextLine().trim();
+        Path ficheiro = Paths.get(caminho);
+        Path ficheiroRejeitadas = Paths.get(caminho + ".rejeitadas.csv");
+        try {
+            ImportadorCsv.Resultado resultado = new ImportadorCsv(gestor).importar(ficheiro, ficheiroRejeitadas);
+            System.out.println(resultado);
+            if (resultado.getRejeitadas() > 0) {
+                System.out.println("Linhas rejeitadas gravadas em " + ficheiroRejeitadas);
+            }
+        } catch (IOException | InvalidPathException e) {
+            System.out.println("Erro ao importar o ficheiro: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Exporta o histórico de consultas e exames, de todos os pacientes ou de um só, para um ficheiro.
+     */
+    private static void exportarHistorico() {
+        System.out.print("Nome do paciente (vazio para todos): ");
+        String nomePaciente = scanner.nextLine().trim();
+        FiltroHistorico filtro = new FiltroHistorico();
+        if (!nomePaciente.isEmpty()) {
+            Paciente paciente = gestor.pesquisarPaciente(nomePaciente);
+            if (paciente == null) {
+                System.out.println("Paciente não encontrado.");
+                return;
+            }
+            filtro.setPaciente(paciente);
+        }
+        System.out.print("Formato (CSV ou JSONL): ");
+        ExportadorHistorico.Formato formato;
+        try {
+            formato = ExportadorHistorico.Formato.valueOf(scanner.nextLine().trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.out.println("Formato inválido.");
+            return;
+        }
+        System.out.print("Caminho do ficheiro de destino: ");
+        String caminho = scanner.nextLine().trim();
+        try {
+            long total = new ExportadorHistorico(gestor, formato).exportar(filtro, Paths.get(caminho));
+            System.out.println(total + " registos exportados.");
+        } catch (IOException | InvalidPathException e) {
+            System.out.println("Erro ao exportar o histórico: " + e.getMessage());
+        }
+    }
 }
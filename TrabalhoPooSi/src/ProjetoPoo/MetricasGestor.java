@@ -0,0 +1,388 @@
+package ProjetoPoo;
+
+import java.lang.management.ManagementFactory;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Classe que recolhe as métricas das operações do gestor de consultas e exames: o número de
+ * chamadas, o número de erros (no total e por motivo) e um histograma das latências.
+ *
+ * Os contadores são LongAdder e os histogramas estão repartidos por faixas (ver HistogramaLatencia),
+ * pelo que registar uma operação não cria objetos nem bloqueia. Desativadas, as métricas custam
+ * uma leitura de um campo volatile por operação, sem chamadas a System.nanoTime.
+ * Nas pesquisas que devolvem um Stream, a chamada é contada logo, mas a latência só é registada
+ * quando o Stream é esgotado ou fechado, para incluir o tempo de o percorrer.
+ */
+public class MetricasGestor implements MetricasGestorMXBean {
+    /** Valor devolvido por {@link #iniciar()} quando as métricas estão desativadas. */
+    static final long DESATIVADO = Long.MIN_VALUE;
+
+    private static final String NOME_JMX = "ProjetoPoo:type=MetricasGestor";
+    private static final int MAXIMO_MOTIVOS = 256;
+    private static final String OUTROS_MOTIVOS = "(outros motivos)";
+    private static final OperacaoGestor[] OPERACOES = OperacaoGestor.values();
+
+    private volatile boolean ativo;
+    private LongAdder[] chamadas;
+    private LongAdder[] erros;
+    private HistogramaLatencia[] latencias;
+    private Map<String, LongAdder> errosPorMotivo;
+
+    /**
+     * Construtor da classe MetricasGestor. As métricas começam ativas.
+     */
+    public MetricasGestor() {
+        this.ativo = true;
+        this.chamadas = new LongAdder[OPERACOES.length];
+        this.erros = new LongAdder[OPERACOES.length];
+        this.latencias = new HistogramaLatencia[OPERACOES.length];
+        for (int i = 0; i < OPERACOES.length; i++) {
+            chamadas[i] = new LongAdder();
+            erros[i] = new LongAdder();
+            latencias[i] = new HistogramaLatencia();
+        }
+        this.errosPorMotivo = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Regista as métricas no servidor JMX da plataforma, se ainda não houver outras registadas.
+     */
+    void registarJmx() {
+        registarJmx(NOME_JMX);
+    }
+
+    /**
+     * Regista as métricas do gestor de uma clínica no servidor JMX da plataforma,
+     * distinguidas das das outras clínicas pelo nome.
+     *
+     * @param clinica O nome da clínica.
+     */
+    void registarJmxClinica(String clinica) {
+        registarJmx(NOME_JMX + ",clinica=" + ObjectName.quote(clinica));
+    }
+
+    private void registarJmx(String nomeJmx) {
+        try {
+            MBeanServer servidor = ManagementFactory.getPlatformMBeanServer();
+            ObjectName nome = new ObjectName(nomeJmx);
+            if (!servidor.isRegistered(nome)) {
+                servidor.registerMBean(this, nome);
+            }
+        } catch (JMException e) {
+            System.err.println("Erro ao registar as métricas no JMX: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Marca o início de uma operação.
+     *
+     * @return O instante de início, em nanossegundos, ou {@link #DESATIVADO}.
+     */
+    long iniciar() {
+        return ativo ? System.nanoTime() : DESATIVADO;
+    }
+
+    /**
+     * Executa uma operação, contando a chamada, o erro (se terminar com um) e a latência.
+     *
+     * @param operacao A operação.
+     * @param acao     O código da operação.
+     * @param <T>      O tipo do resultado.
+     * @return O resultado da operação.
+     */
+    <T> T medir(OperacaoGestor operacao, Supplier<T> acao) {
+        long inicio = iniciar();
+        try {
+            return acao.get();
+        } catch (RuntimeException e) {
+            registarErro(operacao, e);
+            throw e;
+        } finally {
+            registar(operacao, inicio);
+        }
+    }
+
+    /**
+     * Executa uma operação sem resultado, contando a chamada, o erro (se terminar com um) e a latência.
+     *
+     * @param operacao A operação.
+     * @param acao     O código da operação.
+     */
+    void executar(OperacaoGestor operacao, Runnable acao) {
+        long inicio = iniciar();
+        try {
+            acao.run();
+        } catch (RuntimeException e) {
+            registarErro(operacao, e);
+            throw e;
+        } finally {
+            registar(operacao, inicio);
+        }
+    }
+
+    /**
+     * Executa uma pesquisa que devolve um Stream calculado à medida que é percorrido. A chamada é
+     * contada logo; a latência, desde o início da pesquisa, é registada quando o Stream é esgotado
+     * ou fechado, o que acontecer primeiro. Um Stream abandonado antes disso não regista latência.
+     *
+     * @param operacao A operação.
+     * @param pesquisa O código que prepara a pesquisa.
+     * @param <T>      O tipo dos elementos.
+     * @return O Stream da pesquisa.
+     */
+    <T> Stream<T> medirPesquisa(OperacaoGestor operacao, Supplier<Stream<T>> pesquisa) {
+        long inicio = iniciar();
+        Stream<T> resultado;
+        try {
+            resultado = pesquisa.get();
+        } catch (RuntimeException e) {
+            registarErro(operacao, e);
+            registar(operacao, inicio);
+            throw e;
+        }
+        if (inicio == DESATIVADO) {
+            return resultado;
+        }
+        chamadas[operacao.ordinal()].increment();
+        AtomicBoolean terminada = new AtomicBoolean();
+        Runnable terminar = () -> {
+            if (terminada.compareAndSet(false, true)) {
+                latencias[operacao.ordinal()].registar(System.nanoTime() - inicio);
+            }
+        };
+        Iterator<T> origem = resultado.iterator();
+        Iterator<T> medido = new Iterator<T>() {
+            @Override
+            public boolean hasNext() {
+                try {
+                    if (origem.hasNext()) {
+                        return true;
+                    }
+                } catch (RuntimeException e) {
+                    registarErro(operacao, e);
+                    terminar.run();
+                    throw e;
+                }
+                terminar.run();
+                return false;
+            }
+
+            @Override
+            public T next() {
+                try {
+                    return origem.next();
+                } catch (RuntimeException e) {
+                    registarErro(operacao, e);
+                    terminar.run();
+                    throw e;
+                }
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(medido, Spliterator.ORDERED), false)
+                .onClose(resultado::close)
+                .onClose(terminar);
+    }
+
+    /**
+     * Regista o fim de uma operação, com ou sem erro.
+     *
+     * @param operacao A operação.
+     * @param inicio   O valor devolvido por {@link #iniciar()}.
+     */
+    void registar(OperacaoGestor operacao, long inicio) {
+        if (inicio == DESATIVADO) {
+            return;
+        }
+        long duracao = System.nanoTime() - inicio;
+        chamadas[operacao.ordinal()].increment();
+        latencias[operacao.ordinal()].registar(duracao);
+    }
+
+    /**
+     * Regista um erro de uma operação. O motivo é a mensagem de erro, sem a indicação do pedido
+     * nos erros dos lotes; a partir de 256 motivos diferentes, os novos são contados em conjunto.
+     *
+     * @param operacao A operação.
+     * @param erro     O erro.
+     */
+    void registarErro(OperacaoGestor operacao, Exception erro) {
+        if (!ativo) {
+            return;
+        }
+        erros[operacao.ordinal()].increment();
+        String motivo = motivo(erro);
+        LongAdder contador = errosPorMotivo.get(motivo);
+        if (contador == null) {
+            contador = errosPorMotivo.computeIfAbsent(
+                    errosPorMotivo.size() < MAXIMO_MOTIVOS ? motivo : OUTROS_MOTIVOS, k -> new LongAdder());
+        }
+        contador.increment();
+    }
+
+    private static String motivo(Exception erro) {
+        String mensagem = erro.getMessage();
+        if (mensagem == null) {
+            return erro.getClass().getSimpleName();
+        }
+        if (mensagem.startsWith("Pedido ")) {
+            int separador = mensagem.indexOf(": ");
+            if (separador > 0) {
+                return mensagem.substring(separador + 2);
+            }
+        }
+        return mensagem;
+    }
+
+    @Override
+    public boolean isAtivo() {
+        return ativo;
+    }
+
+    @Override
+    public void setAtivo(boolean ativo) {
+        this.ativo = ativo;
+    }
+
+    /**
+     * Obtém o número de chamadas de uma operação.
+     *
+     * @param operacao A operação.
+     * @return O número de chamadas.
+     */
+    public long getChamadas(OperacaoGestor operacao) {
+        return chamadas[operacao.ordinal()].sum();
+    }
+
+    /**
+     * Obtém o número de chamadas de uma operação que terminaram com erro.
+     *
+     * @param operacao A operação.
+     * @return O número de erros.
+     */
+    public long getErros(OperacaoGestor operacao) {
+        return erros[operacao.ordinal()].sum();
+    }
+
+    /**
+     * Obtém um percentil da latência de uma operação.
+     *
+     * @param operacao  A operação.
+     * @param percentil O percentil, entre 0 e 100.
+     * @return A latência em nanossegundos.
+     */
+    public long getLatencia(OperacaoGestor operacao, double percentil) {
+        HistogramaLatencia histograma = latencias[operacao.ordinal()];
+        return histograma.percentil(histograma.contagens(), percentil);
+    }
+
+    @Override
+    public Map<String, Long> getChamadas() {
+        Map<String, Long> resultado = new LinkedHashMap<>();
+        for (OperacaoGestor operacao : OPERACOES) {
+            resultado.put(operacao.name(), getChamadas(operacao));
+        }
+        return resultado;
+    }
+
+    @Override
+    public Map<String, Long> getErros() {
+        Map<String, Long> resultado = new LinkedHashMap<>();
+        for (OperacaoGestor operacao : OPERACOES) {
+            resultado.put(operacao.name(), getErros(operacao));
+        }
+        return resultado;
+    }
+
+    @Override
+    public Map<String, Long> getErrosPorMotivo() {
+        Map<String, Long> resultado = new LinkedHashMap<>();
+        errosPorMotivo.entrySet().stream()
+                .sorted((a, b) -> Long.compare(b.getValue().sum(), a.getValue().sum()))
+                .forEach(entrada -> resultado.put(entrada.getKey(), entrada.getValue().sum()));
+        return resultado;
+    }
+
+    @Override
+    public Map<String, Double> getLatenciaP50Micros() {
+        return latenciaPorOperacao(50);
+    }
+
+    @Override
+    public Map<String, Double> getLatenciaP99Micros() {
+        return latenciaPorOperacao(99);
+    }
+
+    @Override
+    public Map<String, Double> getLatenciaMaximaMicros() {
+        Map<String, Double> resultado = new LinkedHashMap<>();
+        for (OperacaoGestor operacao : OPERACOES) {
+            resultado.put(operacao.name(), latencias[operacao.ordinal()].maximo() / 1000.0);
+        }
+        return resultado;
+    }
+
+    private Map<String, Double> latenciaPorOperacao(double percentil) {
+        Map<String, Double> resultado = new LinkedHashMap<>();
+        for (OperacaoGestor operacao : OPERACOES) {
+            resultado.put(operacao.name(), getLatencia(operacao, percentil) / 1000.0);
+        }
+        return resultado;
+    }
+
+    @Override
+    public String relatorio() {
+        StringBuilder texto = new StringBuilder();
+        texto.append("Métricas ").append(ativo ? "ativas" : "desativadas").append(" (latências em µs)\n");
+        texto.append(String.format(Locale.ROOT, "%-20s %10s %8s %9s %9s %9s %9s %9s%n",
+                "Operação", "Chamadas", "Erros", "Média", "p50", "p99", "p99,9", "Máximo"));
+        for (OperacaoGestor operacao : OPERACOES) {
+            long total = getChamadas(operacao);
+            if (total == 0) {
+                continue;
+            }
+            HistogramaLatencia histograma = latencias[operacao.ordinal()];
+            long[] contagens = histograma.contagens();
+            // As pesquisas ainda por percorrer já foram contadas, mas não têm latência
+            long medidas = 0;
+            for (long contagem : contagens) {
+                medidas += contagem;
+            }
+            texto.append(String.format(Locale.ROOT, "%-20s %10d %8d %9.1f %9.1f %9.1f %9.1f %9.1f%n",
+                    operacao.name(), total, getErros(operacao), medidas == 0 ? 0.0 : histograma.soma() / 1000.0 / medidas,
+                    histograma.percentil(contagens, 50) / 1000.0,
+                    histograma.percentil(contagens, 99) / 1000.0,
+                    histograma.percentil(contagens, 99.9) / 1000.0,
+                    histograma.maximo() / 1000.0));
+        }
+        Map<String, Long> motivos = getErrosPorMotivo();
+        if (!motivos.isEmpty()) {
+            texto.append("Erros por motivo:\n");
+            motivos.forEach((motivo, total) -> texto.append(String.format(Locale.ROOT, "%10d  %s%n", total, motivo)));
+        }
+        return texto.toString();
+    }
+
+    @Override
+    public void reiniciar() {
+        for (int i = 0; i < OPERACOES.length; i++) {
+            chamadas[i].reset();
+            erros[i].reset();
+            latencias[i].reiniciar();
+        }
+        errosPorMotivo.clear();
+    }
+}
@@ -0,0 +1,77 @@
+package ProjetoPoo;
+
+import java.util.Map;
+
+/**
+ * Interface de gestão (JMX) das métricas do gestor de consultas e exames.
+ * Os mapas são indexados pelo nome da operação, exceto o dos erros por motivo.
+ */
+public interface MetricasGestorMXBean {
+    /**
+     * Indica se as métricas estão a ser recolhidas.
+     *
+     * @return true se estiverem ativas.
+     */
+    boolean isAtivo();
+
+    /**
+     * Ativa ou desativa a recolha das métricas.
+     *
+     * @param ativo true para ativar.
+     */
+    void setAtivo(boolean ativo);
+
+    /**
+     * Obtém o número de chamadas de cada operação.
+     *
+     * @return O número de chamadas por operação.
+     */
+    Map<String, Long> getChamadas();
+
+    /**
+     * Obtém o número de chamadas de cada operação que terminaram com erro.
+     *
+     * @return O número de erros por operação.
+     */
+    Map<String, Long> getErros();
+
+    /**
+     * Obtém o número de erros de cada motivo (a mensagem de erro).
+     *
+     * @return O número de erros por motivo.
+     */
+    Map<String, Long> getErrosPorMotivo();
+
+    /**
+     * Obtém a mediana da latência de cada operação.
+     *
+     * @return A latência em microssegundos, por operação.
+     */
+    Map<String, Double> getLatenciaP50Micros();
+
+    /**
+     * Obtém o percentil 99 da latência de cada operação.
+     *
+     * @return A latência em microssegundos, por operação.
+     */
+    Map<String, Double> getLatenciaP99Micros();
+
+    /**
+     * Obtém a latência máxima de cada operação.
+     *
+     * @return A latência em microssegundos, por operação.
+     */
+    Map<String, Double> getLatenciaMaximaMicros();
+
+    /**
+     * Obtém um relatório em texto de todas as métricas.
+     *
+     * @return O relatório.
+     */
+    String relatorio();
+
+    /**
+     * Repõe todas as métricas a zero.
+     */
+    void reiniciar();
+}
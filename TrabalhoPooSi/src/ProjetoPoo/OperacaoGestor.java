@@ -0,0 +1,49 @@
+package ProjetoPoo;
+
+/**
+ * Operações do gestor de consultas e exames contabilizadas nas métricas.
+ */
+public enum OperacaoGestor {
+    /** Registo de um médico. */
+    REGISTAR_MEDICO,
+    /** Registo de um paciente. */
+    REGISTAR_PACIENTE,
+    /** Registo de um lote de médicos. */
+    REGISTAR_LOTE_MEDICOS,
+    /** Registo de um lote de pacientes. */
+    REGISTAR_LOTE_PACIENTES,
+    /** Agendamento de uma consulta. */
+    AGENDAR_CONSULTA,
+    /** Agendamento de um exame. */
+    AGENDAR_EXAME,
+    /** Agendamento de um lote de marcações. */
+    AGENDAR_LOTE,
+    /** Cancelamento de uma consulta. */
+    CANCELAR_CONSULTA,
+    /** Cancelamento de um exame. */
+    CANCELAR_EXAME,
+    /** Reagendamento de uma consulta. */
+    REAGENDAR_CONSULTA,
+    /** Reagendamento de um exame. */
+    REAGENDAR_EXAME,
+    /** Definição ou remoção de exceções de horário (feriados, ausências e horários especiais). */
+    DEFINIR_EXCECAO_HORARIO,
+    /** Validação dos dados de uma marcação (parte de cada agendamento ou reagendamento). */
+    VALIDAR_MARCACAO,
+    /** Registo dos resultados de um exame. */
+    REGISTAR_RESULTADOS,
+    /** Pesquisa de pacientes. */
+    PESQUISAR_PACIENTE,
+    /** Pesquisa de médicos. */
+    PESQUISAR_MEDICO,
+    /** Pesquisa de uma consulta ou exame pelo paciente e data e hora. */
+    PESQUISAR_MARCACAO,
+    /** Pesquisa ou contagem no histórico de consultas e exames. */
+    PESQUISAR_HISTORICO,
+    /** Obtenção de horários disponíveis. */
+    OBTER_HORARIOS,
+    /** Obtenção da agenda de um médico. */
+    OBTER_AGENDA,
+    /** Criação de um instantâneo do estado. */
+    CRIAR_INSTANTANEO
+}
@@ -0,0 +1,11 @@
+package ProjetoPoo;
+
+/**
+ * Ordem cronológica dos resultados de uma pesquisa.
+ */
+public enum Ordem {
+    /** Das marcações mais antigas para as mais recentes. */
+    CRESCENTE,
+    /** Das marcações mais recentes para as mais antigas. */
+    DECRESCENTE
+}
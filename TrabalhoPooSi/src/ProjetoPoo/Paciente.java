@@ -1,18 +1,25 @@
 package ProjetoPoo;
 
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
 /**
  * Classe que representa um paciente.
+ * As marcações do paciente são guardadas como linhas dos armazéns de consultas e exames
+ * do gestor onde está registado; um paciente só pode estar registado num gestor.
  */
 public class Paciente {
     private String id;
     private String nome;
     private Date dataNascimento;
-    private List<Consulta> consultas;
-    private List<Exame> exames;
+    private int indice;
+    private ListaIndices consultas;
+    private ListaIndices exames;
+    private ArmazemMarcacoes armazemConsultas;
+    private ArmazemMarcacoes armazemExames;
 
     /**
      * Construtor da classe Paciente.
@@ -21,8 +28,9 @@ public class Paciente {
      */
     public Paciente(String nome) {
         this.nome = nome;
-        this.consultas = new ArrayList<>();
-        this.exames = new ArrayList<>();
+        this.indice = -1;
+        this.consultas = new ListaIndices();
+        this.exames = new ListaIndices();
     }
 
     /**
@@ -36,8 +44,9 @@ public class Paciente {
         this.id = id;
         this.nome = nome;
         this.dataNascimento = dataNascimento;
-        this.consultas = new ArrayList<>();
-        this.exames = new ArrayList<>();
+        this.indice = -1;
+        this.consultas = new ListaIndices();
+        this.exames = new ListaIndices();
     }
 
     /**
@@ -56,20 +65,106 @@ public class Paciente {
         return dataNascimento;
     }
 
+    /**
+     * Obtém as consultas do paciente, pela ordem de marcação, sem as canceladas.
+     *
+     * @return Uma lista só de leitura com as consultas existentes no momento da chamada.
+     */
     public List<Consulta> getConsultas() {
-        return consultas;
+        if (armazemConsultas == null) {
+            return Collections.emptyList();
+        }
+        ArmazemMarcacoes armazem = armazemConsultas;
+        int[] linhas = ativas(consultas, armazem);
+        return new AbstractList<Consulta>() {
+            @Override
+            public Consulta get(int i) {
+                return armazem.consulta(linhas[i]);
+            }
+
+            @Override
+            public int size() {
+                return linhas.length;
+            }
+        };
     }
 
+    /**
+     * Obtém os exames do paciente, pela ordem de marcação, sem os cancelados.
+     *
+     * @return Uma lista só de leitura com os exames existentes no momento da chamada.
+     */
     public List<Exame> getExames() {
-        return exames;
+        if (armazemExames == null) {
+            return Collections.emptyList();
+        }
+        ArmazemMarcacoes armazem = armazemExames;
+        int[] linhas = ativas(exames, armazem);
+        return new AbstractList<Exame>() {
+            @Override
+            public Exame get(int i) {
+                return armazem.exame(linhas[i]);
+            }
+
+            @Override
+            public int size() {
+                return linhas.length;
+            }
+        };
+    }
+
+    /**
+     * Copia as linhas de uma lista de marcações do paciente, sem as marcações canceladas.
+     *
+     * @param linhas  As linhas das marcações do paciente.
+     * @param armazem O armazém onde as marcações estão guardadas.
+     * @return As linhas das marcações não canceladas, pela ordem de marcação.
+     */
+    private static int[] ativas(ListaIndices linhas, ArmazemMarcacoes armazem) {
+        int[] copia = linhas.copiar();
+        int n = 0;
+        for (int linha : copia) {
+            if (!armazem.cancelada(linha)) {
+                copia[n++] = linha;
+            }
+        }
+        return n == copia.length ? copia : Arrays.copyOf(copia, n);
+    }
+
+    /**
+     * Obtém o índice do paciente no registo de pacientes, atribuído pela ordem de registo.
+     *
+     * @return O índice, ou -1 se o paciente não estiver registado.
+     */
+    int getIndice() {
+        return indice;
+    }
+
+    void setIndice(int indice) {
+        this.indice = indice;
+    }
+
+    /**
+     * Associa o paciente aos armazéns de consultas e exames do gestor onde é registado.
+     * Deve ser chamado antes de o paciente ser adicionado ao registo de pacientes.
+     */
+    void associar(ArmazemMarcacoes consultas, ArmazemMarcacoes exames) {
+        this.armazemConsultas = consultas;
+        this.armazemExames = exames;
     }
 
-    public void adicionarConsulta(Consulta consulta) {
-        this.consultas.add(consulta);
+    /**
+     * Obtém as linhas das consultas do paciente no armazém de consultas, pela ordem de marcação.
+     */
+    ListaIndices getLinhasConsultas() {
+        return consultas;
     }
 
-    public void adicionarExame(Exame exame) {
-        this.exames.add(exame);
+    /**
+     * Obtém as linhas dos exames do paciente no armazém de exames, pela ordem de marcação.
+     */
+    ListaIndices getLinhasExames() {
+        return exames;
     }
 
     @Override
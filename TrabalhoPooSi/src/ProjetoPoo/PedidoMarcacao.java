@@ -0,0 +1,95 @@
+package ProjetoPoo;
+
+import java.time.LocalDateTime;
+
+/**
+ * Classe que representa o pedido de marcação de uma consulta ou de um exame,
+ * usado para agendar várias marcações de uma só vez.
+ */
+public class PedidoMarcacao {
+    private Paciente paciente;
+    private LocalDateTime dataHora;
+    private String designacao;
+    private Medico medico;
+
+    /**
+     * Construtor da classe PedidoMarcacao, para uma consulta.
+     *
+     * @param paciente O paciente.
+     * @param dataHora A data e hora da consulta.
+     * @param medico   O médico responsável.
+     */
+    public PedidoMarcacao(Paciente paciente, LocalDateTime dataHora, Medico medico) {
+        this(paciente, dataHora, null, medico);
+    }
+
+    /**
+     * Construtor da classe PedidoMarcacao, para um exame.
+     *
+     * @param paciente   O paciente.
+     * @param dataHora   A data e hora do exame.
+     * @param designacao A designação do exame.
+     * @param medico     O médico responsável.
+     */
+    public PedidoMarcacao(Paciente paciente, LocalDateTime dataHora, String designacao, Medico medico) {
+        this.paciente = paciente;
+        this.dataHora = dataHora;
+        this.designacao = designacao;
+        this.medico = medico;
+    }
+
+    /**
+     * Obtém o paciente.
+     *
+     * @return O paciente.
+     */
+    public Paciente getPaciente() {
+        return paciente;
+    }
+
+    /**
+     * Obtém a data e hora da marcação.
+     *
+     * @return A data e hora.
+     */
+    public LocalDateTime getDataHora() {
+        return dataHora;
+    }
+
+    /**
+     * Obtém a designação do exame.
+     *
+     * @return A designação, ou null se o pedido for de uma consulta.
+     */
+    public String getDesignacao() {
+        return designacao;
+    }
+
+    /**
+     * Obtém o médico responsável.
+     *
+     * @return O médico.
+     */
+    public Medico getMedico() {
+        return medico;
+    }
+
+    /**
+     * Verifica se o pedido é de um exame.
+     *
+     * @return true se for um exame, false se for uma consulta.
+     */
+    public boolean eExame() {
+        return designacao != null;
+    }
+
+    @Override
+    public String toString() {
+        return "PedidoMarcacao{" +
+                "dataHora=" + dataHora +
+                (designacao == null ? "" : ", designacao='" + designacao + '\'') +
+                ", medico=" + (medico == null ? null : medico.getNome()) +
+                ", paciente=" + (paciente == null ? null : paciente.getNome()) +
+                '}';
+    }
+}
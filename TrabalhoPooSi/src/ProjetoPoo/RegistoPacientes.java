@@ -0,0 +1,160 @@
+package ProjetoPoo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Classe que mantém o registo de pacientes indexado por ID e por nome.
+ * Cada paciente recebe também um índice inteiro, pela ordem de registo, que as marcações
+ * usam para o referir em 4 bytes.
+ * Pode ser usada por várias threads em simultâneo.
+ */
+public class RegistoPacientes {
+    private Map<String, Paciente> porId;
+    private Map<String, Queue<Paciente>> porNome;
+    private volatile Paciente[] porIndice;
+    private int total;
+
+    /**
+     * Construtor da classe RegistoPacientes.
+     */
+    public RegistoPacientes() {
+        this.porId = new ConcurrentHashMap<>();
+        this.porNome = new ConcurrentHashMap<>();
+        this.porIndice = new Paciente[16];
+    }
+
+    /**
+     * Adiciona um paciente ao registo.
+     *
+     * @param paciente O paciente a adicionar.
+     * @return true se o paciente foi adicionado, false se já existia um paciente com o mesmo ID.
+     */
+    public synchronized boolean adicionar(Paciente paciente) {
+        if (porId.containsKey(paciente.getId())) {
+            return false;
+        }
+        // O índice é publicado antes do paciente ficar visível por ID
+        Paciente[] atuais = porIndice;
+        if (total == atuais.length) {
+            atuais = Arrays.copyOf(atuais, total * 2);
+            porIndice = atuais;
+        }
+        atuais[total] = paciente;
+        paciente.setIndice(total++);
+        porId.put(paciente.getId(), paciente);
+        porNome.computeIfAbsent(normalizarNome(paciente.getNome()), k -> new ConcurrentLinkedQueue<>()).add(paciente);
+        return true;
+    }
+
+    /**
+     * Verifica se um paciente pertence ao registo.
+     *
+     * @param paciente O paciente.
+     * @return true se o paciente está registado.
+     */
+    public boolean contem(Paciente paciente) {
+        return paciente != null && porId.get(paciente.getId()) == paciente;
+    }
+
+    /**
+     * Obtém um paciente pelo seu índice.
+     *
+     * @param indice O índice do paciente.
+     * @return O paciente.
+     */
+    Paciente obterPorIndice(int indice) {
+        return porIndice[indice];
+    }
+
+    /**
+     * Obtém um paciente pelo ID.
+     *
+     * @param id O ID do paciente.
+     * @return O paciente ou null se não existir.
+     */
+    public Paciente obterPorId(String id) {
+        return id == null ? null : porId.get(id);
+    }
+
+    /**
+     * Obtém o primeiro paciente registado com o nome indicado, ignorando maiúsculas e minúsculas.
+     *
+     * @param nome O nome do paciente.
+     * @return O paciente ou null se não existir.
+     */
+    public Paciente obterPorNome(String nome) {
+        if (nome == null) {
+            return null;
+        }
+        Queue<Paciente> homonimos = porNome.get(normalizarNome(nome));
+        return homonimos == null ? null : homonimos.peek();
+    }
+
+    /**
+     * Obtém todos os pacientes com o nome indicado, pela ordem de registo.
+     *
+     * @param nome O nome dos pacientes.
+     * @return Uma coleção, possivelmente vazia, com os pacientes encontrados.
+     */
+    public Collection<Paciente> obterTodosPorNome(String nome) {
+        if (nome == null) {
+            return Collections.emptyList();
+        }
+        Queue<Paciente> homonimos = porNome.get(normalizarNome(nome));
+        return homonimos == null ? Collections.emptyList() : Collections.unmodifiableCollection(homonimos);
+    }
+
+    /**
+     * Obtém todos os pacientes registados.
+     *
+     * @return Uma vista não modificável dos pacientes.
+     */
+    public Collection<Paciente> obterTodos() {
+        return Collections.unmodifiableCollection(porId.values());
+    }
+
+    /**
+     * Obtém uma cópia de todos os pacientes, com os homónimos pela ordem de registo.
+     *
+     * @return Uma lista com os pacientes.
+     */
+    public List<Paciente> listarPorNome() {
+        List<Paciente> todos = new ArrayList<>(porId.size());
+        for (Queue<Paciente> homonimos : porNome.values()) {
+            todos.addAll(homonimos);
+        }
+        return todos;
+    }
+
+    /**
+     * Obtém o número de pacientes registados.
+     *
+     * @return O número de pacientes.
+     */
+    public int tamanho() {
+        return porId.size();
+    }
+
+    /**
+     * Normaliza um nome com a mesma regra de String.equalsIgnoreCase,
+     * para que a pesquisa por nome mantenha o comportamento anterior.
+     *
+     * @param nome O nome a normalizar.
+     * @return O nome normalizado.
+     */
+    static String normalizarNome(String nome) {
+        char[] chars = new char[nome.length()];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(Character.toUpperCase(nome.charAt(i)));
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,504 @@
+package ProjetoPoo;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.format.ResolverStyle;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+/**
+ * Classe que disponibiliza o gestor de consultas e exames através de um serviço HTTP/JSON,
+ * usando o servidor HTTP incluído no JDK. Cada pedido é tratado numa thread virtual quando
+ * a JVM as suporta (Java 21 ou posterior) e, caso contrário, numa thread de um conjunto
+ * que cresce conforme a carga.
+ *
+ * Operações disponíveis (datas em dd-MM-yyyy e datas e horas em dd-MM-yyyy HH:mm):
+ * <pre>
+ * POST /medicos     {"nome", "especialidade"}
+ * POST /pacientes   {"id", "nome", "dataNascimento"}
+ * POST /consultas   {"idPaciente", "medico", "dataHora"}
+ * POST /exames      {"idPaciente", "medico", "dataHora", "designacao"}
+ * POST /resultados  {"idPaciente", "dataHora", "observacoes"}
+ * GET  /consultas   ?idPaciente &amp;medico &amp;inicio &amp;fim &amp;ordem &amp;deslocamento &amp;limite
+ * GET  /exames      ?idPaciente &amp;medico &amp;tipo &amp;inicio &amp;fim &amp;ordem &amp;deslocamento &amp;limite
+ * GET  /horarios    ?medico &amp;desde &amp;limite  ou  ?especialidade &amp;desde &amp;limite
+ * </pre>
+ * As pesquisas de histórico respondem em JSON Lines (um registo por linha), escrito à medida
+ * que é lido do gestor. Os erros de validação respondem 400 com {"erro": "..."}.
+ */
+public class ServidorHttp {
+    private static final int PORTA_PREDEFINIDA = 8080;
+    private static final String DIRETORIO_DIARIO = "dados-consultas-exames";
+    private static final int LIMITE_PREDEFINIDO = 100;
+    private static final DateTimeFormatter FORMATO_DATA = DateTimeFormatter.ofPattern("dd-MM-uuuu")
+            .withResolverStyle(ResolverStyle.STRICT);
+    private static final DateTimeFormatter FORMATO_DATA_HORA = DateTimeFormatter.ofPattern("dd-MM-uuuu HH:mm")
+            .withResolverStyle(ResolverStyle.STRICT);
+
+    static {
+        // Sem TCP_NODELAY, o cabeçalho e o corpo de cada resposta curta esperam pelo ACK atrasado do cliente (~40 ms)
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private GerirConsultasExames gestor;
+    private HttpServer servidor;
+    private ExecutorService executor;
+
+    /**
+     * Operação que trata um pedido HTTP.
+     */
+    private interface Operacao {
+        void executar(HttpExchange troca) throws IOException;
+    }
+
+    /**
+     * Construtor da classe ServidorHttp.
+     *
+     * @param gestor O gestor partilhado por todos os pedidos.
+     * @param porta  A porta onde escutar (0 para escolher uma porta livre).
+     * @throws IOException Se não for possível abrir a porta.
+     */
+    public ServidorHttp(GerirConsultasExames gestor, int porta) throws IOException {
+        if (gestor == null) {
+            throw new IllegalArgumentException("Gestor não pode ser nulo.");
+        }
+        this.gestor = gestor;
+        this.servidor = HttpServer.create(new InetSocketAddress(porta), 1024);
+        this.executor = criarExecutor();
+        servidor.setExecutor(executor);
+        servidor.createContext("/medicos", tratador("POST", this::registarMedico, null));
+        servidor.createContext("/pacientes", tratador("POST", this::registarPaciente, null));
+        servidor.createContext("/consultas", tratador("POST", this::agendarConsulta, this::pesquisarConsultas));
+        servidor.createContext("/exames", tratador("POST", this::agendarExame, this::pesquisarExames));
+        servidor.createContext("/resultados", tratador("POST", this::registarResultadosExame, null));
+        servidor.createContext("/horarios", tratador("GET", this::obterHorarios, null));
+    }
+
+    /**
+     * Método principal que inicia o serviço sobre o gestor persistido no diário de operações.
+     *
+     * @param args O número da porta (opcional).
+     * @throws IOException Se ocorrer um erro ao abrir o diário ou a porta.
+     */
+    public static void main(String[] args) throws IOException {
+        int porta = args.length > 0 ? Integer.parseInt(args[0]) : PORTA_PREDEFINIDA;
+        GerirConsultasExames.inicializarGestor(Paths.get(DIRETORIO_DIARIO));
+        GerirConsultasExames gestor = GerirConsultasExames.getInstance();
+        ServidorHttp servidor = new ServidorHttp(gestor, porta);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            servidor.parar();
+            try {
+                gestor.fechar();
+            } catch (IOException e) {
+                System.err.println("Erro ao gravar o diário de operações: " + e.getMessage());
+            }
+        }));
+        servidor.iniciar();
+        System.out.println("Serviço disponível na porta " + servidor.getPorta());
+    }
+
+    /**
+     * Começa a aceitar pedidos.
+     */
+    public void iniciar() {
+        servidor.start();
+    }
+
+    /**
+     * Deixa de aceitar pedidos, esperando até um segundo pelos pedidos em curso.
+     */
+    public void parar() {
+        servidor.stop(1);
+        executor.shutdown();
+    }
+
+    /**
+     * Obtém a porta onde o serviço está a escutar.
+     *
+     * @return O número da porta.
+     */
+    public int getPorta() {
+        return servidor.getAddress().getPort();
+    }
+
+    /**
+     * Cria o executor dos pedidos: uma thread virtual por pedido, se a JVM o suportar.
+     * O método é obtido por reflexão para que a classe continue a compilar e a correr em Java 17.
+     */
+    private static ExecutorService criarExecutor() {
+        try {
+            Method fabrica = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) fabrica.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    private HttpHandler tratador(String metodo, Operacao operacao, Operacao pesquisa) {
+        return troca -> {
+            try {
+                String pedido = troca.getRequestMethod();
+                if (pedido.equals(metodo)) {
+                    operacao.executar(troca);
+                } else if (pesquisa != null && pedido.equals("GET")) {
+                    pesquisa.executar(troca);
+                } else {
+                    responder(troca, 405, "{\"erro\":\"Método não permitido.\"}");
+                }
+            } catch (IllegalArgumentException e) {
+                responderErro(troca, 400, e.getMessage());
+            } catch (DateTimeParseException e) {
+                responderErro(troca, 400, "Data inválida: " + e.getParsedString());
+            } catch (RuntimeException e) {
+                responderErro(troca, 500, e.toString());
+            } finally {
+                troca.close();
+            }
+        };
+    }
+
+    private void registarMedico(HttpExchange troca) throws IOException {
+        Map<String, String> dados = lerJson(troca);
+        gestor.registarMedico(new Medico(obrigatorio(dados, "nome"), obrigatorio(dados, "especialidade")));
+        responder(troca, 201, "{\"mensagem\":\"Médico registado com sucesso!\"}");
+    }
+
+    private void registarPaciente(HttpExchange troca) throws IOException {
+        Map<String, String> dados = lerJson(troca);
+        String dataNascimento = dados.get("dataNascimento");
+        Date nascimento = dataNascimento == null ? null : Date.from(LocalDate.parse(dataNascimento, FORMATO_DATA)
+                .atStartOfDay(ZoneId.systemDefault()).toInstant());
+        gestor.registarPaciente(new Paciente(obrigatorio(dados, "id"), obrigatorio(dados, "nome"), nascimento));
+        responder(troca, 201, "{\"mensagem\":\"Paciente registado com sucesso!\"}");
+    }
+
+    private void agendarConsulta(HttpExchange troca) throws IOException {
+        Map<String, String> dados = lerJson(troca);
+        gestor.agendarConsulta(paciente(obrigatorio(dados, "idPaciente")), dataHora(obrigatorio(dados, "dataHora")),
+                medico(obrigatorio(dados, "medico")));
+        responder(troca, 201, "{\"mensagem\":\"Consulta agendada com sucesso!\"}");
+    }
+
+    private void agendarExame(HttpExchange troca) throws IOException {
+        Map<String, String> dados = lerJson(troca);
+        gestor.agendarExame(paciente(obrigatorio(dados, "idPaciente")), dataHora(obrigatorio(dados, "dataHora")),
+                obrigatorio(dados, "designacao"), medico(obrigatorio(dados, "medico")));
+        responder(troca, 201, "{\"mensagem\":\"Exame agendado com sucesso!\"}");
+    }
+
+    private void registarResultadosExame(HttpExchange troca) throws IOException {
+        Map<String, String> dados = lerJson(troca);
+        Exame exame = gestor.pesquisarExame(paciente(obrigatorio(dados, "idPaciente")), dataHora(obrigatorio(dados, "dataHora")));
+        if (exame == null) {
+            responderErro(troca, 404, "Exame não encontrado.");
+            return;
+        }
+        gestor.registarResultadosExame(exame, obrigatorio(dados, "observacoes"));
+        responder(troca, 200, "{\"mensagem\":\"Resultado registado com sucesso!\"}");
+    }
+
+    private void pesquisarConsultas(HttpExchange troca) throws IOException {
+        Map<String, String> parametros = lerParametros(troca);
+        FiltroHistorico filtro = filtro(parametros);
+        Ordem ordem = ordem(parametros);
+        long deslocamento = numero(parametros, "deslocamento", 0);
+        long limite = numero(parametros, "limite", LIMITE_PREDEFINIDO);
+        // A pesquisa é preparada antes de responder, para que os erros ainda possam ser 400
+        ExportadorHistorico exportador = new ExportadorHistorico(gestor, ExportadorHistorico.Formato.JSONL);
+        Stream<Consulta> consultas = gestor.pesquisarConsultas(filtro, ordem, deslocamento, limite);
+        troca.getResponseHeaders().set("Content-Type", "application/x-ndjson; charset=utf-8");
+        troca.sendResponseHeaders(200, 0);
+        try (consultas; Writer saida = new BufferedWriter(new OutputStreamWriter(troca.getResponseBody(), StandardCharsets.UTF_8))) {
+            exportador.exportarConsultas(consultas, saida);
+        }
+    }
+
+    private void pesquisarExames(HttpExchange troca) throws IOException {
+        Map<String, String> parametros = lerParametros(troca);
+        FiltroHistorico filtro = filtro(parametros);
+        Ordem ordem = ordem(parametros);
+        long deslocamento = numero(parametros, "deslocamento", 0);
+        long limite = numero(parametros, "limite", LIMITE_PREDEFINIDO);
+        ExportadorHistorico exportador = new ExportadorHistorico(gestor, ExportadorHistorico.Formato.JSONL);
+        Stream<Exame> exames = gestor.pesquisarExames(filtro, ordem, deslocamento, limite);
+        troca.getResponseHeaders().set("Content-Type", "application/x-ndjson; charset=utf-8");
+        troca.sendResponseHeaders(200, 0);
+        try (exames; Writer saida = new BufferedWriter(new OutputStreamWriter(troca.getResponseBody(), StandardCharsets.UTF_8))) {
+            exportador.exportarExames(exames, saida);
+        }
+    }
+
+    private void obterHorarios(HttpExchange troca) throws IOException {
+        Map<String, String> parametros = lerParametros(troca);
+        String desde = parametros.get("desde");
+        LocalDateTime inicio = desde == null ? LocalDateTime.now() : dataHora(desde);
+        int limite = (int) Math.min(numero(parametros, "limite", LIMITE_PREDEFINIDO), Integer.MAX_VALUE);
+        StringBuilder json = new StringBuilder("[");
+        String especialidade = parametros.get("especialidade");
+        if (especialidade != null) {
+            for (HorarioDisponivel horario : gestor.obterProximosHorariosPorEspecialidade(especialidade, inicio, limite)) {
+                json.append(json.length() > 1 ? "," : "").append("{\"medico\":");
+                escreverTexto(json, horario.getMedico().getNome());
+                json.append(",\"dataHora\":\"").append(horario.getDataHora().format(FORMATO_DATA_HORA)).append("\"}");
+            }
+        } else {
+            List<LocalDateTime> horarios = gestor.obterProximosHorariosDisponiveis(medico(obrigatorio(parametros, "medico")), inicio, limite);
+            for (LocalDateTime horario : horarios) {
+                json.append(json.length() > 1 ? ",\"" : "\"").append(horario.format(FORMATO_DATA_HORA)).append('"');
+            }
+        }
+        responder(troca, 200, json.append(']').toString());
+    }
+
+    private FiltroHistorico filtro(Map<String, String> parametros) {
+        FiltroHistorico filtro = new FiltroHistorico();
+        if (parametros.containsKey("idPaciente")) {
+            filtro.setPaciente(paciente(parametros.get("idPaciente")));
+        }
+        if (parametros.containsKey("medico")) {
+            filtro.setMedico(medico(parametros.get("medico")));
+        }
+        if (parametros.containsKey("tipo")) {
+            filtro.setTipoExame(parametros.get("tipo"));
+        }
+        String inicio = parametros.get("inicio");
+        String fim = parametros.get("fim");
+        if (inicio != null || fim != null) {
+            filtro.setIntervalo(inicio == null ? null : dataHora(inicio), fim == null ? null : dataHora(fim));
+        }
+        return filtro;
+    }
+
+    private static Ordem ordem(Map<String, String> parametros) {
+        String ordem = parametros.get("ordem");
+        return ordem == null ? Ordem.CRESCENTE : Ordem.valueOf(ordem.toUpperCase());
+    }
+
+    private static long numero(Map<String, String> parametros, String nome, long predefinido) {
+        String valor = parametros.get(nome);
+        if (valor == null) {
+            return predefinido;
+        }
+        try {
+            return Long.parseLong(valor);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Parâmetro " + nome + " inválido.");
+        }
+    }
+
+    private Paciente paciente(String id) {
+        Paciente paciente = gestor.pesquisarPacientePorId(id);
+        if (paciente == null) {
+            throw new IllegalArgumentException("Paciente não encontrado.");
+        }
+        return paciente;
+    }
+
+    private Medico medico(String nome) {
+        Medico medico = gestor.pesquisarMedico(nome);
+        if (medico == null) {
+            throw new IllegalArgumentException("Médico não encontrado.");
+        }
+        return medico;
+    }
+
+    private static LocalDateTime dataHora(String texto) {
+        return LocalDateTime.parse(texto, FORMATO_DATA_HORA);
+    }
+
+    private static String obrigatorio(Map<String, String> dados, String campo) {
+        String valor = dados.get(campo);
+        if (valor == null || valor.isEmpty()) {
+            throw new IllegalArgumentException("Campo " + campo + " em falta.");
+        }
+        return valor;
+    }
+
+    private static Map<String, String> lerParametros(HttpExchange troca) {
+        Map<String, String> parametros = new HashMap<>();
+        String consulta = troca.getRequestURI().getRawQuery();
+        if (consulta == null || consulta.isEmpty()) {
+            return parametros;
+        }
+        for (String par : consulta.split("&")) {
+            int igual = par.indexOf('=');
+            if (igual > 0) {
+                parametros.put(URLDecoder.decode(par.substring(0, igual), StandardCharsets.UTF_8),
+                        URLDecoder.decode(par.substring(igual + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return parametros;
+    }
+
+    /**
+     * Lê o corpo do pedido como um objeto JSON simples, cujos valores são textos, números, booleanos ou null.
+     */
+    private static Map<String, String> lerJson(HttpExchange troca) throws IOException {
+        String json;
+        try (InputStream entrada = troca.getRequestBody()) {
+            json = new String(entrada.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        Map<String, String> dados = new HashMap<>();
+        int[] posicao = {saltarEspacos(json, 0)};
+        esperar(json, posicao, '{');
+        int fim = saltarEspacos(json, posicao[0]);
+        if (fim < json.length() && json.charAt(fim) == '}') {
+            return dados;
+        }
+        while (true) {
+            posicao[0] = saltarEspacos(json, posicao[0]);
+            String chave = lerTexto(json, posicao);
+            esperar(json, posicao, ':');
+            posicao[0] = saltarEspacos(json, posicao[0]);
+            if (posicao[0] < json.length() && json.charAt(posicao[0]) == '"') {
+                dados.put(chave, lerTexto(json, posicao));
+            } else {
+                int inicio = posicao[0];
+                while (posicao[0] < json.length() && ",} \t\r\n".indexOf(json.charAt(posicao[0])) < 0) {
+                    posicao[0]++;
+                }
+                String valor = json.substring(inicio, posicao[0]);
+                if (valor.isEmpty()) {
+                    throw new IllegalArgumentException("JSON inválido.");
+                }
+                if (!valor.equals("null")) {
+                    dados.put(chave, valor);
+                }
+            }
+            posicao[0] = saltarEspacos(json, posicao[0]);
+            if (posicao[0] < json.length() && json.charAt(posicao[0]) == ',') {
+                posicao[0]++;
+            } else {
+                esperar(json, posicao, '}');
+                return dados;
+            }
+        }
+    }
+
+    private static int saltarEspacos(String json, int posicao) {
+        while (posicao < json.length() && Character.isWhitespace(json.charAt(posicao))) {
+            posicao++;
+        }
+        return posicao;
+    }
+
+    private static void esperar(String json, int[] posicao, char esperado) {
+        posicao[0] = saltarEspacos(json, posicao[0]);
+        if (posicao[0] >= json.length() || json.charAt(posicao[0]) != esperado) {
+            throw new IllegalArgumentException("JSON inválido: esperado '" + esperado + "'.");
+        }
+        posicao[0]++;
+    }
+
+    private static String lerTexto(String json, int[] posicao) {
+        esperar(json, posicao, '"');
+        StringBuilder texto = new StringBuilder();
+        int i = posicao[0];
+        while (i < json.length()) {
+            char c = json.charAt(i++);
+            if (c == '"') {
+                posicao[0] = i;
+                return texto.toString();
+            }
+            if (c != '\\') {
+                texto.append(c);
+                continue;
+            }
+            if (i >= json.length()) {
+                break;
+            }
+            char escape = json.charAt(i++);
+            switch (escape) {
+                case 'n':
+                    texto.append('\n');
+                    break;
+                case 't':
+                    texto.append('\t');
+                    break;
+                case 'r':
+                    texto.append('\r');
+                    break;
+                case 'b':
+                    texto.append('\b');
+                    break;
+                case 'f':
+                    texto.append('\f');
+                    break;
+                case 'u':
+                    if (i + 4 > json.length()) {
+                        throw new IllegalArgumentException("JSON inválido.");
+                    }
+                    try {
+                        texto.append((char) Integer.parseInt(json.substring(i, i + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("JSON inválido.");
+                    }
+                    i += 4;
+                    break;
+                default:
+                    texto.append(escape);
+                    break;
+            }
+        }
+        throw new IllegalArgumentException("JSON inválido: texto não terminado.");
+    }
+
+    private static void escreverTexto(StringBuilder json, String texto) {
+        json.append('"');
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    private static void responderErro(HttpExchange troca, int estado, String mensagem) throws IOException {
+        StringBuilder json = new StringBuilder("{\"erro\":");
+        escreverTexto(json, mensagem == null ? "Erro desconhecido." : mensagem);
+        responder(troca, estado, json.append('}').toString());
+    }
+
+    private static void responder(HttpExchange troca, int estado, String json) throws IOException {
+        if (troca.getResponseCode() != -1) {
+            // A resposta já começou a ser enviada; só resta fechar a ligação
+            return;
+        }
+        byte[] corpo = json.getBytes(StandardCharsets.UTF_8);
+        troca.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        troca.sendResponseHeaders(estado, corpo.length);
+        try (OutputStream saida = troca.getResponseBody()) {
+            saida.write(corpo);
+        }
+    }
+}
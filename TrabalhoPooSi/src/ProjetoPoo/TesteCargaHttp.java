@@ -0,0 +1,153 @@
+package ProjetoPoo;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Classe que mede o débito e a latência do serviço HTTP sobre um gestor em memória.
+ *
+ * Inicia o serviço numa porta livre, regista médicos e pacientes sintéticos e depois lança
+ * vários clientes em simultâneo, cada um a agendar consultas (POST /consultas) e a pesquisar
+ * o histórico do respetivo paciente (GET /consultas). No fim apresenta o débito e os
+ * percentis 50, 99 e máximo da latência.
+ *
+ * Utilização: java ProjetoPoo.TesteCargaHttp [marcações] [clientes]
+ * (por omissão, 20000 marcações e 32 clientes).
+ */
+public class TesteCargaHttp {
+    private static final long SEMENTE = 42L;
+    private static final DateTimeFormatter FORMATO_DATA_HORA = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm");
+
+    private HttpClient cliente;
+    private String base;
+    private AtomicLong erros;
+
+    /**
+     * Construtor da classe TesteCargaHttp.
+     *
+     * @param porta A porta do serviço local.
+     */
+    public TesteCargaHttp(int porta) {
+        this.cliente = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        this.base = "http://localhost:" + porta;
+        this.erros = new AtomicLong();
+    }
+
+    /**
+     * Método principal que executa o teste de carga.
+     *
+     * @param args O número de marcações e o número de clientes.
+     * @throws Exception Se o serviço não puder ser iniciado ou um cliente for interrompido.
+     */
+    public static void main(String[] args) throws Exception {
+        int marcacoes = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int clientes = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+
+        GerirConsultasExames gestor = new GerirConsultasExames();
+        ServidorHttp servidor = new ServidorHttp(gestor, 0);
+        servidor.iniciar();
+        try {
+            new TesteCargaHttp(servidor.getPorta()).executar(gestor, marcacoes, clientes);
+        } finally {
+            servidor.parar();
+        }
+    }
+
+    private void executar(GerirConsultasExames gestor, int marcacoes, int clientes) throws InterruptedException {
+        GeradorDadosSinteticos gerador = new GeradorDadosSinteticos(SEMENTE);
+        List<LocalDateTime> horarios = GeradorDadosSinteticos.horariosUteis(gestor.getConfiguracaoHorario(),
+                LocalDate.now().plusDays(1).atStartOfDay());
+        int numeroMedicos = Math.max(1, (marcacoes + horarios.size() - 1) / horarios.size());
+        List<Medico> medicos = gerador.gerarMedicos(numeroMedicos);
+        List<Paciente> pacientes = gerador.gerarPacientes(marcacoes);
+
+        long t0 = System.nanoTime();
+        for (Medico medico : medicos) {
+            enviar("POST", "/medicos", "{\"nome\":\"" + medico.getNome() + "\",\"especialidade\":\"" + medico.getEspecialidade() + "\"}");
+        }
+        for (Paciente paciente : pacientes) {
+            enviar("POST", "/pacientes", "{\"id\":\"" + paciente.getId() + "\",\"nome\":\"" + paciente.getNome() + "\"}");
+        }
+        System.out.printf("Registo de %d médicos e %d pacientes: %.1f s%n", numeroMedicos, marcacoes,
+                (System.nanoTime() - t0) / 1e9);
+
+        // Cada cliente trata as marcações k com k % clientes == c; a marcação k usa o médico k % m, no horário k / m
+        long[][] latencias = new long[clientes][];
+        Thread[] threads = new Thread[clientes];
+        for (int c = 0; c < clientes; c++) {
+            int cliente = c;
+            threads[c] = new Thread(() -> {
+                List<Long> medidas = new ArrayList<>();
+                for (int k = cliente; k < marcacoes; k += clientes) {
+                    String idPaciente = pacientes.get(k).getId();
+                    String corpo = "{\"idPaciente\":\"" + idPaciente + "\",\"medico\":\"" + medicos.get(k % numeroMedicos).getNome()
+                            + "\",\"dataHora\":\"" + horarios.get(k / numeroMedicos).format(FORMATO_DATA_HORA) + "\"}";
+                    medidas.add(enviar("POST", "/consultas", corpo));
+                    medidas.add(enviar("GET", "/consultas?limite=20&idPaciente=" + URLEncoder.encode(idPaciente, StandardCharsets.UTF_8), null));
+                }
+                latencias[cliente] = medidas.stream().mapToLong(Long::longValue).toArray();
+            }, "cliente-carga-" + c);
+        }
+        t0 = System.nanoTime();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long duracao = System.nanoTime() - t0;
+
+        long[] todas = Arrays.stream(latencias).flatMapToLong(Arrays::stream).toArray();
+        Arrays.sort(todas);
+        System.out.printf("%d pedidos com %d clientes em %.2f s: %.0f pedidos/s, %d erros%n", todas.length, clientes,
+                duracao / 1e9, todas.length * 1e9 / duracao, erros.get());
+        System.out.printf("Latência: p50 %.2f ms, p99 %.2f ms, máximo %.2f ms%n",
+                percentil(todas, 0.50) / 1e6, percentil(todas, 0.99) / 1e6, todas[todas.length - 1] / 1e6);
+        System.out.println("Consultas agendadas no gestor: " + gestor.pesquisarConsultas(new FiltroHistorico()).count());
+    }
+
+    /**
+     * Envia um pedido e devolve a sua latência em nanossegundos.
+     */
+    private long enviar(String metodo, String caminho, String corpo) {
+        HttpRequest.Builder pedido = HttpRequest.newBuilder(URI.create(base + caminho));
+        if (corpo == null) {
+            pedido.GET();
+        } else {
+            pedido.header("Content-Type", "application/json").method(metodo, HttpRequest.BodyPublishers.ofString(corpo));
+        }
+        long inicio = System.nanoTime();
+        try {
+            HttpResponse<byte[]> resposta = cliente.send(pedido.build(), HttpResponse.BodyHandlers.ofByteArray());
+            if (resposta.statusCode() >= 300) {
+                erros.incrementAndGet();
+            }
+        } catch (IOException e) {
+            erros.incrementAndGet();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            erros.incrementAndGet();
+        }
+        return System.nanoTime() - inicio;
+    }
+
+    private static long percentil(long[] ordenadas, double fracao) {
+        if (ordenadas.length == 0) {
+            return 0;
+        }
+        int indice = (int) Math.ceil(fracao * ordenadas.length) - 1;
+        return ordenadas[Math.max(0, Math.min(indice, ordenadas.length - 1))];
+    }
+}
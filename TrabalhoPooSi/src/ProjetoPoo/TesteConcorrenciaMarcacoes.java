@@ -0,0 +1,235 @@
+package ProjetoPoo;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Classe que verifica, sob concorrência, que o gestor nunca marca duas vezes o mesmo horário
+ * de um médico.
+ *
+ * Várias threads disputam ao mesmo tempo poucos médicos e poucos horários, misturando
+ * agendamentos de consultas e exames, lotes de marcações, reagendamentos e cancelamentos.
+ * No fim verifica que nenhum par (médico, horário) tem mais de uma marcação ativa, que não
+ * se perdeu nenhuma marcação aceite, que nenhum horário marcado continua disponível e que
+ * as listas dos pacientes coincidem com as pesquisas. Termina com código 1 se alguma
+ * verificação falhar.
+ *
+ * Utilização: java ProjetoPoo.TesteConcorrenciaMarcacoes [threads] [tentativas]
+ * (por omissão, 16 threads e 64000 tentativas, sobre 4 médicos com 200 horários cada).
+ */
+public class TesteConcorrenciaMarcacoes {
+    private static final long SEMENTE = 42L;
+    private static final int MEDICOS = 4;
+    private static final int HORARIOS = 200;
+    private static final int PACIENTES_POR_THREAD = 8;
+
+    private GerirConsultasExames gestor;
+    private List<Medico> medicos;
+    private List<LocalDateTime> horarios;
+    private AtomicLong aceites;
+    private AtomicLong recusadas;
+    private AtomicLong canceladas;
+    private AtomicLong reagendadas;
+
+    /**
+     * Construtor da classe TesteConcorrenciaMarcacoes.
+     *
+     * @param gestor O gestor a testar, sem médicos registados.
+     */
+    public TesteConcorrenciaMarcacoes(GerirConsultasExames gestor) {
+        this.gestor = gestor;
+        this.medicos = new GeradorDadosSinteticos(SEMENTE).gerarMedicos(MEDICOS);
+        for (Medico medico : medicos) {
+            gestor.registarMedico(medico);
+        }
+        this.horarios = GeradorDadosSinteticos.horariosUteis(gestor.getConfiguracaoHorario(),
+                LocalDate.now().plusDays(1).atStartOfDay()).subList(0, HORARIOS);
+        this.aceites = new AtomicLong();
+        this.recusadas = new AtomicLong();
+        this.canceladas = new AtomicLong();
+        this.reagendadas = new AtomicLong();
+    }
+
+    /**
+     * Método principal que executa o teste.
+     *
+     * @param args O número de threads e o número total de tentativas.
+     * @throws InterruptedException Se a thread principal for interrompida.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int tentativas = args.length > 1 ? Integer.parseInt(args[1]) : 64000;
+
+        TesteConcorrenciaMarcacoes teste = new TesteConcorrenciaMarcacoes(new GerirConsultasExames());
+        long t0 = System.nanoTime();
+        teste.executar(threads, tentativas);
+        System.out.printf("%d tentativas com %d threads em %.2f s: %d aceites, %d recusadas, %d canceladas, %d reagendadas%n",
+                tentativas, threads, (System.nanoTime() - t0) / 1e9, teste.aceites.get(), teste.recusadas.get(),
+                teste.canceladas.get(), teste.reagendadas.get());
+        int falhas = teste.verificar();
+        if (falhas > 0) {
+            System.out.println("FALHOU: " + falhas + " verificações falharam.");
+            System.exit(1);
+        }
+        System.out.println("OK: nenhum horário marcado duas vezes.");
+    }
+
+    private void executar(int threads, int tentativas) throws InterruptedException {
+        CountDownLatch partida = new CountDownLatch(1);
+        Thread[] trabalhadores = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            // Cada thread tem os seus pacientes, para poder cancelar e reagendar as suas marcações
+            List<Paciente> pacientes = new ArrayList<>(PACIENTES_POR_THREAD);
+            for (int i = 0; i < PACIENTES_POR_THREAD; i++) {
+                Paciente paciente = new Paciente(String.valueOf(100000000L + t * PACIENTES_POR_THREAD + i), "Paciente", null);
+                gestor.registarPaciente(paciente);
+                pacientes.add(paciente);
+            }
+            GeradorDadosSinteticos gerador = new GeradorDadosSinteticos(SEMENTE + t);
+            int quantidade = tentativas / threads + (t < tentativas % threads ? 1 : 0);
+            trabalhadores[t] = new Thread(() -> {
+                try {
+                    partida.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                List<Object> marcacoes = new ArrayList<>();
+                for (int i = 0; i < quantidade; i++) {
+                    tentar(gerador, pacientes, marcacoes);
+                }
+            }, "concorrencia-" + t);
+            trabalhadores[t].start();
+        }
+        partida.countDown();
+        for (Thread trabalhador : trabalhadores) {
+            trabalhador.join();
+        }
+    }
+
+    /**
+     * Faz uma operação aleatória, contando-a como aceite ou recusada.
+     *
+     * @param gerador    O gerador de números aleatórios da thread.
+     * @param pacientes  Os pacientes da thread.
+     * @param marcacoes  As marcações ativas da thread (consultas e exames).
+     */
+    private void tentar(GeradorDadosSinteticos gerador, List<Paciente> pacientes, List<Object> marcacoes) {
+        Paciente paciente = pacientes.get(gerador.proximoInteiro(pacientes.size()));
+        Medico medico = medicos.get(gerador.proximoInteiro(MEDICOS));
+        LocalDateTime dataHora = horarios.get(gerador.proximoInteiro(HORARIOS));
+        int operacao = gerador.proximoInteiro(10);
+        try {
+            if (operacao < 4) {
+                gestor.agendarConsulta(paciente, dataHora, medico);
+                aceites.incrementAndGet();
+                marcacoes.add(localizar(paciente, dataHora, medico, false));
+            } else if (operacao < 6) {
+                gestor.agendarExame(paciente, dataHora, gerador.gerarDesignacao(), medico);
+                aceites.incrementAndGet();
+                marcacoes.add(localizar(paciente, dataHora, medico, true));
+            } else if (operacao < 7) {
+                Medico outroMedico = medicos.get(gerador.proximoInteiro(MEDICOS));
+                LocalDateTime outraDataHora = horarios.get(gerador.proximoInteiro(HORARIOS));
+                gestor.agendarLote(List.of(new PedidoMarcacao(paciente, dataHora, medico),
+                        new PedidoMarcacao(paciente, outraDataHora, outroMedico)));
+                aceites.addAndGet(2);
+                marcacoes.add(localizar(paciente, dataHora, medico, false));
+                marcacoes.add(localizar(paciente, outraDataHora, outroMedico, false));
+            } else if (operacao < 9 && !marcacoes.isEmpty()) {
+                Object marcacao = marcacoes.get(gerador.proximoInteiro(marcacoes.size()));
+                if (marcacao instanceof Consulta) {
+                    gestor.reagendarConsulta((Consulta) marcacao, dataHora, medico);
+                } else {
+                    gestor.reagendarExame((Exame) marcacao, dataHora, medico);
+                }
+                reagendadas.incrementAndGet();
+            } else if (!marcacoes.isEmpty()) {
+                Object marcacao = marcacoes.remove(gerador.proximoInteiro(marcacoes.size()));
+                if (marcacao instanceof Consulta) {
+                    gestor.cancelarConsulta((Consulta) marcacao);
+                } else {
+                    gestor.cancelarExame((Exame) marcacao);
+                }
+                canceladas.incrementAndGet();
+            }
+        } catch (IllegalArgumentException e) {
+            recusadas.incrementAndGet();
+        }
+    }
+
+    /**
+     * Encontra a marcação ativa de um paciente com um médico numa data e hora.
+     */
+    private Object localizar(Paciente paciente, LocalDateTime dataHora, Medico medico, boolean exame) {
+        FiltroHistorico filtro = new FiltroHistorico();
+        filtro.setPaciente(paciente);
+        filtro.setMedico(medico);
+        filtro.setIntervalo(dataHora, dataHora.plusMinutes(1));
+        try (Stream<?> marcacoes = exame ? gestor.pesquisarExames(filtro) : gestor.pesquisarConsultas(filtro)) {
+            return marcacoes.findFirst().orElseThrow(() -> new IllegalStateException("Marcação aceite não encontrada."));
+        }
+    }
+
+    /**
+     * Verifica o estado final do gestor.
+     *
+     * @return O número de verificações que falharam.
+     */
+    private int verificar() {
+        int falhas = 0;
+        Set<String> ocupados = new HashSet<>();
+        long duplicados = 0;
+        long ativas = 0;
+        try (Stream<Consulta> consultas = gestor.pesquisarConsultas(new FiltroHistorico());
+             Stream<Exame> exames = gestor.pesquisarExames(new FiltroHistorico())) {
+            List<String> chaves = new ArrayList<>();
+            consultas.forEach(consulta -> chaves.add(consulta.getMedico().getNome() + "|" + consulta.getDataHora()));
+            exames.forEach(exame -> chaves.add(exame.getMedico().getNome() + "|" + exame.getDataHora()));
+            for (String chave : chaves) {
+                ativas++;
+                if (!ocupados.add(chave)) {
+                    duplicados++;
+                    System.out.println("Horário marcado mais de uma vez: " + chave);
+                }
+            }
+        }
+        if (duplicados > 0) {
+            falhas++;
+        }
+        long esperadas = aceites.get() - canceladas.get();
+        if (ativas != esperadas) {
+            System.out.println("Marcações ativas: " + ativas + ", esperadas: " + esperadas);
+            falhas++;
+        }
+        long livresOcupados = 0;
+        for (Medico medico : medicos) {
+            livresOcupados += gestor.obterHorariosDisponiveisConsulta(medico).stream()
+                    .filter(horario -> ocupados.contains(medico.getNome() + "|" + horario)).count();
+        }
+        if (livresOcupados > 0) {
+            System.out.println("Horários marcados que continuam disponíveis: " + livresOcupados);
+            falhas++;
+        }
+        long nasListas = 0;
+        for (int i = 0; ; i++) {
+            Paciente paciente = gestor.pesquisarPacientePorId(String.valueOf(100000000L + i));
+            if (paciente == null) {
+                break;
+            }
+            nasListas += paciente.getConsultas().size() + paciente.getExames().size();
+        }
+        if (nasListas != ativas) {
+            System.out.println("Marcações nas listas dos pacientes: " + nasListas + ", nas pesquisas: " + ativas);
+            falhas++;
+        }
+        System.out.println("Marcações ativas: " + ativas + " em " + ocupados.size() + " horários distintos.");
+        return falhas;
+    }
+}
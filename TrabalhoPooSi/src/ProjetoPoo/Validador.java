@@ -0,0 +1,184 @@
+package ProjetoPoo;
+
+/**
+ * Classe que valida os dados introduzidos no gestor de consultas e exames, quer venham do
+ * menu, do servidor HTTP ou de uma importação.
+ *
+ * As validações percorrem o texto carácter a carácter, sem expressões regulares e sem criar
+ * objetos. Os nomes aceitam letras de qualquer alfabeto (incluindo as acentuadas, como em
+ * "João" ou "Conceição"), espaços, apóstrofos, hífenes e pontos.
+ */
+public class Validador {
+    /** Número máximo de caracteres das observações de um exame. */
+    public static final int MAXIMO_OBSERVACOES = 30;
+
+    /**
+     * Campos validados, com a mensagem de erro respetiva.
+     */
+    public enum Campo {
+        /** ID do paciente (número do cartão de cidadão): apenas algarismos. */
+        ID_PACIENTE("ID do paciente deve conter apenas números."),
+        /** Nome do paciente: letras, espaços, apóstrofos, hífenes e pontos. */
+        NOME_PACIENTE("O nome do paciente deve conter apenas letras."),
+        /** Nome do médico: texto não vazio. */
+        NOME_MEDICO("O nome do médico não pode ser vazio."),
+        /** Especialidade do médico: texto não vazio. */
+        ESPECIALIDADE("A especialidade do médico não pode ser vazia."),
+        /** Designação do exame: texto não vazio. */
+        DESIGNACAO("A designação do exame não pode ser vazia."),
+        /** Observações de um exame: de 1 a 30 caracteres. */
+        OBSERVACOES("Observações não podem ter mais que 30 caracteres.");
+
+        private final String mensagem;
+
+        Campo(String mensagem) {
+            this.mensagem = mensagem;
+        }
+
+        /**
+         * Obtém a mensagem de erro de um valor inválido deste campo.
+         *
+         * @return A mensagem de erro.
+         */
+        public String getMensagem() {
+            return mensagem;
+        }
+    }
+
+    private Validador() {
+    }
+
+    /**
+     * Verifica se um valor é válido para um campo.
+     *
+     * @param campo O campo.
+     * @param valor O valor.
+     * @return true se o valor for válido.
+     */
+    public static boolean valido(Campo campo, String valor) {
+        switch (campo) {
+            case ID_PACIENTE:
+                return idValido(valor);
+            case NOME_PACIENTE:
+                return nomeValido(valor);
+            case OBSERVACOES:
+                return observacoesValidas(valor);
+            default:
+                return textoValido(valor);
+        }
+    }
+
+    /**
+     * Valida um valor de um campo.
+     *
+     * @param campo O campo.
+     * @param valor O valor.
+     * @throws IllegalArgumentException Se o valor for inválido, com a mensagem do campo.
+     */
+    public static void validar(Campo campo, String valor) {
+        if (!valido(campo, valor)) {
+            throw new IllegalArgumentException(campo.getMensagem());
+        }
+    }
+
+    /**
+     * Valida de uma só vez os campos de um registo, como uma linha de um ficheiro importado.
+     *
+     * @param campos O campo de cada posição, ou null nas posições que não são validadas.
+     * @param valores Os valores, pela mesma ordem.
+     * @return A mensagem de erro do primeiro valor inválido, ou null se forem todos válidos.
+     */
+    public static String verificar(Campo[] campos, String[] valores) {
+        int total = Math.min(campos.length, valores.length);
+        for (int i = 0; i < total; i++) {
+            if (campos[i] != null && !valido(campos[i], valores[i])) {
+                return campos[i].getMensagem();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Verifica se um ID de paciente contém apenas algarismos (de 0 a 9).
+     *
+     * @param id O ID.
+     * @return true se o ID for válido.
+     */
+    public static boolean idValido(String id) {
+        if (id == null || id.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Verifica se um nome de pessoa é válido: tem pelo menos uma letra e só contém letras
+     * (de qualquer alfabeto, com ou sem acentos), espaços, apóstrofos, hífenes e pontos.
+     *
+     * @param nome O nome.
+     * @return true se o nome for válido.
+     */
+    public static boolean nomeValido(String nome) {
+        if (nome == null) {
+            return false;
+        }
+        boolean temLetra = false;
+        for (int i = 0; i < nome.length(); ) {
+            int c = nome.codePointAt(i);
+            if (Character.isLetter(c)) {
+                temLetra = true;
+            } else if (!Character.isWhitespace(c) && !Character.isSpaceChar(c) && !marcaDiacritica(c)
+                    && c != '\'' && c != '’' && c != '-' && c != '.') {
+                return false;
+            }
+            i += Character.charCount(c);
+        }
+        return temLetra;
+    }
+
+    /**
+     * Verifica se um texto livre (nome de médico, especialidade ou designação) é válido:
+     * tem pelo menos um carácter que não é um espaço e nenhum carácter de controlo.
+     *
+     * @param texto O texto.
+     * @return true se o texto for válido.
+     */
+    public static boolean textoValido(String texto) {
+        if (texto == null) {
+            return false;
+        }
+        boolean temConteudo = false;
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            if (Character.isISOControl(c)) {
+                return false;
+            }
+            if (!Character.isWhitespace(c) && !Character.isSpaceChar(c)) {
+                temConteudo = true;
+            }
+        }
+        return temConteudo;
+    }
+
+    /**
+     * Verifica se as observações de um exame têm entre 1 e 30 caracteres.
+     *
+     * @param observacoes As observações.
+     * @return true se as observações forem válidas.
+     */
+    public static boolean observacoesValidas(String observacoes) {
+        return observacoes != null && !observacoes.isEmpty() && observacoes.length() <= MAXIMO_OBSERVACOES;
+    }
+
+    private static boolean marcaDiacritica(int c) {
+        int tipo = Character.getType(c);
+        return tipo == Character.NON_SPACING_MARK || tipo == Character.COMBINING_SPACING_MARK
+                || tipo == Character.ENCLOSING_MARK;
+    }
+}